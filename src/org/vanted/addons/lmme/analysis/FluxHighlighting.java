@@ -18,17 +18,20 @@ import java.awt.Color;
 import java.io.BufferedReader;
 import java.io.FileReader;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.regex.Pattern;
 
 import org.AttributeHelper;
 import org.graffiti.graph.Graph;
 import org.graffiti.graph.Node;
+import org.vanted.addons.lmme.core.LMMEAttributeStore;
 import org.vanted.addons.lmme.core.LMMEConstants;
 import org.vanted.addons.lmme.core.LMMEController;
 import org.vanted.addons.lmme.graphs.BaseGraph;
 import org.vanted.addons.lmme.graphs.OverviewGraph;
 import org.vanted.addons.lmme.graphs.SubsystemGraph;
+import org.vanted.addons.lmme.ui.AttributeUpdateBatch;
 import org.vanted.addons.lmme.ui.LMMESubsystemViewManagement;
 import org.vanted.addons.lmme.ui.LMMEViewManagement;
 
@@ -48,7 +51,10 @@ public class FluxHighlighting {
 	
 	private double minValue;
 	private double maxValue;
-	HashMap<Node, Double> nodeHighlightMap;
+	/**
+	 * Maps the SBML ids of the reactions with a non-zero flux to their flux values.
+	 */
+	HashMap<String, Double> fluxValueMap;
 	HashMap<SubsystemGraph, Integer> nodeCount;
 	int maxCount;
 	
@@ -56,12 +62,21 @@ public class FluxHighlighting {
 		
 		minValue = Double.MAX_VALUE;
 		maxValue = Double.MIN_VALUE;
-		nodeHighlightMap = new HashMap<>();
+		fluxValueMap = new HashMap<>();
 		nodeCount = new HashMap<>();
 		maxCount = 0;
 		
 		BaseGraph baseGraph = LMMEController.getInstance().getCurrentSession().getBaseGraph();
 		
+		HashMap<String, ArrayList<Node>> reactionIdMap = new HashMap<>();
+		for (Node reactionNode : baseGraph.getReactionNodes()) {
+			String reactionID = getReactionID(reactionNode);
+			if (!reactionIdMap.containsKey(reactionID)) {
+				reactionIdMap.put(reactionID, new ArrayList<>());
+			}
+			reactionIdMap.get(reactionID).add(reactionNode);
+		}
+		
 		try {
 			FileReader fr = new FileReader(filePath);
 			BufferedReader br = new BufferedReader(fr);
@@ -82,13 +97,11 @@ public class FluxHighlighting {
 						reactionID += ",";
 						reactionID += splitStr[i];
 					}
-					for (Node reactionNode : baseGraph.getReactionNodes()) {
-						if (AttributeHelper
-								.getAttributeValue(reactionNode, SBML_Constants.SBML, SBML_Constants.REACTION_ID, "", "")
-								.equals(reactionID)) {
-							if (currentValue != 0) {
-								nodeHighlightMap.put(reactionNode, currentValue);
-							}
+					if (reactionIdMap.containsKey(reactionID)) {
+						if (currentValue != 0) {
+							fluxValueMap.put(reactionID, currentValue);
+						}
+						for (Node reactionNode : reactionIdMap.get(reactionID)) {
 							LMMEController.getInstance().getCurrentSession().addNodeAttribute(reactionNode, LMMEConstants.FLUX_ATTRIBUTE,
 									Double.toString(currentValue));
 						}
@@ -105,12 +118,9 @@ public class FluxHighlighting {
 		OverviewGraph og = LMMEController.getInstance().getCurrentSession().getOverviewGraph();
 		for (SubsystemGraph subsystem : og.getDecomposition().getSubsystems()) {
 			int count = 0;
-			for (Node n1 : subsystem.getReactionNodes()) {
-				for (Node n2 : nodeHighlightMap.keySet()) {
-					if (AttributeHelper.getAttributeValue(n1, SBML_Constants.SBML, SBML_Constants.REACTION_ID, "", "")
-							.equals(AttributeHelper.getAttributeValue(n2, SBML_Constants.SBML, SBML_Constants.REACTION_ID, "", ""))) {
-						count += 1;
-					}
+			for (Node reactionNode : subsystem.getReactionNodes()) {
+				if (fluxValueMap.containsKey(getReactionID(reactionNode))) {
+					count += 1;
 				}
 			}
 			if (count > maxCount) {
@@ -124,9 +134,10 @@ public class FluxHighlighting {
 		
 		OverviewGraph og = LMMEController.getInstance().getCurrentSession().getOverviewGraph();
 		countOccurences();
+		AttributeUpdateBatch batch = new AttributeUpdateBatch(og.getGraph());
 		
 		for (SubsystemGraph subsystem : og.getDecomposition().getSubsystems()) {
-			AttributeHelper.setFillColor(og.getNodeOfSubsystem(subsystem), Color.WHITE);
+			batch.setFillColor(og.getNodeOfSubsystem(subsystem), Color.WHITE);
 			if (nodeCount.get(subsystem).intValue() > 0) {
 				int frac;
 				if (useAbsoluteCount) {
@@ -135,42 +146,43 @@ public class FluxHighlighting {
 					frac = (int) Math.round((1.0 - ((double) nodeCount.get(subsystem)) / ((double) subsystem.getReactionNodes().size())) * 200.0);
 				}
 				Color c = new Color(frac, frac, 255);
-				AttributeHelper.setFillColor(og.getNodeOfSubsystem(subsystem), c);
+				batch.setFillColor(og.getNodeOfSubsystem(subsystem), c);
 			}
 		}
+		batch.apply();
 	}
 	
 	public void highlightColorInSubsystemView() {
 		
 		Graph csg = LMMEViewManagement.getInstance().getSubsystemFrame().getView().getGraph();
+		AttributeUpdateBatch batch = new AttributeUpdateBatch(csg);
 		for (Node n1 : csg.getNodes()) {
-			AttributeHelper.setFillColor(n1, Color.WHITE);
-			for (Node n2 : nodeHighlightMap.keySet()) {
-				if (AttributeHelper.getAttributeValue(n1, SBML_Constants.SBML, SBML_Constants.REACTION_ID, "", "")
-						.equals(AttributeHelper.getAttributeValue(n2, SBML_Constants.SBML, SBML_Constants.REACTION_ID, "", ""))) {
-					double currentVal = nodeHighlightMap.get(n2).doubleValue();
-					if (currentVal < 0) {
-						int frac = (int) Math.round((1.0 - currentVal / minValue) * 200.0);
-						Color c = new Color(frac, frac, 255);
-						AttributeHelper.setFillColor(n1, c);
-					} else {
-						int frac = (int) Math.round((1.0 - currentVal / maxValue) * 200.0);
-						Color c = new Color(255, frac, frac);
-						AttributeHelper.setFillColor(n1, c);
-					}
+			batch.setFillColor(n1, Color.WHITE);
+			Double fluxValue = fluxValueMap.get(getReactionID(LMMESubsystemViewManagement.getInstance().getBaseNode(n1)));
+			if (fluxValue != null) {
+				double currentVal = fluxValue.doubleValue();
+				if (currentVal < 0) {
+					int frac = (int) Math.round((1.0 - currentVal / minValue) * 200.0);
+					Color c = new Color(frac, frac, 255);
+					batch.setFillColor(n1, c);
+				} else {
+					int frac = (int) Math.round((1.0 - currentVal / maxValue) * 200.0);
+					Color c = new Color(255, frac, frac);
+					batch.setFillColor(n1, c);
 				}
 			}
 		}
-		
+		batch.apply();
 	}
 	
 	public void highlightSizeInOverview(boolean useAbsoluteCount) {
 		
 		OverviewGraph og = LMMEController.getInstance().getCurrentSession().getOverviewGraph();
 		countOccurences();
+		AttributeUpdateBatch batch = new AttributeUpdateBatch(og.getGraph());
 		
 		for (SubsystemGraph subsystem : og.getDecomposition().getSubsystems()) {
-			AttributeHelper.setSize(og.getNodeOfSubsystem(subsystem), og.getNodeSizeSubsystem(), og.getNodeSizeSubsystem());
+			batch.setSize(og.getNodeOfSubsystem(subsystem), og.getNodeSizeSubsystem(), og.getNodeSizeSubsystem());
 			if (nodeCount.get(subsystem).intValue() > 0) {
 				double frac;
 				if (useAbsoluteCount) {
@@ -179,34 +191,51 @@ public class FluxHighlighting {
 					frac = ((double) nodeCount.get(subsystem)) / ((double) subsystem.getReactionNodes().size());
 				}
 				int size = (int) Math.round(((double) og.getNodeSizeSubsystem()) * (0.3 * frac + 1.2));
-				AttributeHelper.setSize(og.getNodeOfSubsystem(subsystem), size, size);
+				batch.setSize(og.getNodeOfSubsystem(subsystem), size, size);
 			}
 		}
+		batch.apply();
 	}
 	
 	public void highlightSizeInSubsystemView() {
 		
 		Graph csg = LMMEViewManagement.getInstance().getSubsystemFrame().getView().getGraph();
+		AttributeUpdateBatch batch = new AttributeUpdateBatch(csg);
 		int nodeSize = LMMESubsystemViewManagement.getInstance().getNodeSize();
 		for (Node n1 : csg.getNodes()) {
-			AttributeHelper.setSize(n1, nodeSize, nodeSize);
-			for (Node n2 : nodeHighlightMap.keySet()) {
-				if (AttributeHelper.getAttributeValue(n1, SBML_Constants.SBML, SBML_Constants.REACTION_ID, "", "")
-						.equals(AttributeHelper.getAttributeValue(n2, SBML_Constants.SBML, SBML_Constants.REACTION_ID, "", ""))) {
-					double currentVal = nodeHighlightMap.get(n2).doubleValue();
-					if (currentVal < 0) {
-						double frac = currentVal / minValue;
-						int size = (int) Math.round(((double) nodeSize) * (0.75 - 0.5 * frac));
-						AttributeHelper.setSize(n1, size, size);
-					} else {
-						double frac = currentVal / maxValue;
-						int size = (int) Math.round(((double) nodeSize) * (1.0 * frac + 1.25));
-						AttributeHelper.setSize(n1, size, size);
-					}
+			batch.setSize(n1, nodeSize, nodeSize);
+			Double fluxValue = fluxValueMap.get(getReactionID(LMMESubsystemViewManagement.getInstance().getBaseNode(n1)));
+			if (fluxValue != null) {
+				double currentVal = fluxValue.doubleValue();
+				if (currentVal < 0) {
+					double frac = currentVal / minValue;
+					int size = (int) Math.round(((double) nodeSize) * (0.75 - 0.5 * frac));
+					batch.setSize(n1, size, size);
+				} else {
+					double frac = currentVal / maxValue;
+					int size = (int) Math.round(((double) nodeSize) * (1.0 * frac + 1.25));
+					batch.setSize(n1, size, size);
 				}
 			}
 		}
-		
+		batch.apply();
+	}
+	
+	/**
+	 * Gets the SBML id of the given reaction, preferably from the attribute store of the current session.
+	 * 
+	 * @param reactionNode
+	 *           the reaction node
+	 * @return the SBML id of the reaction, or an empty String if it has none
+	 */
+	private String getReactionID(Node reactionNode) {
+		LMMEAttributeStore attributeStore = LMMEController.getInstance().getCurrentSession().getAttributeStore();
+		String reactionID = attributeStore == null ? null : attributeStore.getSbmlId(reactionNode);
+		if (reactionID == null) {
+			reactionID = (String) AttributeHelper.getAttributeValue(reactionNode, SBML_Constants.SBML, SBML_Constants.REACTION_ID, "",
+					"");
+		}
+		return reactionID;
 	}
 	
 }
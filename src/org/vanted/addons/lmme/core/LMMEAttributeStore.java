@@ -0,0 +1,385 @@
+/*******************************************************************************
+ * LMME is a VANTED Add-on for the exploration of large metabolic models.
+ * Copyright (C) 2020 Chair for Life Science Informatics, University of Konstanz
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package org.vanted.addons.lmme.core;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.AttributeHelper;
+import org.graffiti.graph.Node;
+
+import de.ipk_gatersleben.ag_nw.graffiti.plugins.ios.sbml.SBML_Constants;
+
+/**
+ * A column store that caches the node attributes that are frequently read during a session.
+ * <p>
+ * Every registered node is assigned an int slot. For each slot, the SBML role, the compartment, the SBML id and the label are read once from the
+ * VANTED attribute tree and stored in typed columns. The attributes under {@link LMMEConstants#ATTRIBUTE_PATH} are cached per attribute name. When an
+ * attribute is requested for the first time, its column is filled for all registered nodes at once, afterwards it is kept up to date by
+ * {@link LMMESession#addNodeAttribute(Node, String, String)} and filled for newly registered nodes.
+ * <p>
+ * Reading is lock-free, such that parallel passes over the nodes are not serialized: the slot is looked up in a concurrent map and the value is read
+ * from an array. Only the first request of an attribute column and all changes take a lock. Registering and unregistering nodes must not happen
+ * concurrently with reads of the same nodes. The slots of unregistered nodes are reused.
+ * <p>
+ * Nodes that are not registered, for instance the nodes of the views, are not answered by the store. Whenever attributes are changed without using the
+ * methods of the session, the affected nodes need to be invalidated.
+ * 
+ * @author Michael Aichem
+ */
+public class LMMEAttributeStore {
+	
+	public enum NodeRole {
+		SPECIES, REACTION, OTHER
+	}
+	
+	public static final int NO_COMPARTMENT = -1;
+	
+	private static final int INITIAL_CAPACITY = 1024;
+	
+	private final ConcurrentHashMap<Node, Integer> slots = new ConcurrentHashMap<>();
+	
+	/**
+	 * The node of each slot, or {@code null} for a free slot.
+	 */
+	private Node[] nodes = new Node[INITIAL_CAPACITY];
+	
+	private int size = 0;
+	
+	private int[] freeSlots = new int[INITIAL_CAPACITY];
+	private int numberOfFreeSlots = 0;
+	
+	// The columns are replaced when they grow. As a slot is published by the concurrent map after its values have been written, a reader always sees
+	// columns that are large enough and contain the values of the slot.
+	private volatile NodeRole[] roles = new NodeRole[INITIAL_CAPACITY];
+	private volatile int[] compartmentIds = new int[INITIAL_CAPACITY];
+	private volatile String[] sbmlIds = new String[INITIAL_CAPACITY];
+	private volatile String[] labels = new String[INITIAL_CAPACITY];
+	
+	private final HashMap<String, Integer> compartmentIdMap = new HashMap<>();
+	private final List<String> compartmentNames = new CopyOnWriteArrayList<>();
+	
+	/**
+	 * The cached lmme attributes, one fully populated column per attribute name. The map is copied on every change.
+	 */
+	private volatile HashMap<String, String[]> attributeColumns = new HashMap<>();
+	
+	/**
+	 * Registers the given node and reads its attributes into the columns.
+	 * <p>
+	 * If the node is already registered, its cached values are refreshed.
+	 * 
+	 * @param node
+	 *           the node to be registered
+	 */
+	public synchronized void register(Node node) {
+		Integer existingSlot = slots.get(node);
+		int slot = existingSlot != null ? existingSlot.intValue() : allocateSlot(node);
+		
+		String sbmlRole = (String) AttributeHelper.getAttributeValue(node, SBML_Constants.SBML, SBML_Constants.SBML_ROLE, "", "");
+		if (sbmlRole.equals(SBML_Constants.ROLE_SPECIES)) {
+			roles[slot] = NodeRole.SPECIES;
+			sbmlIds[slot] = (String) AttributeHelper.getAttributeValue(node, SBML_Constants.SBML, SBML_Constants.SPECIES_ID, "", "");
+		} else if (sbmlRole.equals(SBML_Constants.ROLE_REACTION)) {
+			roles[slot] = NodeRole.REACTION;
+			sbmlIds[slot] = (String) AttributeHelper.getAttributeValue(node, SBML_Constants.SBML, SBML_Constants.REACTION_ID, "", "");
+		} else {
+			roles[slot] = NodeRole.OTHER;
+			sbmlIds[slot] = "";
+		}
+		
+		compartmentIds[slot] = NO_COMPARTMENT;
+		if (AttributeHelper.hasAttribute(node, SBML_Constants.SBML, SBML_Constants.COMPARTMENT)) {
+			String compartment = (String) AttributeHelper.getAttributeValue(node, SBML_Constants.SBML, SBML_Constants.COMPARTMENT, "", "");
+			compartmentIds[slot] = getOrCreateCompartmentId(compartment);
+		}
+		
+		labels[slot] = AttributeHelper.getLabel(node, "");
+		
+		for (String attributeName : attributeColumns.keySet()) {
+			attributeColumns.get(attributeName)[slot] = readAttribute(node, attributeName);
+		}
+		
+		if (existingSlot == null) {
+			slots.put(node, Integer.valueOf(slot));
+		}
+	}
+	
+	/**
+	 * Registers a node that has been created as a copy of another registered node, such as a clone in the working graph.
+	 * <p>
+	 * The cached values of the source node are taken over without reading the attribute tree again.
+	 * 
+	 * @param copy
+	 *           the newly created copy
+	 * @param source
+	 *           the node that has been copied
+	 */
+	public synchronized void registerCopy(Node copy, Node source) {
+		Integer sourceSlot = slots.get(source);
+		if (sourceSlot == null) {
+			register(copy);
+			return;
+		}
+		int from = sourceSlot.intValue();
+		Integer existingSlot = slots.get(copy);
+		int slot = existingSlot != null ? existingSlot.intValue() : allocateSlot(copy);
+		roles[slot] = roles[from];
+		compartmentIds[slot] = compartmentIds[from];
+		sbmlIds[slot] = sbmlIds[from];
+		labels[slot] = labels[from];
+		for (String[] column : attributeColumns.values()) {
+			column[slot] = column[from];
+		}
+		if (existingSlot == null) {
+			slots.put(copy, Integer.valueOf(slot));
+		}
+	}
+	
+	/**
+	 * Removes the given node from the store.
+	 * <p>
+	 * The slot of the node is cleared and reused for the next registered node.
+	 * 
+	 * @param node
+	 *           the node to be removed
+	 */
+	public synchronized void unregister(Node node) {
+		Integer slotObject = slots.remove(node);
+		if (slotObject == null) {
+			return;
+		}
+		int slot = slotObject.intValue();
+		nodes[slot] = null;
+		roles[slot] = null;
+		compartmentIds[slot] = NO_COMPARTMENT;
+		sbmlIds[slot] = null;
+		labels[slot] = null;
+		for (String[] column : attributeColumns.values()) {
+			column[slot] = null;
+		}
+		if (numberOfFreeSlots == freeSlots.length) {
+			freeSlots = Arrays.copyOf(freeSlots, freeSlots.length * 2);
+		}
+		freeSlots[numberOfFreeSlots++] = slot;
+	}
+	
+	public boolean contains(Node node) {
+		return slots.containsKey(node);
+	}
+	
+	/**
+	 * Gets the SBML role of the given node.
+	 * 
+	 * @param node
+	 *           the node
+	 * @return the role of the node, or {@code null} if the node is not registered
+	 */
+	public NodeRole getRole(Node node) {
+		Integer slot = slots.get(node);
+		return slot == null ? null : roles[slot.intValue()];
+	}
+	
+	/**
+	 * Gets the compartment id of the given node.
+	 * 
+	 * @param node
+	 *           the node
+	 * @return the compartment id, or {@link #NO_COMPARTMENT} if the node is not registered or has no compartment
+	 */
+	public int getCompartmentId(Node node) {
+		Integer slot = slots.get(node);
+		return slot == null ? NO_COMPARTMENT : compartmentIds[slot.intValue()];
+	}
+	
+	/**
+	 * Gets the name of the compartment with the given id.
+	 * 
+	 * @param compartmentId
+	 *           the compartment id
+	 * @return the compartment name as given in the SBML file
+	 */
+	public String getCompartmentName(int compartmentId) {
+		return compartmentNames.get(compartmentId);
+	}
+	
+	public int getNumberOfCompartments() {
+		return compartmentNames.size();
+	}
+	
+	/**
+	 * Gets the SBML species or reaction id of the given node.
+	 * 
+	 * @param node
+	 *           the node
+	 * @return the SBML id, an empty String if the node has none, or {@code null} if the node is not registered
+	 */
+	public String getSbmlId(Node node) {
+		Integer slot = slots.get(node);
+		return slot == null ? null : sbmlIds[slot.intValue()];
+	}
+	
+	/**
+	 * Gets the label of the given node.
+	 * 
+	 * @param node
+	 *           the node
+	 * @return the label, or {@code null} if the node is not registered
+	 */
+	public String getLabel(Node node) {
+		Integer slot = slots.get(node);
+		return slot == null ? null : labels[slot.intValue()];
+	}
+	
+	/**
+	 * Gets the lmme attribute with the given name for the given node.
+	 * <p>
+	 * If the attribute has not been requested before, its column is read from the attribute trees of all registered nodes first.
+	 * 
+	 * @param node
+	 *           the node
+	 * @param attributeName
+	 *           the name of the attribute
+	 * @return the attribute value, an empty String if the node has no such attribute, or {@code null} if the node is not registered
+	 */
+	public String getAttribute(Node node, String attributeName) {
+		Integer slot = slots.get(node);
+		if (slot == null) {
+			return null;
+		}
+		String[] column = attributeColumns.get(attributeName);
+		if (column == null) {
+			column = loadColumn(attributeName);
+		}
+		return column[slot.intValue()];
+	}
+	
+	/**
+	 * Updates the cached lmme attribute with the given name for the given node. Unregistered nodes and attributes that have not been requested yet are
+	 * ignored, the latter are read from the attribute tree when they are requested.
+	 * 
+	 * @param node
+	 *           the node
+	 * @param attributeName
+	 *           the name of the attribute
+	 * @param attributeValue
+	 *           the new value
+	 */
+	public synchronized void setAttribute(Node node, String attributeName, String attributeValue) {
+		Integer slot = slots.get(node);
+		String[] column = attributeColumns.get(attributeName);
+		if (slot != null && column != null) {
+			column[slot.intValue()] = attributeValue;
+		}
+	}
+	
+	/**
+	 * Invalidates all cached values of the given node, such that they are read from the attribute tree again.
+	 * 
+	 * @param node
+	 *           the node to be invalidated
+	 */
+	public synchronized void invalidate(Node node) {
+		if (slots.containsKey(node)) {
+			register(node);
+		}
+	}
+	
+	/**
+	 * Invalidates the cached values of the lmme attribute with the given name for all nodes.
+	 * 
+	 * @param attributeName
+	 *           the name of the attribute
+	 */
+	public synchronized void invalidateAttribute(String attributeName) {
+		if (attributeColumns.containsKey(attributeName)) {
+			HashMap<String, String[]> newAttributeColumns = new HashMap<>(attributeColumns);
+			newAttributeColumns.remove(attributeName);
+			attributeColumns = newAttributeColumns;
+		}
+	}
+	
+	/**
+	 * Invalidates the cached values of all lmme attributes for all nodes.
+	 */
+	public synchronized void invalidateAttributes() {
+		attributeColumns = new HashMap<>();
+	}
+	
+	/**
+	 * Reserves a slot for the given node, reusing a free slot if there is one. The node is not put into the slot map, which has to be done after the
+	 * values have been written.
+	 */
+	private int allocateSlot(Node node) {
+		int slot;
+		if (numberOfFreeSlots > 0) {
+			slot = freeSlots[--numberOfFreeSlots];
+		} else {
+			if (size == nodes.length) {
+				int capacity = nodes.length * 2;
+				nodes = Arrays.copyOf(nodes, capacity);
+				roles = Arrays.copyOf(roles, capacity);
+				compartmentIds = Arrays.copyOf(compartmentIds, capacity);
+				sbmlIds = Arrays.copyOf(sbmlIds, capacity);
+				labels = Arrays.copyOf(labels, capacity);
+				HashMap<String, String[]> newAttributeColumns = new HashMap<>();
+				for (String attributeName : attributeColumns.keySet()) {
+					newAttributeColumns.put(attributeName, Arrays.copyOf(attributeColumns.get(attributeName), capacity));
+				}
+				attributeColumns = newAttributeColumns;
+			}
+			slot = size++;
+		}
+		nodes[slot] = node;
+		return slot;
+	}
+	
+	/**
+	 * Reads the column of the given attribute for all registered nodes, unless another thread has done so in the meantime.
+	 */
+	private synchronized String[] loadColumn(String attributeName) {
+		String[] column = attributeColumns.get(attributeName);
+		if (column == null) {
+			column = new String[nodes.length];
+			for (int slot = 0; slot < size; slot++) {
+				if (nodes[slot] != null) {
+					column[slot] = readAttribute(nodes[slot], attributeName);
+				}
+			}
+			HashMap<String, String[]> newAttributeColumns = new HashMap<>(attributeColumns);
+			newAttributeColumns.put(attributeName, column);
+			attributeColumns = newAttributeColumns;
+		}
+		return column;
+	}
+	
+	private static String readAttribute(Node node, String attributeName) {
+		return (String) AttributeHelper.getAttributeValue(node, LMMEConstants.ATTRIBUTE_PATH, attributeName, "", "");
+	}
+	
+	private int getOrCreateCompartmentId(String compartment) {
+		Integer compartmentId = compartmentIdMap.get(compartment);
+		if (compartmentId == null) {
+			compartmentId = Integer.valueOf(compartmentNames.size());
+			compartmentIdMap.put(compartment, compartmentId);
+			compartmentNames.add(compartment);
+		}
+		return compartmentId.intValue();
+	}
+	
+}
@@ -19,6 +19,7 @@ import java.io.IOException;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
 
@@ -31,13 +32,18 @@ import org.graffiti.editor.GravistoService;
 import org.graffiti.editor.MainFrame;
 import org.graffiti.editor.MessageType;
 import org.graffiti.graph.Graph;
+import org.graffiti.graph.Node;
 import org.graffiti.plugin.algorithm.Algorithm;
 import org.graffiti.util.InstanceLoader;
 import org.vanted.addons.lmme.analysis.OverRepresentationAnalysis;
 import org.vanted.addons.lmme.decomposition.CompartmentMMDecomposition;
+import org.vanted.addons.lmme.decomposition.GirvanMMDecomposition;
 import org.vanted.addons.lmme.decomposition.KeggMMDecomposition;
+import org.vanted.addons.lmme.decomposition.LabelPropagationMMDecomposition;
+import org.vanted.addons.lmme.decomposition.LouvainMMDecomposition;
 import org.vanted.addons.lmme.decomposition.MMDecomposition;
 import org.vanted.addons.lmme.decomposition.MMDecompositionAlgorithm;
+import org.vanted.addons.lmme.decomposition.PartitioningMMDecomposition;
 import org.vanted.addons.lmme.decomposition.PredefinedMMDecomposition;
 import org.vanted.addons.lmme.decomposition.SchusterMMDecomposition;
 import org.vanted.addons.lmme.graphs.BaseGraph;
@@ -103,13 +109,19 @@ public class LMMEController {
 		KeggMMDecomposition keggDecomp = new KeggMMDecomposition();
 		SchusterMMDecomposition schusterDecomp = new SchusterMMDecomposition();
 		CompartmentMMDecomposition compartmentDecomp = new CompartmentMMDecomposition();
-//		GirvanMMDecomposition girvanDecomp = new GirvanMMDecomposition();
+		GirvanMMDecomposition girvanDecomp = new GirvanMMDecomposition();
+		LouvainMMDecomposition louvainDecomp = new LouvainMMDecomposition();
+		LabelPropagationMMDecomposition labelPropagationDecomp = new LabelPropagationMMDecomposition();
+		PartitioningMMDecomposition partitioningDecomp = new PartitioningMMDecomposition();
 		
 		decompositionAlgorithmsMap.put(predefDecomp.getName(), predefDecomp);
 		decompositionAlgorithmsMap.put(keggDecomp.getName(), keggDecomp);
 		decompositionAlgorithmsMap.put(schusterDecomp.getName(), schusterDecomp);
 		decompositionAlgorithmsMap.put(compartmentDecomp.getName(), compartmentDecomp);
-//		decompositionAlgorithmsMap.put(girvanDecomp.getName(), girvanDecomp);
+		decompositionAlgorithmsMap.put(girvanDecomp.getName(), girvanDecomp);
+		decompositionAlgorithmsMap.put(louvainDecomp.getName(), louvainDecomp);
+		decompositionAlgorithmsMap.put(labelPropagationDecomp.getName(), labelPropagationDecomp);
+		decompositionAlgorithmsMap.put(partitioningDecomp.getName(), partitioningDecomp);
 		
 		StressMinMMLayout stressMinLayout = new StressMinMMLayout();
 		ForceDirectedMMLayout forceLayout = new ForceDirectedMMLayout();
@@ -258,10 +270,16 @@ public class LMMEController {
 		if (this.currentSession.getOverviewGraph() != null) {
 			ArrayList<SubsystemGraph> selectedSubsystems = this.currentSession.getOverviewGraph().getSelectedSubsystems();
 			if (!selectedSubsystems.isEmpty()) {
-				LMMESubsystemViewManagement.getInstance().showSubsystems(selectedSubsystems,
-						this.tab.getClearSubsystemView(), this.tab.getCkbUseColorMapping(), this.tab.getCkbShowRelatedSubsystems());
-				this.subsystemLayoutsMap.get(this.tab.getSubsystemLayoutMethod())
-						.layOutAsSubsystems(LMMEViewManagement.getInstance().getSubsystemFrame().getView().getGraph());
+				Collection<Node> addedNodes = LMMESubsystemViewManagement.getInstance().showSubsystems(selectedSubsystems,
+						this.tab.getClearSubsystemView(), this.tab.getCkbUseColorMapping(), this.tab.getCkbShowRelatedSubsystems(),
+						this.tab.getCkbLightweightSubsystemView());
+				Graph subsystemsViewGraph = LMMEViewManagement.getInstance().getSubsystemFrame().getView().getGraph();
+				// Subsystems added to an existing drawing are laid out around the nodes shown before, which keep their positions.
+				if (addedNodes == null) {
+					this.subsystemLayoutsMap.get(this.tab.getSubsystemLayoutMethod()).layOutAsSubsystems(subsystemsViewGraph);
+				} else if (!addedNodes.isEmpty()) {
+					this.subsystemLayoutsMap.get(this.tab.getSubsystemLayoutMethod()).layOutIncrementallyAsSubsystems(subsystemsViewGraph, addedNodes);
+				}
 			} else {
 				JOptionPane.showMessageDialog(null, "There are no subsystems selected in the overview graph.");
 				return;
@@ -309,6 +327,8 @@ public class LMMEController {
 		GraffitiInternalFrame gif = LMMEViewManagement.getInstance().getSubsystemFrame();
 		
 		if (gif != null) {
+			// Lightweight nodes and edges lack the SBML attributes needed for the translation.
+			LMMESubsystemViewManagement.getInstance().materializeAttributes();
 			try {
 				Class<?> SBMLTranslationMode = Class.forName("org.sbgned.translation.SBMLTranslationMode", true,
 						InstanceLoader.getCurrentLoader());
@@ -364,11 +384,11 @@ public class LMMEController {
 	/**
 	 * Partially resets the session.
 	 * <p>
-	 * The session is reseted, except that the selected model is kept and a new, clean {@link BaseGraph} is constructed from the latter.
+	 * The session is reseted, except that the {@link BaseGraph} is kept. Its working graph is brought back to the state of the model when the next
+	 * decomposition is run.
 	 */
 	public void partiallyResetSession() {
-		Graph originalGraph = currentSession.getBaseGraph().getOriginalGraph();
-		currentSession = new LMMESession(new BaseGraph(originalGraph));
+		currentSession = new LMMESession(currentSession.getBaseGraph());
 		SwingUtilities.invokeLater(new Runnable() {
 			public void run() {
 				tab.updateGUI();
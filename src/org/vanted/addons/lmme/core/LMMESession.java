@@ -58,6 +58,15 @@ public class LMMESession {
 		this.overviewGraph = overviewGraph;
 	}
 	
+	/**
+	 * Gets the attribute store of the {@link BaseGraph} of this session.
+	 * 
+	 * @return the attribute store, or {@code null} if no model has been set
+	 */
+	public LMMEAttributeStore getAttributeStore() {
+		return this.baseGraph == null ? null : this.baseGraph.getAttributeStore();
+	}
+	
 	/**
 	 * This method is used to associate an attribute to a node.
 	 * 
@@ -70,6 +79,10 @@ public class LMMESession {
 	 */
 	public void addNodeAttribute(Node node, String attributeName, String attributeValue) {
 		AttributeHelper.setAttribute(node, LMMEConstants.ATTRIBUTE_PATH, attributeName, attributeValue);
+		LMMEAttributeStore attributeStore = getAttributeStore();
+		if (attributeStore != null) {
+			attributeStore.setAttribute(node, attributeName, attributeValue);
+		}
 	}
 	
 	/**
@@ -83,6 +96,13 @@ public class LMMESession {
 	 * @return the respective attribute or an empty String otherwise
 	 */
 	public String getNodeAttribute(Node node, String attributeName) {
+		LMMEAttributeStore attributeStore = getAttributeStore();
+		if (attributeStore != null) {
+			String value = attributeStore.getAttribute(node, attributeName);
+			if (value != null) {
+				return value;
+			}
+		}
 		return (String) AttributeHelper.getAttributeValue(node, LMMEConstants.ATTRIBUTE_PATH, attributeName, "", "");
 	}
 	
@@ -102,7 +102,8 @@ public class LMMETools {
 	 * respective node.
 	 * The method iterates over the original nodes in the BaseGraph and then for any
 	 * node assigns the found attribute to all of the corresponding working copies
-	 * of that node.
+	 * of that node. If another note has been read into the same attribute before,
+	 * the attribute is cleared first.
 	 * 
 	 * @param noteName
 	 *           the name of the note to be read
@@ -114,7 +115,11 @@ public class LMMETools {
 		BaseGraph baseGraph = LMMEController.getInstance().getCurrentSession().getBaseGraph();
 		List<Node> nodes = baseGraph.getOriginalGraph().getNodes();
 		
-		if (!baseGraph.getProcessedNotes().contains(noteName)) {
+		if (!noteName.equals(baseGraph.getNoteOfAttribute(attributeName))) {
+			
+			if (baseGraph.getNoteOfAttribute(attributeName) != null) {
+				baseGraph.clearAttribute(attributeName);
+			}
 			
 			SBMLReactionHelper sbmlReactionHelper = new SBMLReactionHelper(
 					LMMEController.getInstance().getCurrentSession().getBaseGraph().getGraph());
@@ -133,7 +138,10 @@ public class LMMETools {
 				}
 			}
 			if (foundNotes) {
-				baseGraph.getProcessedNotes().add(noteName);
+				if (!baseGraph.getProcessedNotes().contains(noteName)) {
+					baseGraph.getProcessedNotes().add(noteName);
+				}
+				baseGraph.setNoteOfAttribute(attributeName, noteName);
 			} else {
 				JOptionPane.showMessageDialog(null, "<html> Could not find a note with the tag <b>" + noteName
 						+ "</b> in the SBML file. <br> The decomposition will thus not depend on these notes.</html>");
@@ -212,6 +220,14 @@ public class LMMETools {
 	 */
 	public boolean isRole(Node node, String role) {
 		
+		LMMEAttributeStore.NodeRole cachedRole = getCachedRole(node);
+		if (cachedRole != null) {
+			if (role.equals(SBML_Constants.ROLE_SPECIES)) {
+				return cachedRole == LMMEAttributeStore.NodeRole.SPECIES;
+			} else if (role.equals(SBML_Constants.ROLE_REACTION)) {
+				return cachedRole == LMMEAttributeStore.NodeRole.REACTION;
+			}
+		}
 		if (AttributeHelper.hasAttribute(node, SBML_Constants.SBML, SBML_Constants.SBML_ROLE)) {
 			String sbmlRole = (String) AttributeHelper.getAttributeValue(node, SBML_Constants.SBML,
 					SBML_Constants.SBML_ROLE, "", "");
@@ -221,4 +237,20 @@ public class LMMETools {
 		return false;
 	}
 	
+	/**
+	 * Looks up the role of the given node in the attribute store of the current session.
+	 * 
+	 * @param node
+	 *           the node to be looked up
+	 * @return the cached role, or {@code null} if the node is not contained in the store
+	 */
+	private LMMEAttributeStore.NodeRole getCachedRole(Node node) {
+		LMMESession currentSession = LMMEController.getInstance().getCurrentSession();
+		if (currentSession == null) {
+			return null;
+		}
+		LMMEAttributeStore attributeStore = currentSession.getAttributeStore();
+		return attributeStore == null ? null : attributeStore.getRole(node);
+	}
+	
 }
\ No newline at end of file
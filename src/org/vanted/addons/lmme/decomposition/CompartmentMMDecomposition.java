@@ -14,95 +14,226 @@
  ******************************************************************************/
 package org.vanted.addons.lmme.decomposition;
 
+import java.awt.Color;
 import java.util.ArrayList;
-import java.util.Collection;
-import java.util.HashMap;
+import java.util.Arrays;
 import java.util.HashSet;
 
+import javax.swing.JCheckBox;
+import javax.swing.JComboBox;
 import javax.swing.JLabel;
+import javax.swing.JOptionPane;
+import javax.swing.JPanel;
+import javax.swing.JTextField;
 
 import org.AttributeHelper;
 import org.FolderPanel;
-import org.GuiRow;
 import org.graffiti.graph.Edge;
+import org.graffiti.graph.Graph;
 import org.graffiti.graph.Node;
 import org.vanted.addons.lmme.core.LMMEController;
 import org.vanted.addons.lmme.graphs.BaseGraph;
+import org.vanted.addons.lmme.graphs.BaseGraphIndex;
 import org.vanted.addons.lmme.graphs.SubsystemGraph;
+import org.vanted.addons.lmme.ui.LMMETab;
 
 import de.ipk_gatersleben.ag_nw.graffiti.plugins.ios.sbml.SBML_Constants;
 
 /**
  * This method determines a decomposition of the model based on the compartment
  * information available in the model.
+ * <p>
+ * Each compartment forms a subsystem with its species. A reaction is assigned to
+ * the compartment that most of its species belong to, or alternatively to the
+ * first of their compartments in the order of the model. Optionally, nested
+ * compartments are merged into their enclosing compartment up to a given depth,
+ * according to the outside compartments given in the SBML file.
  *
  * @author Michael Aichem
  */
 public class CompartmentMMDecomposition extends MMDecompositionAlgorithm {
 	
+	private static final String RULE_MAJORITY = "Majority of species";
+	
+	private static final String RULE_FIRST = "First compartment";
+	
+	/**
+	 * The graph attribute path prefix and attribute name under which the VANTED
+	 * SBML reader stores the outside compartment of each compartment.
+	 */
+	private static final String COMPARTMENT_ATTRIBUTE_PATH = "sbml_compartment_";
+	private static final String OUTSIDE_ATTRIBUTE = "outside";
+	
 	private FolderPanel fp;
 	
+	private JComboBox<String> cbRule;
+	
+	private JCheckBox ckbMergeNested;
+	
+	private JTextField tfMaximumDepth;
+	
+	private int defaultMaximumDepth = 0;
+	
 	@Override
 	protected ArrayList<SubsystemGraph> runSpecific(HashSet<Node> alreadyClassifiedNodes) {
 		
-		HashSet<String> compartments = new HashSet<String>();
-		HashMap<String, String> compartmentAbbreviations = new HashMap<String, String>();
-		
 		BaseGraph baseGraph = LMMEController.getInstance().getCurrentSession().getBaseGraph();
+		BaseGraphIndex index = baseGraph.getIndex();
+		int numberOfCompartments = index.getNumberOfCompartments();
 		
-		for (Node speciesNode : baseGraph.getSpeciesNodes()) {
-			if (!alreadyClassifiedNodes.contains(speciesNode)) {
-				if (AttributeHelper.hasAttribute(speciesNode, SBML_Constants.SBML, SBML_Constants.COMPARTMENT)) {
-					String compNameShort = (String) AttributeHelper.getAttributeValue(speciesNode, SBML_Constants.SBML,
-							SBML_Constants.COMPARTMENT, "", "");
-					compartments.add(compNameShort);
-					if (AttributeHelper.hasAttribute(speciesNode, SBML_Constants.SBML, SBML_Constants.SPECIES_COMPARTMENT_NAME)) {
-						String compNameLong = (String) AttributeHelper.getAttributeValue(speciesNode, SBML_Constants.SBML,
-								SBML_Constants.SPECIES_COMPARTMENT_NAME, "", "");
-						compartmentAbbreviations.put(compNameShort, compNameLong);
-					}
+		// The subsystem of each compartment, which is the compartment itself unless nested compartments are merged.
+		int[] groups = new int[numberOfCompartments];
+		for (int c = 0; c < numberOfCompartments; c++) {
+			groups[c] = c;
+		}
+		if (this.ckbMergeNested != null && this.ckbMergeNested.isSelected()) {
+			groups = mergeNestedCompartments(baseGraph.getOriginalGraph(), index, readMaximumDepth());
+		}
+		
+		SubsystemGraph[] subsystems = new SubsystemGraph[numberOfCompartments];
+		String[] longNames = new String[numberOfCompartments];
+		boolean[] longNameRead = new boolean[numberOfCompartments];
+		for (int speciesId = 0; speciesId < index.getNumberOfSpecies(); speciesId++) {
+			int compartment = index.getCompartment(speciesId);
+			if (compartment == BaseGraphIndex.NO_COMPARTMENT) {
+				continue;
+			}
+			Node speciesNode = index.getNode(speciesId);
+			if (!longNameRead[compartment]) {
+				longNameRead[compartment] = true;
+				if (AttributeHelper.hasAttribute(speciesNode, SBML_Constants.SBML, SBML_Constants.SPECIES_COMPARTMENT_NAME)) {
+					longNames[compartment] = (String) AttributeHelper.getAttributeValue(speciesNode, SBML_Constants.SBML,
+							SBML_Constants.SPECIES_COMPARTMENT_NAME, "", "");
 				}
 			}
+			int group = groups[compartment];
+			if (subsystems[group] == null) {
+				subsystems[group] = new SubsystemGraph("", new HashSet<>(), new HashSet<>(), new HashSet<>());
+			}
+			subsystems[group].addSpecies(speciesNode);
 		}
 		
-		ArrayList<SubsystemGraph> subsystems = new ArrayList<SubsystemGraph>();
-		
-		for (String compartment : compartments) {
-			String compLongName = compartmentAbbreviations.get(compartment);
-			String compName = compLongName == null ? "Compartment " + compartment : compLongName;
-			SubsystemGraph subsystem = new SubsystemGraph(compName, new HashSet<>(),
-					new HashSet<>(), new HashSet<>());
-			for (Node speciesNode : baseGraph.getSpeciesNodes()) {
-				if (compartment.equals((String) AttributeHelper.getAttributeValue(speciesNode, SBML_Constants.SBML,
-						SBML_Constants.COMPARTMENT, "", ""))) {
-					subsystem.addSpecies(speciesNode);
-					Collection<Edge> edgeSet = speciesNode.getEdges();
-					for (Edge edge : edgeSet) {
-						Node neighbor;
-						if (edge.getSource() == speciesNode) {
-							neighbor = edge.getTarget();
-						} else {
-							neighbor = edge.getSource();
-						}
-						if (!alreadyClassifiedNodes.contains(neighbor)) {
-							subsystem.addReaction(neighbor);
-							alreadyClassifiedNodes.add(neighbor);
-							for (Edge incidentEdge : neighbor.getEdges()) {
-								subsystem.addEdge(incidentEdge);
-								if (incidentEdge.getSource() == neighbor) {
-									subsystem.addSpecies(incidentEdge.getTarget());
-								} else {
-									subsystem.addSpecies(incidentEdge.getSource());
-								}
-							}
-							subsystem.addEdge(edge);
-						}
+		boolean majority = this.cbRule == null || RULE_MAJORITY.equals(this.cbRule.getSelectedItem());
+		int[] counts = new int[numberOfCompartments];
+		int[] touched = new int[numberOfCompartments];
+		int[] inOffsets = index.getInOffsets();
+		int[] inNeighbors = index.getInNeighbors();
+		Edge[] inEdges = index.getInEdges();
+		int[] outOffsets = index.getOutOffsets();
+		int[] outNeighbors = index.getOutNeighbors();
+		Edge[] outEdges = index.getOutEdges();
+		for (int reactionId = index.getFirstReactionId(); reactionId < index.getNumberOfNodes(); reactionId++) {
+			Node reactionNode = index.getNode(reactionId);
+			if (alreadyClassifiedNodes.contains(reactionNode)) {
+				continue;
+			}
+			int numberOfTouched = 0;
+			for (int pass = 0; pass < 2; pass++) {
+				int[] offsets = pass == 0 ? inOffsets : outOffsets;
+				int[] neighbors = pass == 0 ? inNeighbors : outNeighbors;
+				for (int k = offsets[reactionId]; k < offsets[reactionId + 1]; k++) {
+					int compartment = index.getCompartment(neighbors[k]);
+					if (compartment != BaseGraphIndex.NO_COMPARTMENT && counts[groups[compartment]]++ == 0) {
+						touched[numberOfTouched++] = groups[compartment];
 					}
 				}
 			}
-			subsystems.add(subsystem);
+			int bestGroup = -1;
+			for (int i = 0; i < numberOfTouched; i++) {
+				int group = touched[i];
+				if (bestGroup == -1 || (majority && counts[group] > counts[bestGroup])
+						|| ((!majority || counts[group] == counts[bestGroup]) && group < bestGroup)) {
+					bestGroup = group;
+				}
+			}
+			for (int i = 0; i < numberOfTouched; i++) {
+				counts[touched[i]] = 0;
+			}
+			if (bestGroup == -1) {
+				continue;
+			}
+			
+			SubsystemGraph subsystem = subsystems[bestGroup];
+			subsystem.addReaction(reactionNode);
+			for (int k = inOffsets[reactionId]; k < inOffsets[reactionId + 1]; k++) {
+				subsystem.addEdge(inEdges[k]);
+				subsystem.addSpecies(index.getNode(inNeighbors[k]));
+			}
+			for (int k = outOffsets[reactionId]; k < outOffsets[reactionId + 1]; k++) {
+				subsystem.addEdge(outEdges[k]);
+				subsystem.addSpecies(index.getNode(outNeighbors[k]));
+			}
+		}
+		
+		ArrayList<SubsystemGraph> result = new ArrayList<SubsystemGraph>();
+		for (int group = 0; group < numberOfCompartments; group++) {
+			if (subsystems[group] != null) {
+				String compLongName = longNames[group];
+				subsystems[group].setName(compLongName == null ? "Compartment " + index.getCompartmentName(group) : compLongName);
+				result.add(subsystems[group]);
+			}
+		}
+		return result;
+	}
+	
+	/**
+	 * Maps each compartment to the compartment that encloses it at the given
+	 * nesting depth, where the compartments without an outside compartment have
+	 * depth 0. Compartments that are not nested as deeply are mapped to
+	 * themselves.
+	 * 
+	 * @param graph
+	 *           the graph that holds the SBML compartment attributes
+	 * @param index
+	 *           the index of the base graph
+	 * @param maximumDepth
+	 *           the depth of the compartments that remain
+	 * @return the enclosing compartment for each compartment id
+	 */
+	private int[] mergeNestedCompartments(Graph graph, BaseGraphIndex index, int maximumDepth) {
+		int numberOfCompartments = index.getNumberOfCompartments();
+		int[] outside = new int[numberOfCompartments];
+		Arrays.fill(outside, -1);
+		for (int c = 0; c < numberOfCompartments; c++) {
+			String outsideName = (String) AttributeHelper.getAttributeValue(graph,
+					COMPARTMENT_ATTRIBUTE_PATH + index.getCompartmentName(c), OUTSIDE_ATTRIBUTE, "", "");
+			for (int d = 0; d < numberOfCompartments && outsideName != null && !outsideName.isEmpty(); d++) {
+				if (d != c && outsideName.equals(index.getCompartmentName(d))) {
+					outside[c] = d;
+					break;
+				}
+			}
+		}
+		
+		int[] groups = new int[numberOfCompartments];
+		ArrayList<Integer> path = new ArrayList<>();
+		for (int c = 0; c < numberOfCompartments; c++) {
+			// The path from the compartment to its outermost compartment, cut off at cycles.
+			path.clear();
+			int current = c;
+			while (current != -1 && path.size() <= numberOfCompartments) {
+				path.add(Integer.valueOf(current));
+				current = outside[current];
+			}
+			int depth = path.size() - 1;
+			groups[c] = depth <= maximumDepth ? c : path.get(depth - maximumDepth).intValue();
+		}
+		return groups;
+	}
+	
+	private int readMaximumDepth() {
+		int res;
+		try {
+			res = Integer.parseInt(this.tfMaximumDepth.getText().trim());
+			if (res < 0) {
+				throw new NumberFormatException();
+			}
+		} catch (NumberFormatException e) {
+			JOptionPane.showMessageDialog(null, "The maximum nesting depth could not be read or is negative. "
+					+ "It has therefore been set to " + this.defaultMaximumDepth + ".");
+			res = this.defaultMaximumDepth;
 		}
-		return subsystems;
+		return res;
 	}
 	
 	@Override
@@ -117,8 +248,24 @@ public class CompartmentMMDecomposition extends MMDecompositionAlgorithm {
 			updateFolderPanel();
 		} else {
 			fp = new FolderPanel(getName() + " Settings", false, true, false, null);
-			GuiRow row = new GuiRow(new JLabel("No settings."), null);
-			fp.addGuiComponentRow(row, true);
+			
+			this.cbRule = new JComboBox<>(new String[] { RULE_MAJORITY, RULE_FIRST });
+			this.cbRule.setToolTipText("<html>How reactions whose species lie in several compartments are assigned:<br>"
+					+ "to the compartment of most of their species, or to the first of their compartments in the model.</html>");
+			JPanel ruleLine = LMMETab.combine(new JLabel("Assign reactions by: "), this.cbRule, Color.WHITE, false, true);
+			fp.addGuiComponentRow(ruleLine, null, true);
+			
+			this.ckbMergeNested = new JCheckBox("Merge Nested Compartments");
+			this.ckbMergeNested.setToolTipText("If selected, compartments that lie within other compartments are merged into them.");
+			this.ckbMergeNested.setBackground(Color.WHITE);
+			fp.addGuiComponentRow(FolderPanel.getBorderedComponent(this.ckbMergeNested, 5, 0, 0, 0), null, true);
+			
+			this.tfMaximumDepth = new JTextField(5);
+			this.tfMaximumDepth.setText(Integer.toString(this.defaultMaximumDepth));
+			this.tfMaximumDepth.setToolTipText("<html>The nesting depth of the compartments that are kept when merging,<br>"
+					+ "0 keeps the outermost compartments only.</html>");
+			JPanel depthLine = LMMETab.combine(new JLabel("Maximum nesting depth: "), this.tfMaximumDepth, Color.WHITE, false, true);
+			fp.addGuiComponentRow(depthLine, null, true);
 		}
 		return fp;
 		
@@ -0,0 +1,442 @@
+/*******************************************************************************
+ * LMME is a VANTED Add-on for the exploration of large metabolic models.
+ * Copyright (C) 2020 Chair for Life Science Informatics, University of Konstanz
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package org.vanted.addons.lmme.decomposition;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.graffiti.editor.MainFrame;
+import org.graffiti.editor.MessageType;
+import org.vanted.addons.lmme.graphs.BaseGraphIndex;
+
+/**
+ * Divisive clustering of the species/reaction graph by repeatedly removing the edge with the highest betweenness, as proposed by Girvan and Newman.
+ * <p>
+ * The graph is treated as undirected and simple, see {@link UndirectedSimpleGraph}. Edge betweenness is computed with the algorithm of Brandes, where
+ * the breadth-first searches from the individual sources are distributed over the threads of a {@link ForkJoinPool}, each of which accumulates into its
+ * own primitive array. After an edge has been removed, the betweenness only changes within the component that contained this edge, so only the sources
+ * of that component are searched again.
+ * 
+ * @author Michael Aichem
+ */
+public class EdgeBetweennessClustering {
+	
+	public enum StoppingCriterion {
+		
+		/**
+		 * Stop once the modularity has not improved for a number of splits and return the partition with the highest modularity.
+		 */
+		MODULARITY_PEAK("Modularity peak"),
+		
+		/**
+		 * Stop as soon as the given number of subsystems has been reached.
+		 */
+		TARGET_NUMBER("Number of subsystems");
+		
+		private final String description;
+		
+		private StoppingCriterion(String description) {
+			this.description = description;
+		}
+		
+		@Override
+		public String toString() {
+			return description;
+		}
+	}
+	
+	/**
+	 * The number of splits without improvement of the modularity after which the search for the modularity peak is stopped.
+	 */
+	private static final int MODULARITY_PATIENCE = 25;
+	
+	private final int numberOfNodes;
+	private final int numberOfEdges;
+	private final int firstReactionId;
+	
+	private final int[] edgeSource;
+	private final int[] edgeTarget;
+	private final int[] adjOffsets;
+	private final int[] adjNodes;
+	private final int[] adjEdges;
+	private final int[] degree;
+	
+	private final boolean[] excludedNodes;
+	
+	private final boolean[] removed;
+	private final double[] betweenness;
+	
+	private int[] labels;
+	private int nextLabel;
+	
+	/**
+	 * The queue for the breadth-first searches that label the components.
+	 */
+	private final int[] queue;
+	
+	private double modularity;
+	
+	/**
+	 * Creates the undirected, simple graph on which the clustering is performed.
+	 * 
+	 * @param index
+	 *           the index of the graph to be clustered
+	 * @param excludedNodes
+	 *           the nodes that are not to be clustered and whose edges are left out, indexed by node id, or {@code null}
+	 */
+	public EdgeBetweennessClustering(BaseGraphIndex index, boolean[] excludedNodes) {
+		
+		UndirectedSimpleGraph graph = new UndirectedSimpleGraph(index, excludedNodes);
+		this.numberOfNodes = graph.numberOfNodes;
+		this.numberOfEdges = graph.numberOfEdges;
+		this.firstReactionId = graph.firstReactionId;
+		this.edgeSource = graph.edgeSources;
+		this.edgeTarget = graph.edgeTargets;
+		this.adjOffsets = graph.offsets;
+		this.adjNodes = graph.neighbors;
+		this.adjEdges = graph.edges;
+		this.degree = new int[numberOfNodes];
+		for (int v = 0; v < numberOfNodes; v++) {
+			degree[v] = graph.getDegree(v);
+		}
+		this.excludedNodes = excludedNodes;
+		
+		this.removed = new boolean[numberOfEdges];
+		this.betweenness = new double[numberOfEdges];
+		this.queue = new int[numberOfNodes];
+	}
+	
+	/**
+	 * Performs the clustering.
+	 * 
+	 * @param stoppingCriterion
+	 *           when to stop removing edges
+	 * @param targetNumberOfSubsystems
+	 *           the number of subsystems to be reached, only considered for {@link StoppingCriterion#TARGET_NUMBER}
+	 * @return the cluster label for each node id of the index, where excluded nodes form components of their own
+	 */
+	public int[] run(StoppingCriterion stoppingCriterion, int targetNumberOfSubsystems) {
+		
+		this.labels = new int[numberOfNodes];
+		Arrays.fill(labels, -1);
+		this.nextLabel = 0;
+		int numberOfSubsystems = 0;
+		for (int v = 0; v < numberOfNodes; v++) {
+			if (labels[v] == -1) {
+				if (labelComponent(v, nextLabel++)) {
+					numberOfSubsystems++;
+				}
+			}
+		}
+		
+		int[] allNodes = new int[numberOfNodes];
+		for (int v = 0; v < numberOfNodes; v++) {
+			allNodes[v] = v;
+		}
+		accumulateBetweenness(allNodes);
+		
+		this.modularity = computeModularity();
+		double bestModularity = modularity;
+		int[] bestLabels = labels.clone();
+		int splitsSinceBest = 0;
+		int removedEdges = 0;
+		
+		while (removedEdges < numberOfEdges) {
+			if (stoppingCriterion == StoppingCriterion.TARGET_NUMBER && numberOfSubsystems >= targetNumberOfSubsystems) {
+				break;
+			}
+			if (stoppingCriterion == StoppingCriterion.MODULARITY_PEAK && splitsSinceBest >= MODULARITY_PATIENCE) {
+				break;
+			}
+			
+			int maxEdge = -1;
+			for (int e = 0; e < numberOfEdges; e++) {
+				if (!removed[e] && (maxEdge == -1 || betweenness[e] > betweenness[maxEdge])) {
+					maxEdge = e;
+				}
+			}
+			
+			// Collect the component of the edge before removing it.
+			int[] component = collectComponent(edgeSource[maxEdge]);
+			
+			removed[maxEdge] = true;
+			removedEdges++;
+			betweenness[maxEdge] = 0;
+			for (int v : component) {
+				for (int k = adjOffsets[v]; k < adjOffsets[v + 1]; k++) {
+					betweenness[adjEdges[k]] = 0;
+				}
+			}
+			
+			// Relabel the component, which either stayed connected or fell apart into two parts.
+			for (int v : component) {
+				labels[v] = -1;
+			}
+			int subsystemsInComponent = 0;
+			for (int v : component) {
+				if (labels[v] == -1) {
+					if (labelComponent(v, nextLabel++)) {
+						subsystemsInComponent++;
+					}
+				}
+			}
+			
+			accumulateBetweenness(component);
+			
+			if (labels[edgeSource[maxEdge]] != labels[edgeTarget[maxEdge]]) {
+				numberOfSubsystems += subsystemsInComponent - 1;
+				this.modularity = computeModularity();
+				if (modularity > bestModularity) {
+					bestModularity = modularity;
+					bestLabels = labels.clone();
+					splitsSinceBest = 0;
+				} else {
+					splitsSinceBest++;
+				}
+				MainFrame.showMessage("Girvan-Newman: " + numberOfSubsystems + " subsystems, modularity "
+						+ String.format("%.4f", modularity), MessageType.PERMANENT_INFO);
+			}
+		}
+		
+		if (stoppingCriterion == StoppingCriterion.MODULARITY_PEAK) {
+			this.labels = bestLabels;
+			this.modularity = bestModularity;
+		}
+		return labels;
+	}
+	
+	/**
+	 * Gets the modularity of the partition that has been returned by {@link #run(StoppingCriterion, int)}, with respect to the unmodified graph.
+	 * 
+	 * @return the modularity
+	 */
+	public double getModularity() {
+		return modularity;
+	}
+	
+	/**
+	 * Assigns the given label to all nodes that are reachable from the given start node via edges that have not been removed.
+	 * 
+	 * @param start
+	 *           the start node, which must not be labeled yet
+	 * @param label
+	 *           the label to be assigned
+	 * @return whether the component contains a reaction that is not excluded
+	 */
+	private boolean labelComponent(int start, int label) {
+		boolean containsReaction = false;
+		int head = 0;
+		int tail = 0;
+		queue[tail++] = start;
+		labels[start] = label;
+		while (head < tail) {
+			int v = queue[head++];
+			containsReaction |= v >= firstReactionId && (excludedNodes == null || !excludedNodes[v]);
+			for (int k = adjOffsets[v]; k < adjOffsets[v + 1]; k++) {
+				int w = adjNodes[k];
+				if (!removed[adjEdges[k]] && labels[w] == -1) {
+					labels[w] = label;
+					queue[tail++] = w;
+				}
+			}
+		}
+		return containsReaction;
+	}
+	
+	/**
+	 * Collects all nodes that carry the same label as the given node. As long as no edge has been removed after labeling, these are exactly the nodes
+	 * of the component of the given node.
+	 * 
+	 * @param start
+	 *           a node of the component
+	 * @return the nodes of the component
+	 */
+	private int[] collectComponent(int start) {
+		int label = labels[start];
+		int head = 0;
+		int tail = 0;
+		queue[tail++] = start;
+		labels[start] = -2;
+		while (head < tail) {
+			int v = queue[head++];
+			for (int k = adjOffsets[v]; k < adjOffsets[v + 1]; k++) {
+				int w = adjNodes[k];
+				if (!removed[adjEdges[k]] && labels[w] == label) {
+					labels[w] = -2;
+					queue[tail++] = w;
+				}
+			}
+		}
+		int[] component = Arrays.copyOf(queue, tail);
+		for (int v : component) {
+			labels[v] = label;
+		}
+		return component;
+	}
+	
+	/**
+	 * Computes the modularity of the current labels with respect to the unmodified graph.
+	 * 
+	 * @return the modularity
+	 */
+	private double computeModularity() {
+		if (numberOfEdges == 0) {
+			return 0.0;
+		}
+		long[] internalEdges = new long[nextLabel];
+		long[] degreeSum = new long[nextLabel];
+		for (int e = 0; e < numberOfEdges; e++) {
+			if (labels[edgeSource[e]] == labels[edgeTarget[e]]) {
+				internalEdges[labels[edgeSource[e]]]++;
+			}
+		}
+		for (int v = 0; v < numberOfNodes; v++) {
+			degreeSum[labels[v]] += degree[v];
+		}
+		double m = numberOfEdges;
+		double q = 0.0;
+		for (int label = 0; label < nextLabel; label++) {
+			double fraction = degreeSum[label] / (2.0 * m);
+			q += internalEdges[label] / m - fraction * fraction;
+		}
+		return q;
+	}
+	
+	/**
+	 * Adds the betweenness contributions of the shortest paths starting at the given sources to {@link #betweenness}.
+	 * 
+	 * @param sources
+	 *           the source nodes
+	 */
+	private void accumulateBetweenness(int[] sources) {
+		int parallelism = Math.max(1, Math.min(ForkJoinPool.commonPool().getParallelism(), sources.length / 64));
+		AtomicInteger nextSource = new AtomicInteger(0);
+		ArrayList<Callable<double[]>> tasks = new ArrayList<>();
+		for (int t = 0; t < parallelism; t++) {
+			tasks.add(new Callable<double[]>() {
+				public double[] call() {
+					double[] accumulator = new double[numberOfEdges];
+					BrandesBuffers buffers = new BrandesBuffers(numberOfNodes);
+					int i;
+					while ((i = nextSource.getAndIncrement()) < sources.length) {
+						singleSourceBrandes(sources[i], buffers, accumulator);
+					}
+					return accumulator;
+				}
+			});
+		}
+		if (parallelism == 1) {
+			try {
+				addAccumulator(tasks.get(0).call());
+			} catch (Exception e) {
+				throw new IllegalStateException(e);
+			}
+			return;
+		}
+		try {
+			for (Future<double[]> future : ForkJoinPool.commonPool().invokeAll(tasks)) {
+				addAccumulator(future.get());
+			}
+		} catch (InterruptedException | ExecutionException e) {
+			throw new IllegalStateException("Computation of the edge betweenness failed.", e);
+		}
+	}
+	
+	private void addAccumulator(double[] accumulator) {
+		for (int e = 0; e < numberOfEdges; e++) {
+			betweenness[e] += accumulator[e];
+		}
+	}
+	
+	/**
+	 * Performs the breadth-first search and the dependency accumulation of Brandes' algorithm for a single source.
+	 */
+	private void singleSourceBrandes(int source, BrandesBuffers buffers, double[] accumulator) {
+		int[] distance = buffers.distance;
+		double[] sigma = buffers.sigma;
+		double[] delta = buffers.delta;
+		int[] order = buffers.order;
+		
+		int head = 0;
+		int tail = 0;
+		order[tail++] = source;
+		distance[source] = 0;
+		sigma[source] = 1.0;
+		while (head < tail) {
+			int v = order[head++];
+			for (int k = adjOffsets[v]; k < adjOffsets[v + 1]; k++) {
+				if (removed[adjEdges[k]]) {
+					continue;
+				}
+				int w = adjNodes[k];
+				if (distance[w] < 0) {
+					distance[w] = distance[v] + 1;
+					order[tail++] = w;
+				}
+				if (distance[w] == distance[v] + 1) {
+					sigma[w] += sigma[v];
+				}
+			}
+		}
+		
+		for (int i = tail - 1; i >= 0; i--) {
+			int w = order[i];
+			for (int k = adjOffsets[w]; k < adjOffsets[w + 1]; k++) {
+				if (removed[adjEdges[k]]) {
+					continue;
+				}
+				int v = adjNodes[k];
+				if (distance[v] == distance[w] - 1) {
+					double contribution = sigma[v] / sigma[w] * (1.0 + delta[w]);
+					accumulator[adjEdges[k]] += contribution;
+					delta[v] += contribution;
+				}
+			}
+		}
+		
+		// Only reset the entries that have been touched.
+		for (int i = 0; i < tail; i++) {
+			int v = order[i];
+			distance[v] = -1;
+			sigma[v] = 0.0;
+			delta[v] = 0.0;
+		}
+	}
+	
+	/**
+	 * The per-thread working arrays of Brandes' algorithm.
+	 */
+	private static class BrandesBuffers {
+		
+		final int[] distance;
+		final double[] sigma;
+		final double[] delta;
+		final int[] order;
+		
+		BrandesBuffers(int numberOfNodes) {
+			distance = new int[numberOfNodes];
+			Arrays.fill(distance, -1);
+			sigma = new double[numberOfNodes];
+			delta = new double[numberOfNodes];
+			order = new int[numberOfNodes];
+		}
+	}
+	
+}
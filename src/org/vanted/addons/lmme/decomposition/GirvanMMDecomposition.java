@@ -14,12 +14,22 @@
  ******************************************************************************/
 package org.vanted.addons.lmme.decomposition;
 
+import java.awt.Color;
 import java.util.ArrayList;
 import java.util.HashSet;
 
+import javax.swing.JComboBox;
+import javax.swing.JLabel;
+import javax.swing.JOptionPane;
+import javax.swing.JPanel;
+import javax.swing.JTextField;
+
 import org.FolderPanel;
 import org.graffiti.graph.Node;
+import org.vanted.addons.lmme.core.LMMEController;
+import org.vanted.addons.lmme.graphs.BaseGraphIndex;
 import org.vanted.addons.lmme.graphs.SubsystemGraph;
+import org.vanted.addons.lmme.ui.LMMETab;
 
 /**
  * This class is an implementation of the method that has
@@ -34,11 +44,56 @@ import org.vanted.addons.lmme.graphs.SubsystemGraph;
  */
 public class GirvanMMDecomposition extends MMDecompositionAlgorithm {
 	
+	private int defaultTargetNumber = 20;
+	
+	private JComboBox<EdgeBetweennessClustering.StoppingCriterion> cbStoppingCriterion;
+	
+	private JTextField tfTargetNumber;
+	
+	private final String ATTRIBUTE_NAME_SUBSYSTEM = "GirvanSubsystem";
+	
 	@Override
 	protected ArrayList<SubsystemGraph> runSpecific(HashSet<Node> alreadyClassifiedNodes) {
-		return null;
-		// TODO Auto-generated method stub
 		
+		BaseGraphIndex index = LMMEController.getInstance().getCurrentSession().getBaseGraph().getIndex();
+		
+		EdgeBetweennessClustering.StoppingCriterion stoppingCriterion = (EdgeBetweennessClustering.StoppingCriterion) this.cbStoppingCriterion
+				.getSelectedItem();
+		int targetNumber = stoppingCriterion == EdgeBetweennessClustering.StoppingCriterion.TARGET_NUMBER ? readTargetNumber() : 0;
+		
+		// Already classified reactions, such as transporters, must not connect the subsystems.
+		boolean[] excludedNodes = new boolean[index.getNumberOfNodes()];
+		for (Node node : alreadyClassifiedNodes) {
+			int id = index.getId(node);
+			if (id != -1) {
+				excludedNodes[id] = true;
+			}
+		}
+		
+		EdgeBetweennessClustering clustering = new EdgeBetweennessClustering(index, excludedNodes);
+		int[] labels = clustering.run(stoppingCriterion, targetNumber);
+		LMMEController.getInstance().getTab().logMsg("Girvan-Newman decomposition finished with a modularity of "
+				+ String.format("%.4f", clustering.getModularity()) + ".");
+		
+		int maxLabel = 0;
+		for (int label : labels) {
+			maxLabel = Math.max(maxLabel, label);
+		}
+		int[] subsystemNumbers = new int[maxLabel + 1];
+		int count = 0;
+		for (int reactionId = index.getFirstReactionId(); reactionId < index.getNumberOfNodes(); reactionId++) {
+			if (excludedNodes[reactionId]) {
+				continue;
+			}
+			int label = labels[reactionId];
+			if (subsystemNumbers[label] == 0) {
+				subsystemNumbers[label] = ++count;
+			}
+			LMMEController.getInstance().getCurrentSession().addNodeAttribute(index.getNode(reactionId),
+					this.ATTRIBUTE_NAME_SUBSYSTEM, "Girvan-Newman Subsystem " + subsystemNumbers[label]);
+		}
+		
+		return determineSubsystemsFromReactionAttributes(this.ATTRIBUTE_NAME_SUBSYSTEM, false, "", alreadyClassifiedNodes);
 	}
 	
 	@Override
@@ -48,15 +103,38 @@ public class GirvanMMDecomposition extends MMDecompositionAlgorithm {
 	
 	@Override
 	public FolderPanel getFolderPanel() {
-		FolderPanel fp = new FolderPanel(getName(), false, true, false, null);
+		FolderPanel fp = new FolderPanel(getName() + " Settings", false, true, false, null);
+		
+		this.cbStoppingCriterion = new JComboBox<>(EdgeBetweennessClustering.StoppingCriterion.values());
+		this.cbStoppingCriterion.setToolTipText("<html>Whether to stop at the highest modularity that has been found,<br>"
+				+ "or as soon as the specified number of subsystems has been reached.</html>");
+		JPanel criterionLine = LMMETab.combine(new JLabel("Stop at: "), this.cbStoppingCriterion, Color.WHITE, false, true);
+		fp.addGuiComponentRow(criterionLine, null, true);
+		
+		this.tfTargetNumber = new JTextField(5);
+		this.tfTargetNumber.setText(Integer.toString(this.defaultTargetNumber));
+		JPanel targetNumberLine = LMMETab.combine(new JLabel("Number of subsystems: "), this.tfTargetNumber, Color.WHITE, false,
+				true);
+		fp.addGuiComponentRow(targetNumberLine, null, true);
 		
 		return fp;
 	}
 	
 	@Override
 	public void updateFolderPanel() {
-		// TODO Auto-generated method stub
-		
+		// no need to do sth.
+	}
+	
+	private int readTargetNumber() {
+		int res;
+		try {
+			res = Integer.parseInt(this.tfTargetNumber.getText());
+		} catch (NumberFormatException e) {
+			JOptionPane.showMessageDialog(null, "The number of subsystems could not be read. "
+					+ "It has therefore been set to " + this.defaultTargetNumber + ".");
+			res = this.defaultTargetNumber;
+		}
+		return res;
 	}
 	
 	@Override
@@ -0,0 +1,195 @@
+/*******************************************************************************
+ * LMME is a VANTED Add-on for the exploration of large metabolic models.
+ * Copyright (C) 2020 Chair for Life Science Informatics, University of Konstanz
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package org.vanted.addons.lmme.decomposition;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ * Assigns reactions to pathways greedily, such that few pathways cover many reactions.
+ * <p>
+ * In each step, the pathway that most of the not yet assigned reactions may belong to is selected, and all of these reactions are assigned to it.
+ * Pathways that fewer reactions than the given minimum may belong to are never selected, their reactions remain unassigned if they have no other
+ * pathway.
+ * <p>
+ * The number of candidate reactions of each pathway is kept in an indexed max-heap. Assigning a reaction decrements the numbers of its other pathways,
+ * such that the whole assignment takes {@code O(R k log P)} time, for {@code R} reactions with up to {@code k} pathways each and {@code P} pathways.
+ * Ties are broken by the pathway name.
+ * 
+ * @author Michael Aichem
+ */
+class GreedyPathwayCover {
+	
+	private final String[] pathwayNames;
+	
+	/**
+	 * The reactions of pathway {@code p} are {@code pathwayReactions[pathwayOffsets[p]]} to {@code pathwayReactions[pathwayOffsets[p + 1] - 1]}.
+	 */
+	private final int[] pathwayOffsets;
+	private final int[] pathwayReactions;
+	
+	private final int[] reactionOffsets;
+	private final int[] reactionPathways;
+	
+	private final int[] counts;
+	
+	private final int[] heap;
+	private final int[] heapPositions;
+	private int heapSize;
+	
+	private final ArrayList<String> assignmentOrder = new ArrayList<>();
+	
+	/**
+	 * Prepares the assignment.
+	 * 
+	 * @param candidatePathways
+	 *           the candidate pathways of each reaction, each reaction is given by its position in the list
+	 */
+	GreedyPathwayCover(List<? extends List<String>> candidatePathways) {
+		TreeSet<String> sortedNames = new TreeSet<>();
+		for (List<String> pathways : candidatePathways) {
+			sortedNames.addAll(pathways);
+		}
+		this.pathwayNames = sortedNames.toArray(new String[0]);
+		HashMap<String, Integer> pathwayIds = new HashMap<>();
+		for (int p = 0; p < pathwayNames.length; p++) {
+			pathwayIds.put(pathwayNames[p], Integer.valueOf(p));
+		}
+		
+		int numberOfReactions = candidatePathways.size();
+		int numberOfPathways = pathwayNames.length;
+		this.reactionOffsets = new int[numberOfReactions + 1];
+		for (int r = 0; r < numberOfReactions; r++) {
+			reactionOffsets[r + 1] = reactionOffsets[r] + candidatePathways.get(r).size();
+		}
+		this.reactionPathways = new int[reactionOffsets[numberOfReactions]];
+		this.pathwayOffsets = new int[numberOfPathways + 1];
+		for (int r = 0; r < numberOfReactions; r++) {
+			int k = reactionOffsets[r];
+			for (String pathway : candidatePathways.get(r)) {
+				int p = pathwayIds.get(pathway).intValue();
+				reactionPathways[k++] = p;
+				pathwayOffsets[p + 1]++;
+			}
+		}
+		for (int p = 0; p < numberOfPathways; p++) {
+			pathwayOffsets[p + 1] += pathwayOffsets[p];
+		}
+		this.pathwayReactions = new int[reactionPathways.length];
+		int[] position = new int[numberOfPathways];
+		for (int r = 0; r < numberOfReactions; r++) {
+			for (int k = reactionOffsets[r]; k < reactionOffsets[r + 1]; k++) {
+				int p = reactionPathways[k];
+				pathwayReactions[pathwayOffsets[p] + position[p]++] = r;
+			}
+		}
+		
+		this.counts = new int[numberOfPathways];
+		this.heap = new int[numberOfPathways];
+		this.heapPositions = new int[numberOfPathways];
+		for (int p = 0; p < numberOfPathways; p++) {
+			counts[p] = pathwayOffsets[p + 1] - pathwayOffsets[p];
+			heap[p] = p;
+			heapPositions[p] = p;
+		}
+		this.heapSize = numberOfPathways;
+		for (int i = heapSize / 2 - 1; i >= 0; i--) {
+			siftDown(i);
+		}
+	}
+	
+	/**
+	 * Performs the assignment, which can be done once per instance.
+	 * 
+	 * @param minimumNumberOfReactions
+	 *           the minimum number of reactions a pathway must be assigned
+	 * @return the assigned pathway of each reaction, or {@code null} for unassigned reactions
+	 */
+	String[] run(int minimumNumberOfReactions) {
+		String[] assignment = new String[reactionOffsets.length - 1];
+		boolean[] assigned = new boolean[assignment.length];
+		assignmentOrder.clear();
+		while (heapSize > 0 && counts[heap[0]] >= Math.max(1, minimumNumberOfReactions)) {
+			int p = pop();
+			assignmentOrder.add(pathwayNames[p]);
+			for (int k = pathwayOffsets[p]; k < pathwayOffsets[p + 1]; k++) {
+				int r = pathwayReactions[k];
+				if (assigned[r]) {
+					continue;
+				}
+				assigned[r] = true;
+				assignment[r] = pathwayNames[p];
+				for (int l = reactionOffsets[r]; l < reactionOffsets[r + 1]; l++) {
+					int q = reactionPathways[l];
+					if (q != p && heapPositions[q] != -1) {
+						counts[q]--;
+						siftDown(heapPositions[q]);
+					}
+				}
+			}
+		}
+		return assignment;
+	}
+	
+	/**
+	 * Gets the pathways in the order in which they have been selected by {@link #run(int)}.
+	 * 
+	 * @return the pathway names
+	 */
+	List<String> getAssignmentOrder() {
+		return Collections.unmodifiableList(assignmentOrder);
+	}
+	
+	private boolean isBefore(int p, int q) {
+		return counts[p] > counts[q] || (counts[p] == counts[q] && p < q);
+	}
+	
+	private int pop() {
+		int p = heap[0];
+		int last = heap[--heapSize];
+		heapPositions[p] = -1;
+		if (heapSize > 0) {
+			heap[0] = last;
+			heapPositions[last] = 0;
+			siftDown(0);
+		}
+		return p;
+	}
+	
+	private void siftDown(int i) {
+		int p = heap[i];
+		while (true) {
+			int child = 2 * i + 1;
+			if (child >= heapSize) {
+				break;
+			}
+			if (child + 1 < heapSize && isBefore(heap[child + 1], heap[child])) {
+				child++;
+			}
+			if (!isBefore(heap[child], p)) {
+				break;
+			}
+			heap[i] = heap[child];
+			heapPositions[heap[i]] = i;
+			i = child;
+		}
+		heap[i] = p;
+		heapPositions[p] = i;
+	}
+	
+}
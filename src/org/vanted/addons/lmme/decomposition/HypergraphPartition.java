@@ -0,0 +1,189 @@
+/*******************************************************************************
+ * LMME is a VANTED Add-on for the exploration of large metabolic models.
+ * Copyright (C) 2020 Chair for Life Science Informatics, University of Konstanz
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package org.vanted.addons.lmme.decomposition;
+
+/**
+ * A partition of the vertices of a {@link ReactionHypergraph} into a fixed number of parts.
+ * <p>
+ * For each net, the parts it is connected to and the number of its pins in each of these parts are kept up to date. As a net is connected to few parts
+ * only, they are stored in a compact list within the range of the net, which is at most as long as the net itself.
+ * <p>
+ * The cost of a partition is its interface count, where a net that is connected to {@code l} parts counts {@code l * (l - 1) / 2} times, once for
+ * each pair of subsystems it connects. This matches the interfaces that are shown in the overview graph.
+ * 
+ * @author Michael Aichem
+ */
+class HypergraphPartition {
+	
+	final ReactionHypergraph graph;
+	final int numberOfParts;
+	
+	private final int[] parts;
+	private final long[] partWeights;
+	
+	/**
+	 * The number of parts each net is connected to.
+	 */
+	private final int[] connectivity;
+	private final int[] netParts;
+	private final int[] netPartCounts;
+	
+	/**
+	 * Creates a partition of the given hypergraph.
+	 * 
+	 * @param graph
+	 *           the hypergraph
+	 * @param numberOfParts
+	 *           the number of parts
+	 * @param parts
+	 *           the initial part of each vertex, this array is copied
+	 */
+	HypergraphPartition(ReactionHypergraph graph, int numberOfParts, int[] parts) {
+		this.graph = graph;
+		this.numberOfParts = numberOfParts;
+		this.parts = parts.clone();
+		this.partWeights = new long[numberOfParts];
+		for (int v = 0; v < graph.numberOfVertices; v++) {
+			partWeights[parts[v]] += graph.vertexWeights[v];
+		}
+		this.connectivity = new int[graph.numberOfNets];
+		this.netParts = new int[graph.netPins.length];
+		this.netPartCounts = new int[graph.netPins.length];
+		for (int n = 0; n < graph.numberOfNets; n++) {
+			for (int k = graph.netOffsets[n]; k < graph.netOffsets[n + 1]; k++) {
+				increment(n, parts[graph.netPins[k]]);
+			}
+		}
+	}
+	
+	int getPart(int v) {
+		return parts[v];
+	}
+	
+	/**
+	 * Gets the parts of all vertices.
+	 * 
+	 * @return a copy of the parts
+	 */
+	int[] getParts() {
+		return parts.clone();
+	}
+	
+	long getPartWeight(int part) {
+		return partWeights[part];
+	}
+	
+	int getConnectivity(int n) {
+		return connectivity[n];
+	}
+	
+	/**
+	 * Gets the i-th part the given net is connected to.
+	 * 
+	 * @param n
+	 *           the net
+	 * @param i
+	 *           a number between 0 and {@link #getConnectivity(int)} - 1
+	 * @return the part
+	 */
+	int getConnectedPart(int n, int i) {
+		return netParts[graph.netOffsets[n] + i];
+	}
+	
+	/**
+	 * Gets the number of pins of the given net in the given part.
+	 * 
+	 * @param n
+	 *           the net
+	 * @param part
+	 *           the part
+	 * @return the number of pins
+	 */
+	int getPinCount(int n, int part) {
+		int start = graph.netOffsets[n];
+		for (int k = start; k < start + connectivity[n]; k++) {
+			if (netParts[k] == part) {
+				return netPartCounts[k];
+			}
+		}
+		return 0;
+	}
+	
+	/**
+	 * Moves the given vertex to the given part.
+	 * 
+	 * @param v
+	 *           the vertex
+	 * @param target
+	 *           the target part
+	 */
+	void move(int v, int target) {
+		int source = parts[v];
+		if (source == target) {
+			return;
+		}
+		parts[v] = target;
+		partWeights[source] -= graph.vertexWeights[v];
+		partWeights[target] += graph.vertexWeights[v];
+		for (int k = graph.vertexOffsets[v]; k < graph.vertexOffsets[v + 1]; k++) {
+			int n = graph.vertexNets[k];
+			decrement(n, source);
+			increment(n, target);
+		}
+	}
+	
+	/**
+	 * Computes the interface count of the partition.
+	 * 
+	 * @return the number of pairs of parts connected by each net, summed up over all nets
+	 */
+	long getInterfaceCount() {
+		long interfaceCount = 0;
+		for (int n = 0; n < graph.numberOfNets; n++) {
+			interfaceCount += (long) connectivity[n] * (connectivity[n] - 1) / 2;
+		}
+		return interfaceCount;
+	}
+	
+	private void increment(int n, int part) {
+		int start = graph.netOffsets[n];
+		int end = start + connectivity[n];
+		for (int k = start; k < end; k++) {
+			if (netParts[k] == part) {
+				netPartCounts[k]++;
+				return;
+			}
+		}
+		netParts[end] = part;
+		netPartCounts[end] = 1;
+		connectivity[n]++;
+	}
+	
+	private void decrement(int n, int part) {
+		int start = graph.netOffsets[n];
+		int last = start + connectivity[n] - 1;
+		for (int k = start; k <= last; k++) {
+			if (netParts[k] == part) {
+				if (--netPartCounts[k] == 0) {
+					netParts[k] = netParts[last];
+					netPartCounts[k] = netPartCounts[last];
+					connectivity[n]--;
+				}
+				return;
+			}
+		}
+	}
+	
+}
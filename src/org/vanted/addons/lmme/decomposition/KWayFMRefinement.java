@@ -0,0 +1,397 @@
+/*******************************************************************************
+ * LMME is a VANTED Add-on for the exploration of large metabolic models.
+ * Copyright (C) 2020 Chair for Life Science Informatics, University of Konstanz
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package org.vanted.addons.lmme.decomposition;
+
+import java.util.Arrays;
+
+/**
+ * A k-way refinement of a {@link HypergraphPartition} in the style of Fiduccia and Mattheyses, which reduces the interface count.
+ * <p>
+ * In each pass, every free vertex is put into a bucket according to the gain of its best move. The vertex with the highest gain is moved and locked,
+ * and the gains of the vertices sharing a net with it are updated, as long as this net has changed in a way that affects them. Moves with a negative
+ * gain are allowed, such that the pass can leave local minima. At the end of a pass, all moves after the best prefix are rolled back. Passes are
+ * repeated as long as they improve the partition.
+ * <p>
+ * Fixed vertices are never moved, closed parts do not receive vertices, no move may let a part exceed the maximum part weight, and no part is
+ * emptied. If an open part exceeds the maximum part weight at the start, for instance after the initial partitioning of a coarse hypergraph, vertices
+ * are moved out of it first, choosing the moves with the highest gain, until all open parts are within the maximum part weight or no move is left.
+ * 
+ * @author Michael Aichem
+ */
+class KWayFMRefinement {
+	
+	private static final int MAX_PASSES = 10;
+	
+	/**
+	 * Nets with more pins are not used for updating the gains of their pins, as this would be too expensive. The gain of a vertex is always recomputed
+	 * before it is moved, so this only affects the order of the moves.
+	 */
+	private static final int MAX_UPDATED_NET_SIZE = 1000;
+	
+	private static final int MAX_GAIN_OFFSET = 1 << 16;
+	
+	private final HypergraphPartition partition;
+	private final ReactionHypergraph graph;
+	private final boolean[] fixed;
+	private final boolean[] closedParts;
+	private final long maxPartWeight;
+	
+	private final int gainOffset;
+	private final int[] bucketHeads;
+	private final int[] next;
+	private final int[] previous;
+	private final int[] bucketOf;
+	private final int[] storedGains;
+	private int maxBucket;
+	
+	private final boolean[] locked;
+	private final int[] partStamps;
+	private final int[] partGains;
+	private final int[] candidates;
+	private final int[] vertexStamps;
+	private int partStamp;
+	private int vertexStamp;
+	
+	private int bestGain;
+	
+	/**
+	 * The gain of moving the vertex to a part it does not share a net with, as computed by the last call of {@link #determineBestMove(int)}.
+	 */
+	private int baseGainOfLastVertex;
+	
+	/**
+	 * Prepares the refinement of the given partition.
+	 * 
+	 * @param partition
+	 *           the partition to be refined
+	 * @param fixed
+	 *           the vertices that must not be moved, or {@code null}
+	 * @param maxPartWeight
+	 *           the maximum weight of a part
+	 */
+	KWayFMRefinement(HypergraphPartition partition, boolean[] fixed, long maxPartWeight) {
+		this(partition, fixed, null, maxPartWeight);
+	}
+	
+	/**
+	 * Prepares the refinement of the given partition, where some parts must not receive any vertices.
+	 * 
+	 * @param partition
+	 *           the partition to be refined
+	 * @param fixed
+	 *           the vertices that must not be moved, or {@code null}
+	 * @param closedParts
+	 *           the parts that must not receive vertices, or {@code null}
+	 * @param maxPartWeight
+	 *           the maximum weight of a part
+	 */
+	KWayFMRefinement(HypergraphPartition partition, boolean[] fixed, boolean[] closedParts, long maxPartWeight) {
+		this.partition = partition;
+		this.graph = partition.graph;
+		this.fixed = fixed;
+		this.closedParts = closedParts;
+		this.maxPartWeight = maxPartWeight;
+		
+		int maxDegree = 0;
+		for (int v = 0; v < graph.numberOfVertices; v++) {
+			maxDegree = Math.max(maxDegree, graph.getDegree(v));
+		}
+		this.gainOffset = (int) Math.min(MAX_GAIN_OFFSET, (long) maxDegree * partition.numberOfParts);
+		this.bucketHeads = new int[2 * gainOffset + 1];
+		this.next = new int[graph.numberOfVertices];
+		this.previous = new int[graph.numberOfVertices];
+		this.bucketOf = new int[graph.numberOfVertices];
+		this.storedGains = new int[graph.numberOfVertices];
+		
+		this.locked = new boolean[graph.numberOfVertices];
+		this.partStamps = new int[partition.numberOfParts];
+		this.partGains = new int[partition.numberOfParts];
+		this.candidates = new int[partition.numberOfParts];
+		this.vertexStamps = new int[graph.numberOfVertices];
+	}
+	
+	/**
+	 * Performs refinement passes until a pass does not improve the partition any more.
+	 * 
+	 * @return by how much the interface count has been reduced
+	 */
+	long refine() {
+		long totalGain = rebalance();
+		for (int pass = 0; pass < MAX_PASSES; pass++) {
+			long gain = runPass();
+			totalGain += gain;
+			if (gain <= 0) {
+				break;
+			}
+		}
+		return totalGain;
+	}
+	
+	/**
+	 * Moves vertices out of the open parts that exceed the maximum part weight. In each step, the free vertex of an overweight part with the best move
+	 * is moved, where parts that do not share a net with the vertex are considered as well if no other part has room for it.
+	 * 
+	 * @return by how much the interface count has been reduced, which is usually negative
+	 */
+	private long rebalance() {
+		long totalGain = 0;
+		for (int part = 0; part < partition.numberOfParts; part++) {
+			if (closedParts != null && closedParts[part]) {
+				continue;
+			}
+			while (partition.getPartWeight(part) > maxPartWeight) {
+				int lightestPart = -1;
+				for (int other = 0; other < partition.numberOfParts; other++) {
+					if (other != part && (closedParts == null || !closedParts[other])
+							&& (lightestPart == -1 || partition.getPartWeight(other) < partition.getPartWeight(lightestPart))) {
+						lightestPart = other;
+					}
+				}
+				int movedVertex = -1;
+				int movedTarget = -1;
+				int movedGain = Integer.MIN_VALUE;
+				for (int v = 0; v < graph.numberOfVertices; v++) {
+					if (partition.getPart(v) != part || (fixed != null && fixed[v])) {
+						continue;
+					}
+					int target = determineBestMove(v);
+					int gain = bestGain;
+					if (target == -1 && lightestPart != -1 && partition.getPartWeight(part) > graph.vertexWeights[v]
+							&& partition.getPartWeight(lightestPart) + graph.vertexWeights[v] <= maxPartWeight) {
+						target = lightestPart;
+						gain = baseGainOfLastVertex;
+					}
+					if (target != -1 && gain > movedGain) {
+						movedVertex = v;
+						movedTarget = target;
+						movedGain = gain;
+					}
+				}
+				if (movedVertex == -1) {
+					break;
+				}
+				partition.move(movedVertex, movedTarget);
+				totalGain += movedGain;
+			}
+		}
+		return totalGain;
+	}
+	
+	/**
+	 * Performs a single pass.
+	 * 
+	 * @return by how much the interface count has been reduced
+	 */
+	private long runPass() {
+		Arrays.fill(bucketHeads, -1);
+		Arrays.fill(bucketOf, -1);
+		maxBucket = -1;
+		for (int v = 0; v < graph.numberOfVertices; v++) {
+			locked[v] = fixed != null && fixed[v];
+			if (!locked[v]) {
+				int target = determineBestMove(v);
+				if (target != -1) {
+					insert(v, bestGain);
+				}
+			}
+		}
+		
+		int[] movedVertices = new int[graph.numberOfVertices];
+		int[] sourceParts = new int[graph.numberOfVertices];
+		int numberOfMoves = 0;
+		long cumulativeGain = 0;
+		long bestCumulativeGain = 0;
+		int bestNumberOfMoves = 0;
+		int stallLimit = Math.max(100, graph.numberOfVertices / 10);
+		
+		int v;
+		while ((v = popMax()) != -1) {
+			int storedGain = storedGains[v];
+			int target = determineBestMove(v);
+			if (target == -1) {
+				continue;
+			}
+			if (bestGain != storedGain) {
+				insert(v, bestGain);
+				continue;
+			}
+			
+			int source = partition.getPart(v);
+			partition.move(v, target);
+			locked[v] = true;
+			movedVertices[numberOfMoves] = v;
+			sourceParts[numberOfMoves++] = source;
+			cumulativeGain += bestGain;
+			if (cumulativeGain > bestCumulativeGain) {
+				bestCumulativeGain = cumulativeGain;
+				bestNumberOfMoves = numberOfMoves;
+			}
+			if (numberOfMoves - bestNumberOfMoves > stallLimit) {
+				break;
+			}
+			
+			updateNeighbors(v, source, target);
+		}
+		
+		for (int i = numberOfMoves - 1; i >= bestNumberOfMoves; i--) {
+			partition.move(movedVertices[i], sourceParts[i]);
+		}
+		return bestCumulativeGain;
+	}
+	
+	/**
+	 * Determines the move of the given vertex with the highest gain. Only open parts that share a net with the vertex and have room for it are
+	 * considered.
+	 * The gain of the move is stored in {@link #bestGain}.
+	 * <p>
+	 * The gains of all targets are computed in a single sweep over the nets of the vertex. A net that is connected to {@code l} parts reduces the gain
+	 * of every target by {@code l} if the vertex is not its last pin in the current part, as the net would then join the target part. This is offset
+	 * for all targets that the net is already connected to, which additionally gain {@code l - 1} if the vertex is the last pin, as the net would then
+	 * leave the current part.
+	 * 
+	 * @param v
+	 *           the vertex
+	 * @return the target part, or -1 if there is no possible move
+	 */
+	private int determineBestMove(int v) {
+		int source = partition.getPart(v);
+		int bestTarget = -1;
+		bestGain = Integer.MIN_VALUE;
+		if (partition.getPartWeight(source) == graph.vertexWeights[v]) {
+			// parts are not emptied
+			return bestTarget;
+		}
+		partStamp++;
+		int numberOfCandidates = 0;
+		int baseGain = 0;
+		for (int k = graph.vertexOffsets[v]; k < graph.vertexOffsets[v + 1]; k++) {
+			int n = graph.vertexNets[k];
+			int connectivity = partition.getConnectivity(n);
+			boolean leaves = partition.getPinCount(n, source) == 1;
+			if (!leaves) {
+				baseGain -= connectivity;
+			}
+			int bonus = leaves ? connectivity - 1 : connectivity;
+			for (int i = 0; i < connectivity; i++) {
+				int part = partition.getConnectedPart(n, i);
+				if (part == source) {
+					continue;
+				}
+				if (partStamps[part] != partStamp) {
+					partStamps[part] = partStamp;
+					partGains[part] = 0;
+					candidates[numberOfCandidates++] = part;
+				}
+				partGains[part] += bonus;
+			}
+		}
+		baseGainOfLastVertex = baseGain;
+		for (int i = 0; i < numberOfCandidates; i++) {
+			int part = candidates[i];
+			if ((closedParts != null && closedParts[part]) || partition.getPartWeight(part) + graph.vertexWeights[v] > maxPartWeight) {
+				continue;
+			}
+			int gain = baseGain + partGains[part];
+			if (gain > bestGain || (gain == bestGain && partition.getPartWeight(part) < partition.getPartWeight(bestTarget))) {
+				bestGain = gain;
+				bestTarget = part;
+			}
+		}
+		return bestTarget;
+	}
+	
+	/**
+	 * Updates the gains of the free vertices sharing a net with the given vertex that has just been moved.
+	 * 
+	 * @param v
+	 *           the moved vertex
+	 * @param source
+	 *           the previous part of the vertex
+	 * @param target
+	 *           the new part of the vertex
+	 */
+	private void updateNeighbors(int v, int source, int target) {
+		vertexStamp++;
+		vertexStamps[v] = vertexStamp;
+		for (int k = graph.vertexOffsets[v]; k < graph.vertexOffsets[v + 1]; k++) {
+			int n = graph.vertexNets[k];
+			if (graph.getNetSize(n) > MAX_UPDATED_NET_SIZE) {
+				continue;
+			}
+			// The gains of the pins only change if the connectivity has changed or a part is about to be left or entered.
+			int sourceCount = partition.getPinCount(n, source);
+			int targetCount = partition.getPinCount(n, target);
+			if (sourceCount > 1 && targetCount > 2) {
+				continue;
+			}
+			for (int p = graph.netOffsets[n]; p < graph.netOffsets[n + 1]; p++) {
+				int u = graph.netPins[p];
+				if (locked[u] || vertexStamps[u] == vertexStamp) {
+					continue;
+				}
+				vertexStamps[u] = vertexStamp;
+				remove(u);
+				int uTarget = determineBestMove(u);
+				if (uTarget != -1) {
+					insert(u, bestGain);
+				}
+			}
+		}
+	}
+	
+	private void insert(int v, int gain) {
+		int bucket = Math.max(0, Math.min(2 * gainOffset, gain + gainOffset));
+		storedGains[v] = gain;
+		bucketOf[v] = bucket;
+		previous[v] = -1;
+		next[v] = bucketHeads[bucket];
+		if (next[v] != -1) {
+			previous[next[v]] = v;
+		}
+		bucketHeads[bucket] = v;
+		if (bucket > maxBucket) {
+			maxBucket = bucket;
+		}
+	}
+	
+	private void remove(int v) {
+		int bucket = bucketOf[v];
+		if (bucket == -1) {
+			return;
+		}
+		if (previous[v] != -1) {
+			next[previous[v]] = next[v];
+		} else {
+			bucketHeads[bucket] = next[v];
+		}
+		if (next[v] != -1) {
+			previous[next[v]] = previous[v];
+		}
+		bucketOf[v] = -1;
+	}
+	
+	private int popMax() {
+		while (maxBucket >= 0 && bucketHeads[maxBucket] == -1) {
+			maxBucket--;
+		}
+		if (maxBucket < 0) {
+			return -1;
+		}
+		int v = bucketHeads[maxBucket];
+		remove(v);
+		return v;
+	}
+	
+}
@@ -0,0 +1,335 @@
+/*******************************************************************************
+ * LMME is a VANTED Add-on for the exploration of large metabolic models.
+ * Copyright (C) 2020 Chair for Life Science Informatics, University of Konstanz
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package org.vanted.addons.lmme.decomposition;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * An index of the pathways of each KEGG reaction, read from local KEGG flat files instead of the KEGG REST service.
+ * <p>
+ * Two files are used, as obtained from the KEGG operations {@code link/pathway/reaction} and {@code list/pathway}. The link file holds a reaction and
+ * a pathway per line, separated by a tab and in either order, e.g. {@code rn:R00200} and {@code path:rn00010}. The optional list file holds a pathway
+ * and its name per line, e.g. {@code path:map00010} and {@code Glycolysis / Gluconeogenesis}, without it the pathways are named by their ids. Pathways
+ * are identified by their five digit number, such that the {@code map} and {@code rn} variants of a pathway coincide.
+ * <p>
+ * The files are read through memory mapping. The index stores the pathways of each reaction in compressed sparse row format, indexed by the number of
+ * the reaction. The last index that has been read is kept and reused as long as the files do not change.
+ * 
+ * @author Michael Aichem
+ */
+class KeggDumpIndex {
+	
+	/**
+	 * The maximum number of bytes that are mapped at once.
+	 */
+	private static final int MAX_MAPPED_BYTES = 1 << 28;
+	
+	/**
+	 * The global and overview maps, such as map01100 Metabolic pathways or map01200 Carbon metabolism, are numbered from 01100 to 01299. They are
+	 * left out by their number, as without a list file they cannot be recognized by the names in
+	 * {@link org.vanted.addons.lmme.core.LMMEConstants#INEGLIGIBLE_KEGG_PATHWAYS}.
+	 */
+	private static final int FIRST_GLOBAL_MAP = 1100;
+	private static final int LAST_GLOBAL_MAP = 1299;
+	
+	private static KeggDumpIndex lastIndex;
+	
+	private final String fileSignature;
+	
+	private final String[] pathwayNames;
+	
+	/**
+	 * The pathways of reaction {@code R<r>} are {@code pathways[offsets[r]]} to {@code pathways[offsets[r + 1] - 1]}.
+	 */
+	private final int[] offsets;
+	private final int[] pathways;
+	
+	/**
+	 * Receives the two fields of each line of a flat file.
+	 */
+	private interface LineConsumer {
+		
+		void accept(MappedByteBuffer buffer, int start, int tab, int end);
+	}
+	
+	private KeggDumpIndex(String fileSignature, String[] pathwayNames, int[] offsets, int[] pathways) {
+		this.fileSignature = fileSignature;
+		this.pathwayNames = pathwayNames;
+		this.offsets = offsets;
+		this.pathways = pathways;
+	}
+	
+	/**
+	 * Gets the index of the given files, which is read if the files have not been read before or have changed since.
+	 * 
+	 * @param linkFile
+	 *           the file with the links between reactions and pathways
+	 * @param listFile
+	 *           the file with the pathway names, or {@code null} if the pathways are to be named by their ids
+	 * @return the index
+	 * @throws IOException
+	 *            if a file cannot be read
+	 */
+	static synchronized KeggDumpIndex load(Path linkFile, Path listFile) throws IOException {
+		String fileSignature = getSignature(linkFile) + "|" + (listFile != null ? getSignature(listFile) : "");
+		if (lastIndex == null || !lastIndex.fileSignature.equals(fileSignature)) {
+			lastIndex = read(linkFile, listFile, fileSignature);
+		}
+		return lastIndex;
+	}
+	
+	/**
+	 * Gets the pathways of the given reaction.
+	 * 
+	 * @param keggReactionId
+	 *           the KEGG reaction id, e.g. R00200 or rn:R00200
+	 * @return the pathway names, which is empty if the reaction is not contained in the files. Pathways without a name in the list file are named
+	 *         by their id. The global and overview maps are not contained.
+	 */
+	List<String> getPathways(String keggReactionId) {
+		int reactionNumber = parseReactionNumber(keggReactionId);
+		ArrayList<String> result = new ArrayList<>();
+		if (reactionNumber < 0 || reactionNumber + 1 >= offsets.length) {
+			return result;
+		}
+		for (int k = offsets[reactionNumber]; k < offsets[reactionNumber + 1]; k++) {
+			String name = pathwayNames[pathways[k]];
+			result.add(name != null ? name : String.format("map%05d", pathways[k]));
+		}
+		return result;
+	}
+	
+	int getNumberOfLinks() {
+		return pathways.length;
+	}
+	
+	private static String getSignature(Path file) throws IOException {
+		return file.toAbsolutePath() + ":" + Files.size(file) + ":" + Files.getLastModifiedTime(file).toMillis();
+	}
+	
+	private static KeggDumpIndex read(Path linkFile, Path listFile, String fileSignature) throws IOException {
+		
+		// Pathway names, indexed by the pathway number
+		HashMap<Integer, String> names = new HashMap<>();
+		int[] maxPathwayNumber = new int[1];
+		if (listFile != null) {
+			forEachLine(listFile, (buffer, start, tab, end) -> {
+				int pathwayNumber = parsePathwayNumber(buffer, start, tab);
+				if (pathwayNumber >= 0) {
+					byte[] nameBytes = new byte[end - tab - 1];
+					ByteBuffer nameBuffer = buffer.duplicate();
+					nameBuffer.position(tab + 1);
+					nameBuffer.get(nameBytes);
+					names.put(Integer.valueOf(pathwayNumber), new String(nameBytes, StandardCharsets.UTF_8).trim());
+					maxPathwayNumber[0] = Math.max(maxPathwayNumber[0], pathwayNumber);
+				}
+			});
+		}
+		
+		// Links as pairs of reaction and pathway number
+		int[][] links = { new int[1024] };
+		int[] numberOfLinks = new int[1];
+		int[] maxReactionNumber = { -1 };
+		forEachLine(linkFile, (buffer, start, tab, end) -> {
+			int reactionNumber = parseReactionNumber(buffer, start, tab);
+			int pathwayNumber;
+			if (reactionNumber >= 0) {
+				pathwayNumber = parsePathwayNumber(buffer, tab + 1, end);
+			} else {
+				reactionNumber = parseReactionNumber(buffer, tab + 1, end);
+				pathwayNumber = parsePathwayNumber(buffer, start, tab);
+			}
+			if (reactionNumber < 0 || pathwayNumber < 0 || (pathwayNumber >= FIRST_GLOBAL_MAP && pathwayNumber <= LAST_GLOBAL_MAP)) {
+				return;
+			}
+			if (2 * numberOfLinks[0] + 2 > links[0].length) {
+				links[0] = Arrays.copyOf(links[0], 2 * links[0].length);
+			}
+			links[0][2 * numberOfLinks[0]] = reactionNumber;
+			links[0][2 * numberOfLinks[0] + 1] = pathwayNumber;
+			numberOfLinks[0]++;
+			maxReactionNumber[0] = Math.max(maxReactionNumber[0], reactionNumber);
+			maxPathwayNumber[0] = Math.max(maxPathwayNumber[0], pathwayNumber);
+		});
+		
+		String[] pathwayNames = new String[maxPathwayNumber[0] + 1];
+		for (Integer pathwayNumber : names.keySet()) {
+			pathwayNames[pathwayNumber.intValue()] = names.get(pathwayNumber);
+		}
+		
+		int[] offsets = new int[maxReactionNumber[0] + 2];
+		for (int i = 0; i < numberOfLinks[0]; i++) {
+			offsets[links[0][2 * i] + 1]++;
+		}
+		for (int r = 0; r <= maxReactionNumber[0]; r++) {
+			offsets[r + 1] += offsets[r];
+		}
+		int[] pathways = new int[numberOfLinks[0]];
+		int[] position = Arrays.copyOf(offsets, offsets.length - 1);
+		for (int i = 0; i < numberOfLinks[0]; i++) {
+			pathways[position[links[0][2 * i]]++] = links[0][2 * i + 1];
+		}
+		
+		// Remove duplicates, such as the map and rn variants of the same pathway.
+		int numberOfPathways = 0;
+		int start = 0;
+		for (int r = 0; r <= maxReactionNumber[0]; r++) {
+			int end = offsets[r + 1];
+			Arrays.sort(pathways, start, end);
+			offsets[r] = numberOfPathways;
+			for (int k = start; k < end; k++) {
+				if (k == start || pathways[k] != pathways[k - 1]) {
+					pathways[numberOfPathways++] = pathways[k];
+				}
+			}
+			start = end;
+		}
+		offsets[maxReactionNumber[0] + 1] = numberOfPathways;
+		
+		return new KeggDumpIndex(fileSignature, pathwayNames, offsets, Arrays.copyOf(pathways, numberOfPathways));
+	}
+	
+	/**
+	 * Calls the consumer for each line of the given file that contains a tab. The file is mapped into memory in windows that end at line breaks.
+	 * 
+	 * @param file
+	 *           the file
+	 * @param consumer
+	 *           the consumer, which receives the absolute positions within the mapped window
+	 * @throws IOException
+	 *            if the file cannot be read
+	 */
+	private static void forEachLine(Path file, LineConsumer consumer) throws IOException {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			long size = channel.size();
+			long windowStart = 0;
+			while (windowStart < size) {
+				int windowSize = (int) Math.min(MAX_MAPPED_BYTES, size - windowStart);
+				MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, windowStart, windowSize);
+				boolean lastWindow = windowStart + windowSize == size;
+				int lineStart = 0;
+				int tab = -1;
+				for (int i = 0; i < windowSize; i++) {
+					byte b = buffer.get(i);
+					if (b == '\t' && tab == -1) {
+						tab = i;
+					} else if (b == '\n') {
+						if (tab != -1) {
+							consumer.accept(buffer, lineStart, tab, i > lineStart && buffer.get(i - 1) == '\r' ? i - 1 : i);
+						}
+						lineStart = i + 1;
+						tab = -1;
+					}
+				}
+				if (lastWindow) {
+					if (tab != -1) {
+						consumer.accept(buffer, lineStart, tab, windowSize);
+					}
+					break;
+				}
+				if (lineStart == 0) {
+					throw new IOException("Line too long in " + file);
+				}
+				windowStart += lineStart;
+			}
+		}
+	}
+	
+	/**
+	 * Parses a reaction id such as {@code rn:R00200} or {@code R00200}.
+	 * 
+	 * @return the number of the reaction, or -1 if the field is no reaction id
+	 */
+	private static int parseReactionNumber(MappedByteBuffer buffer, int start, int end) {
+		while (start < end && buffer.get(start) == ' ') {
+			start++;
+		}
+		if (end - start > 3 && buffer.get(start) == 'r' && buffer.get(start + 1) == 'n' && buffer.get(start + 2) == ':') {
+			start += 3;
+		}
+		if (start >= end || buffer.get(start) != 'R') {
+			return -1;
+		}
+		return parseDigits(buffer, start + 1, end);
+	}
+	
+	private static int parseReactionNumber(String keggReactionId) {
+		String id = keggReactionId.trim();
+		if (id.startsWith("rn:")) {
+			id = id.substring(3);
+		}
+		if (id.length() < 2 || id.charAt(0) != 'R') {
+			return -1;
+		}
+		try {
+			return Integer.parseInt(id.substring(1));
+		} catch (NumberFormatException e) {
+			return -1;
+		}
+	}
+	
+	/**
+	 * Parses a pathway id such as {@code path:rn00010}, {@code path:map00010} or {@code map00010}.
+	 * 
+	 * @return the number of the pathway, or -1 if the field is no pathway id
+	 */
+	private static int parsePathwayNumber(MappedByteBuffer buffer, int start, int end) {
+		while (start < end && buffer.get(start) == ' ') {
+			start++;
+		}
+		if (end - start > 5 && buffer.get(start) == 'p' && buffer.get(start + 1) == 'a' && buffer.get(start + 2) == 't'
+				&& buffer.get(start + 3) == 'h' && buffer.get(start + 4) == ':') {
+			start += 5;
+		}
+		int letters = start;
+		while (letters < end && Character.isLetter((char) buffer.get(letters))) {
+			letters++;
+		}
+		if (letters == start) {
+			return -1;
+		}
+		return parseDigits(buffer, letters, end);
+	}
+	
+	private static int parseDigits(MappedByteBuffer buffer, int start, int end) {
+		while (end > start && buffer.get(end - 1) == ' ') {
+			end--;
+		}
+		if (start >= end || end - start > 9) {
+			return -1;
+		}
+		int number = 0;
+		for (int i = start; i < end; i++) {
+			byte b = buffer.get(i);
+			if (b < '0' || b > '9') {
+				return -1;
+			}
+			number = 10 * number + (b - '0');
+		}
+		return number;
+	}
+	
+}
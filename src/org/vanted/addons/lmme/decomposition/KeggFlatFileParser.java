@@ -0,0 +1,197 @@
+/*******************************************************************************
+ * LMME is a VANTED Add-on for the exploration of large metabolic models.
+ * Copyright (C) 2020 Chair for Life Science Informatics, University of Konstanz
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package org.vanted.addons.lmme.decomposition;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * A streaming parser for KEGG flat files, as returned by the KEGG get operation for reactions.
+ * <p>
+ * The parser reads the input once in blocks and only keeps the ENTRY lines and the lines of the PATHWAY sections, all other lines are skipped without
+ * being stored. For each entry, the handler is notified of the entry itself and of each of its pathways.
+ * 
+ * @author Michael Aichem
+ */
+class KeggFlatFileParser {
+	
+	private static final int BUFFER_SIZE = 8192;
+	
+	/**
+	 * Receives the entries and pathways in the order in which they occur.
+	 */
+	interface Handler {
+		
+		/**
+		 * Called when an entry starts.
+		 * 
+		 * @param keggId
+		 *           the id of the entry, e.g. R00200
+		 */
+		void entry(String keggId);
+		
+		/**
+		 * Called for each pathway of the current entry.
+		 * 
+		 * @param keggId
+		 *           the id of the entry
+		 * @param pathwayName
+		 *           the name of the pathway, e.g. Glycolysis / Gluconeogenesis
+		 */
+		void pathway(String keggId, String pathwayName);
+	}
+	
+	/**
+	 * What is done with the characters of the current line.
+	 */
+	private enum Mode {
+		/**
+		 * The keyword at the start of the line is read.
+		 */
+		KEYWORD,
+		/**
+		 * The line is stored for processing.
+		 */
+		COLLECT,
+		/**
+		 * The line is skipped.
+		 */
+		SKIP
+	}
+	
+	private KeggFlatFileParser() {
+	}
+	
+	/**
+	 * Parses the given input, which is not closed.
+	 * 
+	 * @param reader
+	 *           the input
+	 * @param handler
+	 *           the handler
+	 * @throws IOException
+	 *            if the input cannot be read
+	 */
+	static void parse(Reader reader, Handler handler) throws IOException {
+		char[] buffer = new char[BUFFER_SIZE];
+		StringBuilder line = new StringBuilder();
+		String keggId = null;
+		boolean inPathwaySection = false;
+		Mode mode = Mode.KEYWORD;
+		
+		int length;
+		while ((length = reader.read(buffer)) != -1) {
+			for (int i = 0; i < length; i++) {
+				char c = buffer[i];
+				if (c == '\n' || c == '\r') {
+					if (mode == Mode.COLLECT) {
+						keggId = processLine(line, keggId, handler);
+					} else if (mode == Mode.KEYWORD && line.length() > 0) {
+						// A line that consists of a keyword only, such as ///
+						inPathwaySection = false;
+						if (startsWith(line, "///")) {
+							keggId = null;
+						}
+					}
+					line.setLength(0);
+					mode = Mode.KEYWORD;
+				} else if (mode == Mode.COLLECT) {
+					line.append(c);
+				} else if (mode == Mode.KEYWORD) {
+					if (c != ' ') {
+						line.append(c);
+					} else if (line.length() == 0) {
+						// A continuation line belongs to the section of the previous keyword.
+						mode = inPathwaySection ? Mode.COLLECT : Mode.SKIP;
+						line.append(c);
+					} else {
+						inPathwaySection = isKeyword(line, "PATHWAY");
+						if (inPathwaySection || isKeyword(line, "ENTRY")) {
+							mode = Mode.COLLECT;
+							line.append(c);
+						} else {
+							mode = Mode.SKIP;
+						}
+					}
+				}
+			}
+		}
+		if (mode == Mode.COLLECT) {
+			processLine(line, keggId, handler);
+		}
+	}
+	
+	/**
+	 * Processes a collected line, that is an ENTRY line, a PATHWAY line or a continuation line of the PATHWAY section.
+	 * 
+	 * @return the id of the current entry
+	 */
+	private static String processLine(StringBuilder line, String keggId, Handler handler) {
+		if (startsWith(line, "ENTRY")) {
+			int start = skipSpaces(line, "ENTRY".length());
+			int end = skipToken(line, start);
+			if (end > start) {
+				keggId = line.substring(start, end);
+				handler.entry(keggId);
+			}
+			return keggId;
+		}
+		if (keggId == null) {
+			return null;
+		}
+		// The pathway id, e.g. rn00010, is followed by the name.
+		int idStart = skipSpaces(line, startsWith(line, "PATHWAY") ? "PATHWAY".length() : 0);
+		int nameStart = skipSpaces(line, skipToken(line, idStart));
+		int nameEnd = line.length();
+		while (nameEnd > nameStart && Character.isWhitespace(line.charAt(nameEnd - 1))) {
+			nameEnd--;
+		}
+		if (nameEnd > nameStart) {
+			handler.pathway(keggId, line.substring(nameStart, nameEnd));
+		}
+		return keggId;
+	}
+	
+	private static boolean isKeyword(StringBuilder line, String keyword) {
+		return line.length() == keyword.length() && startsWith(line, keyword);
+	}
+	
+	private static boolean startsWith(StringBuilder line, String prefix) {
+		if (line.length() < prefix.length()) {
+			return false;
+		}
+		for (int i = 0; i < prefix.length(); i++) {
+			if (line.charAt(i) != prefix.charAt(i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	private static int skipSpaces(StringBuilder line, int i) {
+		while (i < line.length() && Character.isWhitespace(line.charAt(i))) {
+			i++;
+		}
+		return i;
+	}
+	
+	private static int skipToken(StringBuilder line, int i) {
+		while (i < line.length() && !Character.isWhitespace(line.charAt(i))) {
+			i++;
+		}
+		return i;
+	}
+	
+}
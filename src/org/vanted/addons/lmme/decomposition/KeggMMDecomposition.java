@@ -15,22 +15,31 @@
 package org.vanted.addons.lmme.decomposition;
 
 import java.awt.Color;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.io.IOException;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Hashtable;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.regex.Pattern;
 
 import javax.swing.BorderFactory;
+import javax.swing.JButton;
+import javax.swing.JCheckBox;
 import javax.swing.JComboBox;
 import javax.swing.JComponent;
+import javax.swing.JFileChooser;
 import javax.swing.JLabel;
 import javax.swing.JPanel;
 import javax.swing.JSlider;
 import javax.swing.JTextField;
 import javax.swing.event.ChangeEvent;
 import javax.swing.event.ChangeListener;
-import javax.ws.rs.core.MediaType;
 
 import org.ErrorMsg;
 import org.FolderPanel;
@@ -47,7 +56,6 @@ import org.vanted.addons.lmme.graphs.SubsystemGraph;
 import org.vanted.addons.lmme.ui.LMMETab;
 
 import de.ipk_gatersleben.ag_nw.graffiti.NeedsSwingThread;
-import de.ipk_gatersleben.ag_nw.graffiti.services.web.RestService;
 import info.clearthought.layout.TableLayout;
 
 /**
@@ -69,6 +77,11 @@ public class KeggMMDecomposition extends MMDecompositionAlgorithm implements Nee
 	private JLabel minimumNumberValue;
 	private JSlider minimumNumberSlider;
 	
+	private JCheckBox ckbOffline;
+	
+	private JTextField tfLinkFile;
+	private JTextField tfListFile;
+	
 	private HashMap<String, String> notesShort2longForm = new HashMap<String, String>();
 	private HashMap<String, String> notesLong2ShortForm = new HashMap<String, String>();
 	
@@ -77,310 +90,214 @@ public class KeggMMDecomposition extends MMDecompositionAlgorithm implements Nee
 	private final String ATTRIBUTE_NAME_FINAL_SUBSYSTEM = "FinalSubsystem";
 	
 	/**
-	 * The rest service for the KEGG requests.
+	 * The number of reactions that are requested from KEGG at once, which is the maximum KEGG allows.
+	 */
+	private static final int PACKAGE_SIZE = 10;
+	
+	/**
+	 * The scheduler for the KEGG requests. The base URL can be overridden by the system property {@code lmme.kegg.url}, e.g. to use a local mirror.
 	 */
-	private RestService restService = new RestService("https://rest.kegg.jp/get/");
+	private KeggRequestScheduler requestScheduler = new KeggRequestScheduler(System.getProperty("lmme.kegg.url", "https://rest.kegg.jp/get/"));
+	
+	/**
+	 * The pathways of the reactions that have already been retrieved from KEGG.
+	 */
+	private KeggReactionCache cache = new KeggReactionCache();
 	
 	private HashMap<Node, ArrayList<String>> node2possibleSubsystems;
-	private HashMap<String, Integer> subsystem2number;
 	
-	private int packageStart;
+	private GreedyPathwayCover pathwayCover;
 	
 	public KeggMMDecomposition() {
 		this.node2possibleSubsystems = new HashMap<>();
-		this.subsystem2number = new HashMap<>();
 	}
 	
 	@Override
 	protected ArrayList<SubsystemGraph> runSpecific(HashSet<Node> alreadyClassifiedNodes) {
 		
+		// The base graph is reused across decompositions, so remove the assignments of a former run.
+		LMMEController.getInstance().getCurrentSession().getBaseGraph().clearAttribute(ATTRIBUTE_NAME_FINAL_SUBSYSTEM);
+		this.node2possibleSubsystems.clear();
+		
 		LMMETools.getInstance().readNotes(this.getSelectedTag(), this.ATTRIBUTE_NAME_KEGG_ID);
 		
 		request();
 		
-		while (!this.node2possibleSubsystems.isEmpty()) {
-			updateSubsystemNumber();
-			removeTooSmallSubsystems();
-			removeNodesWithoutSubsystem();
-			extractNodesFromHugestSubsystem();
-		}
+		assignPathways();
 		
 		return determineSubsystemsFromReactionAttributes(ATTRIBUTE_NAME_FINAL_SUBSYSTEM, false, "",
 				alreadyClassifiedNodes);
 	}
 	
 	/**
-	 * For each reaction that has a KEGG ID, an HTTP request to KEGG is sent,
-	 * querying the pathways that belong to the reaction.
+	 * Determines the pathways of each reaction that has a KEGG ID and stores them in the HashMap {@link node2possibleSubsystems}.
 	 * <p>
-	 * These are then stored in the the HashMap {@link node2possibleSubsystems}.
+	 * If local KEGG files are given, the pathways are taken from these files only. Otherwise, they are taken from the {@link KeggReactionCache} where
+	 * possible, see {@link #requestMissing(LinkedHashMap)}.
 	 */
 	private void request() {
 		
 		LMMESession currentSession = LMMEController.getInstance().getCurrentSession();
+		String separator = this.separator.getText().trim();
+		
+		KeggDumpIndex dumpIndex = null;
+		String linkFile = this.tfLinkFile.getText().trim();
+		String listFile = this.tfListFile.getText().trim();
+		if (!linkFile.isEmpty() || !listFile.isEmpty()) {
+			if (linkFile.isEmpty()) {
+				ErrorMsg.addErrorMessage("KEGG Decomposition failed: a local pathways file has been given, but no local links file. Please select the "
+						+ "links file as well, or clear the pathways file to query KEGG.");
+				return;
+			}
+			try {
+				dumpIndex = KeggDumpIndex.load(Paths.get(linkFile), listFile.isEmpty() ? null : Paths.get(listFile));
+			} catch (IOException | InvalidPathException e) {
+				ErrorMsg.addErrorMessage("KEGG Decomposition failed: the local KEGG files could not be read: " + e.getMessage());
+				return;
+			}
+			LMMEController.getInstance().getTab().logMsg("Read " + dumpIndex.getNumberOfLinks() + " reaction-pathway links from the local KEGG files.");
+			if (listFile.isEmpty()) {
+				LMMEController.getInstance().getTab().logMsg("No local pathways file has been given, the pathways are named by their ids.");
+			}
+		}
 		
-		// Grab reactions with viable KEGG reaction id.
-		ArrayList<Node> reactionsWithKeggId = new ArrayList<>();
+		// Grab reactions with viable KEGG reaction ids, a reaction may have several of them.
+		LinkedHashMap<Node, ArrayList<String>> reaction2keggIds = new LinkedHashMap<>();
+		LinkedHashMap<String, List<String>> keggId2pathways = new LinkedHashMap<>();
 		for (Node reactionNode : currentSession.getBaseGraph().getReactionNodes()) {
 			String keggId = currentSession.getNodeAttribute(reactionNode, ATTRIBUTE_NAME_KEGG_ID);
 			if ((keggId.length() > 0) && !(keggId.equals("null"))) {
-				reactionsWithKeggId.add(reactionNode);
+				ArrayList<String> keggIds = new ArrayList<>();
+				for (String singleKeggId : separator.isEmpty() ? new String[] { keggId } : keggId.split(Pattern.quote(separator))) {
+					singleKeggId = singleKeggId.trim();
+					if (!singleKeggId.isEmpty()) {
+						keggIds.add(singleKeggId);
+						keggId2pathways.put(singleKeggId, dumpIndex != null ? dumpIndex.getPathways(singleKeggId) : null);
+					}
+				}
+				reaction2keggIds.put(reactionNode, keggIds);
 			}
 		}
 		
-		ArrayList<Node> reactionPackage;
-		String[] res;
-		this.packageStart = 0;
-		while (reactionsWithKeggId.size() - this.packageStart >= 10) {
-			reactionPackage = new ArrayList<>();
-			for (int i = 0; i < 10; i++) {
-				reactionPackage.add(reactionsWithKeggId.get(this.packageStart + i));
-			}
-			res = requestPackage(reactionPackage);
-			if (res.length == 10) {
-				processPackageResults(reactionPackage, res);
-			} else {
-				requestAndProcessPackageSeparately(reactionPackage);
-			}
-			this.packageStart += 10;
-			MainFrame.showMessage("So far " + packageStart + " of " + reactionsWithKeggId.size()
-					+ " reactions have been queried from Kegg.", MessageType.PERMANENT_INFO);
-		}
-		reactionPackage = new ArrayList<>();
-		for (int i = this.packageStart; i < reactionsWithKeggId.size(); i++) {
-			reactionPackage.add(reactionsWithKeggId.get(i));
+		if (dumpIndex == null) {
+			requestMissing(keggId2pathways);
 		}
-		if (!reactionPackage.isEmpty()) {
-			res = requestPackage(reactionPackage);
-			if (res.length == reactionPackage.size()) {
-				processPackageResults(reactionPackage, res);
-			} else {
-				requestAndProcessPackageSeparately(reactionPackage);
+		
+		for (Node reactionNode : reaction2keggIds.keySet()) {
+			for (String keggId : reaction2keggIds.get(reactionNode)) {
+				List<String> pathways = keggId2pathways.get(keggId);
+				if (pathways == null) {
+					continue;
+				}
+				for (String pathway : pathways) {
+					if (!LMMEConstants.INEGLIGIBLE_KEGG_PATHWAYS.contains(pathway)) {
+						if (!node2possibleSubsystems.containsKey(reactionNode)) {
+							node2possibleSubsystems.put(reactionNode, new ArrayList<>());
+						}
+						if (!node2possibleSubsystems.get(reactionNode).contains(pathway)) {
+							node2possibleSubsystems.get(reactionNode).add(pathway);
+						}
+					}
+				}
 			}
 		}
 	}
 	
 	/**
-	 * This method sends HTTP requests to KEGG for a whole package of up to 10
-	 * reactions.
-	 * 
-	 * @param reactionPackage
-	 *           The package of reaction nodes to be requested
-	 * @return a list of request result Strings
+	 * Assigns each reaction to one of its candidate pathways by means of a {@link GreedyPathwayCover}, such that the pathways that may hold the most
+	 * reactions are preferred. Pathways with less reactions than specified by the user are left out.
 	 */
-	private String[] requestPackage(ArrayList<Node> reactionPackage) {
-		String urlPostFix = "";
-		for (Node reactionNode : reactionPackage) {
-			String keggId = LMMEController.getInstance().getCurrentSession().getNodeAttribute(reactionNode,
-					ATTRIBUTE_NAME_KEGG_ID);
-			/*
-			 * This forces the calling method to use requestAndProcessPackageSeparately
-			 * instead as the latter can handle multiple reaction ids.
-			 */
-			if (keggId.contains(this.separator.getText().trim())) {
-				return new String[0];
+	private void assignPathways() {
+		ArrayList<Node> reactionNodes = new ArrayList<>(this.node2possibleSubsystems.keySet());
+		ArrayList<ArrayList<String>> candidatePathways = new ArrayList<>();
+		for (Node reactionNode : reactionNodes) {
+			candidatePathways.add(this.node2possibleSubsystems.get(reactionNode));
+		}
+		this.pathwayCover = new GreedyPathwayCover(candidatePathways);
+		String[] assignment = this.pathwayCover.run(this.minimumNumberSlider.getValue());
+		
+		HashMap<String, Integer> subsystem2number = new HashMap<>();
+		for (int i = 0; i < assignment.length; i++) {
+			if (assignment[i] != null) {
+				LMMEController.getInstance().getCurrentSession().addNodeAttribute(reactionNodes.get(i), ATTRIBUTE_NAME_FINAL_SUBSYSTEM,
+						assignment[i]);
+				subsystem2number.merge(assignment[i], Integer.valueOf(1), Integer::sum);
 			}
-			urlPostFix += "+rn:" + keggId;
 		}
-		urlPostFix = urlPostFix.substring(1);
-		String response = (String) this.restService.makeRequest(urlPostFix, MediaType.TEXT_PLAIN_TYPE, String.class);
-		if ((response == null)) {
-			// TODO: proper evaluation of response once RestService returns a map instead of just a string
-			ErrorMsg.addErrorMessage("KEGG Decomposition failed: could not retrieve pathway information for reactions from KEGG database.");
-			return new String[0];
+		for (String subsystem : this.pathwayCover.getAssignmentOrder()) {
+			LMMEController.getInstance().getTab().logMsg("Added " + subsystem2number.get(subsystem) + " nodes to subsystem " + subsystem);
 		}
-		response = response.substring(0, response.length() - 3);
-		return response.split(Pattern.quote(LMMEConstants.KEGGSEP));
 	}
 	
 	/**
-	 * This method stores the results from the KEGG requests in the map
-	 * {@link node2possibleSubsystems}.
-	 * <p>
-	 * The method thus therefore expects two lists:
-	 * <ul>
-	 * <li>a list of reactions and
-	 * <li>a list of request result Strings,
-	 * </ul>
-	 * that match position by position.
-	 * <p>
-	 * This method assumes both lists to have the same length.
+	 * Gets the pathways in the order in which they have been selected during the last run.
 	 * 
-	 * @param reactionNodes
-	 *           The nodes that have been requested
-	 * @param requestResults
-	 *           The results from the request
+	 * @return the pathway names, or an empty list if the decomposition has not been run yet
 	 */
-	private void processPackageResults(ArrayList<Node> reactionNodes, String[] requestResults) {
-		for (int i = 0; i < reactionNodes.size(); i++) {
-			Node reactionNode = reactionNodes.get(i);
-			String response = requestResults[i];
-			processSingleNode(reactionNode, response);
+	public List<String> getAssignmentOrder() {
+		if (this.pathwayCover == null) {
+			return new ArrayList<>();
 		}
+		return this.pathwayCover.getAssignmentOrder();
 	}
 	
 	/**
-	 * This method separately requests reaction by reaction.
-	 * <p>
-	 * This method also expects a list of reaction nodes but in contrast to
-	 * {@link requestPackage} it requests AND processes (stores the results in the
-	 * map {@link node2possibleSubsystems}) the nodes one by one. This is necessary
-	 * if one of the reactions did not yield request results during a previous call
-	 * of {@link requestPackage} such that list sizes do not match or if a reaction
-	 * has had assigned more than one KEGG id.
+	 * Fills in the pathways of the given KEGG reactions from the {@link KeggReactionCache}. The remaining KEGG reactions are requested from KEGG in
+	 * packages and added to the cache, unless the offline mode is selected, in which case they are skipped.
 	 * 
-	 * @param reactionPackage
-	 *           A list of reaction nodes that will be requested and
-	 *           directly processed.
+	 * @param keggId2pathways
+	 *           the KEGG reaction ids, whose pathways are filled in where they can be determined
 	 */
-	private void requestAndProcessPackageSeparately(ArrayList<Node> reactionPackage) {
-		for (Node reactionNode : reactionPackage) {
-			String keggId = LMMEController.getInstance().getCurrentSession().getNodeAttribute(reactionNode,
-					ATTRIBUTE_NAME_KEGG_ID);
-			ArrayList<String> severalIDs = new ArrayList<>();
-			if (keggId.contains(this.separator.getText().trim())) {
-				String[] splitted = keggId.split(Pattern.quote(this.separator.getText().trim()));
-				for (int i = 0; i < splitted.length; i++) {
-					severalIDs.add(splitted[i].trim());
-				}
+	private void requestMissing(LinkedHashMap<String, List<String>> keggId2pathways) {
+		boolean offline = this.ckbOffline.isSelected();
+		ArrayList<String> missingKeggIds = new ArrayList<>();
+		for (String keggId : keggId2pathways.keySet()) {
+			List<String> pathways = this.cache.get(keggId, offline);
+			if (pathways == null) {
+				missingKeggIds.add(keggId);
 			} else {
-				severalIDs.add(keggId);
-			}
-			
-			for (String singleKeggRid : severalIDs) {
-				String response = (String) this.restService.makeRequest("rn:" + singleKeggRid,
-						MediaType.TEXT_PLAIN_TYPE, String.class);
-				processSingleNode(reactionNode, response);
-			}
-		}
-	}
-	
-	/**
-	 * This method processes a single node.
-	 * <p>
-	 * This means that the given request result is
-	 * interpreted in the context of the given reaction node and the respective
-	 * pathway information from the request result. The pathways are then storedin
-	 * the map {@link node2possibleSubsystems}.
-	 * 
-	 * @param reactionNode
-	 *           the node that has been queried
-	 * @param requestResult
-	 *           the result of the KEGG query
-	 */
-	private void processSingleNode(Node reactionNode, String requestResult) {
-		if (requestResult != null) {
-			String[] arrLines = requestResult.split("\n");
-			int lineIndex = 0;
-			while (lineIndex < arrLines.length) {
-				if (arrLines[lineIndex].startsWith("PATHWAY"))
-					do {
-						String line = arrLines[lineIndex];
-						line = line.substring(line.indexOf("rn") + 2);
-						line = line.substring(line.indexOf(" ") + 2);
-						if (!LMMEConstants.INEGLIGIBLE_KEGG_PATHWAYS.contains(line)) {
-							if (!node2possibleSubsystems.containsKey(reactionNode)) {
-								node2possibleSubsystems.put(reactionNode, new ArrayList<>());
-							}
-							node2possibleSubsystems.get(reactionNode).add(line);
-						}
-						lineIndex++;
-					} while ((lineIndex < arrLines.length) && (arrLines[lineIndex].startsWith(" ")));
-				else {
-					lineIndex++;
-				}
-			}
-		} else {
-			// TODO: proper evaluation of response once RestService returns a map instead of just a string
-			ErrorMsg.addErrorMessage("KEGG Decomposition failed: could not retrieve pathway information for reactions "
-					+ "from KEGG database.");
-		}
-	}
-	
-	/**
-	 * Updates the numbers associated to subsystems, stating how many possible reactions may belong to a subsystem.
-	 */
-	private void updateSubsystemNumber() {
-		subsystem2number.clear();
-		for (Node reactionNode : node2possibleSubsystems.keySet()) {
-			for (String subsystem : node2possibleSubsystems.get(reactionNode)) {
-				Integer number = Integer.valueOf(1);
-				if (subsystem2number.containsKey(subsystem)) {
-					number = Integer.valueOf(subsystem2number.get(subsystem).intValue() + 1);
-				}
-				subsystem2number.put(subsystem, number);
-			}
-		}
-	}
-	
-	/**
-	 * Removes those candidate subsystems that may have assigned a lesser number of reactions than specified by the user.
-	 */
-	private void removeTooSmallSubsystems() {
-		ArrayList<String> subsystemsToRemove = new ArrayList<>();
-		for (String smallSubsystem : subsystem2number.keySet()) {
-			if (subsystem2number.get(smallSubsystem).intValue() < this.minimumNumberSlider.getValue()) {
-				subsystemsToRemove.add(smallSubsystem);
-				for (ArrayList<String> list : node2possibleSubsystems.values()) {
-					list.remove(smallSubsystem);
-				}
+				keggId2pathways.put(keggId, pathways);
 			}
 		}
-		for (String subsystem : subsystemsToRemove) {
-			subsystem2number.remove(subsystem);
-		}
-	}
-	
-	/**
-	 * Removes reactions that do not have candidate pathways anymore.
-	 */
-	private void removeNodesWithoutSubsystem() {
+		LMMEController.getInstance().getTab().logMsg((keggId2pathways.size() - missingKeggIds.size()) + " of " + keggId2pathways.size()
+				+ " KEGG reactions have been found in the cache.");
 		
-		ArrayList<Node> nodesToRemove = new ArrayList<>();
-		for (Node reactionNode : node2possibleSubsystems.keySet()) {
-			if (node2possibleSubsystems.get(reactionNode).isEmpty()) {
-				nodesToRemove.add(reactionNode);
+		if (offline) {
+			if (!missingKeggIds.isEmpty()) {
+				LMMEController.getInstance().getTab().logMsg(missingKeggIds.size()
+						+ " KEGG reactions are not in the cache and have been skipped in offline mode.");
 			}
-		}
-		for (Node nodeToRemove : nodesToRemove) {
-			node2possibleSubsystems.remove(nodeToRemove);
-		}
-		
-	}
-	
-	/**
-	 * Processes the not-yet-confirmed subsystem that would currently have the most reactions assigned to.
-	 */
-	private void extractNodesFromHugestSubsystem() {
-		
-		if (subsystem2number.isEmpty()) {
-			return;
-		}
-		
-		int currentMax = 0;
-		String hugestSubsystem = "";
-		for (String subsystem : subsystem2number.keySet()) {
-			if (subsystem2number.get(subsystem).intValue() > currentMax) {
-				currentMax = subsystem2number.get(subsystem).intValue();
-				hugestSubsystem = subsystem;
+		} else {
+			int[] numberOfQueried = new int[1];
+			int[] numberOfFailed = new int[1];
+			try {
+				this.requestScheduler.run(missingKeggIds, PACKAGE_SIZE, (keggIdPackage, result) -> {
+					numberOfQueried[0] += keggIdPackage.size();
+					if (result == null) {
+						numberOfFailed[0] += keggIdPackage.size();
+						return;
+					}
+					for (String keggId : keggIdPackage) {
+						// KEGG leaves out unknown reactions, these are cached as reactions without pathways.
+						List<String> pathways = result.containsKey(keggId) ? result.get(keggId) : new ArrayList<>();
+						this.cache.put(keggId, pathways);
+						keggId2pathways.put(keggId, pathways);
+					}
+					MainFrame.showMessage("So far " + numberOfQueried[0] + " of " + missingKeggIds.size()
+							+ " reactions have been queried from Kegg.", MessageType.PERMANENT_INFO);
+				});
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			} finally {
+				// The packages received so far are kept, even if the requests have been aborted.
+				this.cache.save();
 			}
-		}
-		
-		ArrayList<Node> nodesToRemove = new ArrayList<>();
-		for (Node reactionNode : node2possibleSubsystems.keySet()) {
-			if (node2possibleSubsystems.get(reactionNode).contains(hugestSubsystem)) {
-				nodesToRemove.add(reactionNode);
-				LMMEController.getInstance().getCurrentSession().addNodeAttribute(reactionNode,
-						ATTRIBUTE_NAME_FINAL_SUBSYSTEM, hugestSubsystem);
+			if (numberOfFailed[0] > 0) {
+				// TODO: proper evaluation of response once RestService returns a map instead of just a string
+				ErrorMsg.addErrorMessage("KEGG Decomposition failed: could not retrieve pathway information for " + numberOfFailed[0]
+						+ " reactions from KEGG database.");
 			}
 		}
-		LMMEController.getInstance().getTab()
-				.logMsg("Added " + nodesToRemove.size() + " nodes to subsystem " + hugestSubsystem);
-		
-		for (Node nodeToRemove : nodesToRemove) {
-			node2possibleSubsystems.remove(nodeToRemove);
-		}
-		
 	}
 	
 	@Override
@@ -441,6 +358,19 @@ public class KeggMMDecomposition extends MMDecompositionAlgorithm implements Nee
 					this.minimumNumberSlider, Color.WHITE);
 			
 			fp.addGuiComponentRow(minimumNumberComponent, null, true);
+			
+			this.ckbOffline = new JCheckBox("Offline (cached reactions only)");
+			this.ckbOffline.setToolTipText("If selected, KEGG is not queried and only the reactions that have been retrieved in former runs are used.");
+			this.ckbOffline.setBackground(Color.WHITE);
+			fp.addGuiComponentRow(FolderPanel.getBorderedComponent(this.ckbOffline, 5, 0, 0, 0), null, true);
+			
+			this.tfLinkFile = new JTextField(10);
+			this.tfLinkFile.setToolTipText("A local copy of the KEGG reaction-pathway links (link/pathway/reaction). If given, KEGG is not queried.");
+			fp.addGuiComponentRow(FolderPanel.getBorderedComponent(createFileLine("Local links file:", this.tfLinkFile), 5, 0, 0, 0), null, true);
+			
+			this.tfListFile = new JTextField(10);
+			this.tfListFile.setToolTipText("A local copy of the KEGG pathway names (list/pathway). Optional, without it the pathways are named by their ids.");
+			fp.addGuiComponentRow(createFileLine("Local pathways file:", this.tfListFile), null, true);
 		}
 		return fp;
 	}
@@ -458,6 +388,20 @@ public class KeggMMDecomposition extends MMDecompositionAlgorithm implements Nee
 		this.fp.layoutRows();
 	}
 	
+	private JPanel createFileLine(String label, JTextField tfFile) {
+		JButton btnLoad = new JButton("Load");
+		btnLoad.addActionListener(new ActionListener() {
+			public void actionPerformed(ActionEvent e) {
+				JFileChooser fc = new JFileChooser();
+				int res = fc.showOpenDialog(null);
+				if (res == JFileChooser.APPROVE_OPTION) {
+					tfFile.setText(fc.getSelectedFile().getAbsolutePath());
+				}
+			}
+		});
+		return LMMETab.combine(new JLabel(label), LMMETab.combine(tfFile, btnLoad, Color.WHITE, false, true), Color.WHITE, false, true);
+	}
+	
 	private JComboBox<String> createComboBox() {
 		JComboBox<String> cb;
 		if (LMMEController.getInstance().getCurrentSession().isModelSet()) {
@@ -0,0 +1,201 @@
+/*******************************************************************************
+ * LMME is a VANTED Add-on for the exploration of large metabolic models.
+ * Copyright (C) 2020 Chair for Life Science Informatics, University of Konstanz
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package org.vanted.addons.lmme.decomposition;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.ErrorMsg;
+import org.ReleaseInfo;
+
+/**
+ * A persistent cache of the pathways that KEGG assigns to each reaction, such that the KEGG decomposition does not need to query KEGG again on every
+ * run and also works offline.
+ * <p>
+ * The cache is a tab separated text file in the VANTED application folder. The first line holds a format header with a version number, files of a
+ * different version are ignored. Each further line holds a KEGG reaction id, the time it has been retrieved in milliseconds and the names of the
+ * pathways of the reaction. Entries older than the time to live are treated as missing, but can still be used in offline mode.
+ * 
+ * @author Michael Aichem
+ */
+class KeggReactionCache {
+	
+	private static final String HEADER = "LMME-KEGG-REACTION-CACHE";
+	
+	private static final int VERSION = 1;
+	
+	private static final String FILE_NAME = "lmme_kegg_reaction_cache.tsv";
+	
+	/**
+	 * The default time to live of an entry.
+	 */
+	static final long DEFAULT_TIME_TO_LIVE = TimeUnit.DAYS.toMillis(30);
+	
+	private final Path file;
+	
+	private final long timeToLive;
+	
+	private final HashMap<String, Entry> entries = new HashMap<>();
+	
+	private boolean loaded = false;
+	
+	private boolean modified = false;
+	
+	private static class Entry {
+		
+		private final long timestamp;
+		private final List<String> pathways;
+		
+		private Entry(long timestamp, List<String> pathways) {
+			this.timestamp = timestamp;
+			this.pathways = pathways;
+		}
+	}
+	
+	/**
+	 * Creates the cache in the VANTED application folder with the default time to live.
+	 */
+	KeggReactionCache() {
+		this(Paths.get(ReleaseInfo.getAppFolderWithFinalSep() + FILE_NAME), DEFAULT_TIME_TO_LIVE);
+	}
+	
+	/**
+	 * Creates the cache.
+	 * 
+	 * @param file
+	 *           the file the cache is read from and written to
+	 * @param timeToLive
+	 *           the time in milliseconds after which an entry is considered outdated
+	 */
+	KeggReactionCache(Path file, long timeToLive) {
+		this.file = file;
+		this.timeToLive = timeToLive;
+	}
+	
+	/**
+	 * Gets the pathways of the given reaction.
+	 * 
+	 * @param keggReactionId
+	 *           the KEGG reaction id, e.g. R00200
+	 * @param allowOutdated
+	 *           whether an entry is returned even if it has outlived the time to live
+	 * @return the pathway names, which may be empty if KEGG did not know any, or {@code null} if there is no valid entry
+	 */
+	synchronized List<String> get(String keggReactionId, boolean allowOutdated) {
+		load();
+		Entry entry = entries.get(keggReactionId);
+		if (entry == null || (!allowOutdated && System.currentTimeMillis() - entry.timestamp > timeToLive)) {
+			return null;
+		}
+		return entry.pathways;
+	}
+	
+	/**
+	 * Stores the pathways of the given reaction, which have just been retrieved from KEGG.
+	 * 
+	 * @param keggReactionId
+	 *           the KEGG reaction id
+	 * @param pathways
+	 *           the pathway names
+	 */
+	synchronized void put(String keggReactionId, List<String> pathways) {
+		load();
+		entries.put(keggReactionId, new Entry(System.currentTimeMillis(), new ArrayList<>(pathways)));
+		modified = true;
+	}
+	
+	/**
+	 * Reads the cache file, if this has not been done before. A missing, unreadable or outdated file results in an empty cache.
+	 */
+	private void load() {
+		if (loaded) {
+			return;
+		}
+		loaded = true;
+		if (!Files.isRegularFile(file)) {
+			return;
+		}
+		try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+			String header = reader.readLine();
+			if (header == null || !header.equals(HEADER + "\t" + VERSION)) {
+				return;
+			}
+			String line;
+			while ((line = reader.readLine()) != null) {
+				String[] fields = line.split("\t");
+				if (fields.length < 2) {
+					continue;
+				}
+				long timestamp;
+				try {
+					timestamp = Long.parseLong(fields[1]);
+				} catch (NumberFormatException e) {
+					continue;
+				}
+				entries.put(fields[0], new Entry(timestamp, Arrays.asList(Arrays.copyOfRange(fields, 2, fields.length))));
+			}
+		} catch (IOException e) {
+			entries.clear();
+			ErrorMsg.addErrorMessage("The KEGG cache " + file + " could not be read: " + e.getMessage());
+		}
+	}
+	
+	/**
+	 * Writes the cache file, if entries have been added since it has been read. The file is replaced at once, such that an interrupted write does not
+	 * corrupt the cache.
+	 */
+	synchronized void save() {
+		if (!modified) {
+			return;
+		}
+		Path temporaryFile = file.resolveSibling(file.getFileName() + ".tmp");
+		try {
+			if (file.getParent() != null) {
+				Files.createDirectories(file.getParent());
+			}
+			try (BufferedWriter writer = Files.newBufferedWriter(temporaryFile, StandardCharsets.UTF_8)) {
+				writer.write(HEADER + "\t" + VERSION);
+				writer.newLine();
+				for (Map.Entry<String, Entry> mapEntry : entries.entrySet()) {
+					writer.write(mapEntry.getKey());
+					writer.write('\t');
+					writer.write(Long.toString(mapEntry.getValue().timestamp));
+					for (String pathway : mapEntry.getValue().pathways) {
+						writer.write('\t');
+						writer.write(pathway);
+					}
+					writer.newLine();
+				}
+			}
+			Files.move(temporaryFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			modified = false;
+		} catch (IOException e) {
+			ErrorMsg.addErrorMessage("The KEGG cache " + file + " could not be written: " + e.getMessage());
+		}
+	}
+	
+}
@@ -0,0 +1,267 @@
+/*******************************************************************************
+ * LMME is a VANTED Add-on for the exploration of large metabolic models.
+ * Copyright (C) 2020 Chair for Life Science Informatics, University of Konstanz
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package org.vanted.addons.lmme.decomposition;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import javax.ws.rs.core.MediaType;
+
+import de.ipk_gatersleben.ag_nw.graffiti.services.web.RestService;
+
+/**
+ * Requests the pathways of KEGG reactions with several requests in flight at once.
+ * <p>
+ * The reactions are requested in packages. Each worker thread sends a request, parses the response with the {@link KeggFlatFileParser} while it is
+ * being received and hands the result to the calling thread, so that parsing overlaps with the network I/O. The requests are started no faster than KEGG permits, which is enforced by a
+ * token bucket. Failed requests are retried with exponential backoff.
+ * 
+ * @author Michael Aichem
+ */
+class KeggRequestScheduler {
+	
+	/**
+	 * The number of requests KEGG accepts per second.
+	 */
+	static final double DEFAULT_REQUESTS_PER_SECOND = 3.0;
+	
+	static final int DEFAULT_MAX_IN_FLIGHT = 3;
+	
+	private static final int MAX_RETRIES = 3;
+	
+	private static final long INITIAL_BACKOFF_MILLIS = 1000;
+	
+	private final String baseUrl;
+	private final int maxInFlight;
+	private final double requestsPerSecond;
+	
+	/**
+	 * Each worker uses its own rest service, as they are not meant to be shared between threads.
+	 */
+	private final ThreadLocal<RestService> restServices;
+	
+	private double tokens;
+	private long lastRefill;
+	
+	private static class PackageResult {
+		
+		private final List<String> keggIdPackage;
+		private final HashMap<String, List<String>> result;
+		
+		private PackageResult(List<String> keggIdPackage, HashMap<String, List<String>> result) {
+			this.keggIdPackage = keggIdPackage;
+			this.result = result;
+		}
+	}
+	
+	/**
+	 * Receives the result of each package on the thread that called {@link KeggRequestScheduler#run(List, int, PackageConsumer)}.
+	 */
+	interface PackageConsumer {
+		
+		/**
+		 * Processes the result of a package.
+		 * 
+		 * @param keggIdPackage
+		 *           the requested KEGG reaction ids
+		 * @param result
+		 *           the pathways of each reaction that KEGG knows, or {@code null} if the request failed after all retries
+		 */
+		void accept(List<String> keggIdPackage, HashMap<String, List<String>> result);
+	}
+	
+	/**
+	 * Creates a scheduler with the default limits.
+	 * 
+	 * @param baseUrl
+	 *           the base URL of the KEGG get operation
+	 */
+	KeggRequestScheduler(String baseUrl) {
+		this(baseUrl, DEFAULT_MAX_IN_FLIGHT, DEFAULT_REQUESTS_PER_SECOND);
+	}
+	
+	/**
+	 * Creates a scheduler.
+	 * 
+	 * @param baseUrl
+	 *           the base URL of the KEGG get operation
+	 * @param maxInFlight
+	 *           the maximum number of requests at the same time
+	 * @param requestsPerSecond
+	 *           the maximum number of requests that are started per second
+	 */
+	KeggRequestScheduler(String baseUrl, int maxInFlight, double requestsPerSecond) {
+		this.baseUrl = baseUrl;
+		this.maxInFlight = maxInFlight;
+		this.requestsPerSecond = requestsPerSecond;
+		this.restServices = ThreadLocal.withInitial(() -> new RestService(this.baseUrl));
+	}
+	
+	/**
+	 * Requests the given reactions and passes the results to the consumer in the order in which they arrive.
+	 * 
+	 * @param keggIds
+	 *           the KEGG reaction ids
+	 * @param packageSize
+	 *           the number of reactions per request
+	 * @param consumer
+	 *           the consumer of the results, which is called on the current thread
+	 * @throws InterruptedException
+	 *            if the current thread is interrupted while waiting, the remaining requests are cancelled
+	 */
+	void run(List<String> keggIds, int packageSize, PackageConsumer consumer) throws InterruptedException {
+		if (keggIds.isEmpty()) {
+			return;
+		}
+		synchronized (this) {
+			this.tokens = 1.0;
+			this.lastRefill = System.nanoTime();
+		}
+		
+		ArrayList<List<String>> packages = new ArrayList<>();
+		for (int packageStart = 0; packageStart < keggIds.size(); packageStart += packageSize) {
+			packages.add(new ArrayList<>(keggIds.subList(packageStart, Math.min(packageStart + packageSize, keggIds.size()))));
+		}
+		
+		ExecutorService executor = Executors.newFixedThreadPool(Math.min(maxInFlight, packages.size()), runnable -> {
+			Thread thread = new Thread(runnable, "LMME KEGG request");
+			thread.setDaemon(true);
+			return thread;
+		});
+		try {
+			CompletionService<PackageResult> completionService = new ExecutorCompletionService<>(executor);
+			for (List<String> keggIdPackage : packages) {
+				completionService.submit(() -> new PackageResult(keggIdPackage, requestWithRetries(keggIdPackage)));
+			}
+			for (int i = 0; i < packages.size(); i++) {
+				PackageResult completed;
+				try {
+					completed = completionService.take().get();
+				} catch (ExecutionException e) {
+					throw new IllegalStateException(e.getCause());
+				}
+				consumer.accept(completed.keggIdPackage, completed.result);
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+	
+	/**
+	 * Requests a package, retrying with exponentially growing pauses if the request fails, either without a response or with an exception.
+	 * 
+	 * @param keggIdPackage
+	 *           the KEGG reaction ids
+	 * @return the parsed result, or {@code null} if all attempts failed
+	 * @throws InterruptedException
+	 *            if the worker is interrupted
+	 */
+	private HashMap<String, List<String>> requestWithRetries(List<String> keggIdPackage) throws InterruptedException {
+		StringBuilder urlPostFix = new StringBuilder();
+		for (String keggId : keggIdPackage) {
+			if (urlPostFix.length() > 0) {
+				urlPostFix.append('+');
+			}
+			urlPostFix.append("rn:").append(keggId);
+		}
+		long backoff = INITIAL_BACKOFF_MILLIS;
+		for (int attempt = 0; attempt <= MAX_RETRIES; attempt++) {
+			if (attempt > 0) {
+				Thread.sleep(backoff + ThreadLocalRandom.current().nextLong(backoff / 2));
+				backoff *= 2;
+			}
+			acquirePermit();
+			HashMap<String, List<String>> result;
+			try {
+				result = parseResponse(restServices.get().makeRequest(urlPostFix.toString(), MediaType.TEXT_PLAIN_TYPE, InputStream.class));
+			} catch (RuntimeException e) {
+				// The rest service reports transient failures, such as a reset connection or an HTTP error, by runtime exceptions.
+				result = null;
+			}
+			if (result != null) {
+				return result;
+			}
+		}
+		return null;
+	}
+	
+	/**
+	 * Parses a KEGG response with several reaction entries while it is being received.
+	 * 
+	 * @param response
+	 *           the response as stream, or as string if the rest service does not provide a stream
+	 * @return the pathway names of each reaction, or {@code null} if there is no response or it could not be read completely
+	 */
+	private static HashMap<String, List<String>> parseResponse(Object response) {
+		if (response == null) {
+			return null;
+		}
+		HashMap<String, List<String>> result = new HashMap<>();
+		KeggFlatFileParser.Handler handler = new KeggFlatFileParser.Handler() {
+			@Override
+			public void entry(String keggId) {
+				result.put(keggId, new ArrayList<>());
+			}
+			
+			@Override
+			public void pathway(String keggId, String pathwayName) {
+				result.get(keggId).add(pathwayName);
+			}
+		};
+		try (Reader reader = response instanceof InputStream
+				? new InputStreamReader((InputStream) response, StandardCharsets.UTF_8)
+				: new StringReader(response.toString())) {
+			KeggFlatFileParser.parse(reader, handler);
+		} catch (IOException e) {
+			return null;
+		}
+		return result;
+	}
+	
+	/**
+	 * Waits until the token bucket permits another request. The bucket holds at most one token, such that requests are evenly spaced.
+	 * 
+	 * @throws InterruptedException
+	 *            if the worker is interrupted
+	 */
+	private synchronized void acquirePermit() throws InterruptedException {
+		while (true) {
+			long now = System.nanoTime();
+			tokens = Math.min(1.0, tokens + (now - lastRefill) * requestsPerSecond / TimeUnit.SECONDS.toNanos(1));
+			lastRefill = now;
+			if (tokens >= 1.0) {
+				tokens -= 1.0;
+				return;
+			}
+			// The other workers would not get a token anyway, so they may wait on the monitor meanwhile.
+			TimeUnit.NANOSECONDS.sleep((long) ((1.0 - tokens) / requestsPerSecond * TimeUnit.SECONDS.toNanos(1)));
+		}
+	}
+	
+}
@@ -0,0 +1,272 @@
+/*******************************************************************************
+ * LMME is a VANTED Add-on for the exploration of large metabolic models.
+ * Copyright (C) 2020 Chair for Life Science Informatics, University of Konstanz
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package org.vanted.addons.lmme.decomposition;
+
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import org.graffiti.editor.MainFrame;
+import org.graffiti.editor.MessageType;
+import org.vanted.addons.lmme.graphs.BaseGraphIndex;
+
+/**
+ * Clustering of the species/reaction graph by asynchronous label propagation, as proposed by Raghavan et al.
+ * <p>
+ * Initially, every node carries a label of its own. In each round, the nodes are visited in a random order and adopt the label that is most frequent
+ * among their neighbors. The labels are updated in place, such that later nodes of the same round already see the new labels. The rounds are
+ * distributed over the threads of a {@link ForkJoinPool} in chunks of the visiting order.
+ * <p>
+ * The number of reactions per label can be capped, which prevents a single label from flooding the graph. The visiting orders and the tie-breaks are
+ * derived from the given seed. With a single thread, the result is therefore fully reproducible. With several threads, the interleaving of the chunks
+ * may lead to slightly different results.
+ * 
+ * @author Michael Aichem
+ */
+public class LabelPropagationClustering {
+	
+	/**
+	 * The number of nodes that are processed as one unit of work.
+	 */
+	private static final int CHUNK_SIZE = 1024;
+	
+	private static final int MAX_ROUNDS = 30;
+	
+	/**
+	 * The propagation stops once fewer than this fraction of the nodes change their label within a round.
+	 */
+	private static final double MIN_CHANGED_FRACTION = 0.001;
+	
+	private final UndirectedSimpleGraph graph;
+	private final int maximumLabelSize;
+	private final long seed;
+	
+	private final int[] labels;
+	private final AtomicIntegerArray labelSizes;
+	
+	private int numberOfRounds;
+	
+	/**
+	 * Creates the undirected, simple graph on which the clustering is performed.
+	 * 
+	 * @param index
+	 *           the index of the graph to be clustered
+	 * @param excludedNodes
+	 *           the nodes whose edges are to be ignored, indexed by node id, or {@code null}. These nodes keep labels of their own.
+	 * @param maximumLabelSize
+	 *           the maximum number of reactions per label, or 0 for no limit
+	 * @param seed
+	 *           the seed for the visiting orders and the tie-breaks
+	 */
+	public LabelPropagationClustering(BaseGraphIndex index, boolean[] excludedNodes, int maximumLabelSize, long seed) {
+		this.graph = new UndirectedSimpleGraph(index, excludedNodes);
+		this.maximumLabelSize = maximumLabelSize > 0 ? maximumLabelSize : Integer.MAX_VALUE;
+		this.seed = seed;
+		this.labels = new int[graph.numberOfNodes];
+		this.labelSizes = new AtomicIntegerArray(graph.numberOfNodes);
+	}
+	
+	/**
+	 * Performs the clustering.
+	 * 
+	 * @return the label for each node id of the index
+	 */
+	public int[] run() {
+		
+		int numberOfNodes = graph.numberOfNodes;
+		for (int v = 0; v < numberOfNodes; v++) {
+			labels[v] = v;
+			if (v >= graph.firstReactionId) {
+				labelSizes.set(v, 1);
+			}
+		}
+		
+		int[] order = new int[numberOfNodes];
+		for (int v = 0; v < numberOfNodes; v++) {
+			order[v] = v;
+		}
+		
+		this.numberOfRounds = 0;
+		while (numberOfRounds < MAX_ROUNDS) {
+			shuffle(order, new Random(seed + numberOfRounds));
+			int changed = propagate(order);
+			numberOfRounds++;
+			MainFrame.showMessage("Label propagation: round " + numberOfRounds + ", " + changed + " labels changed",
+					MessageType.PERMANENT_INFO);
+			if (changed < MIN_CHANGED_FRACTION * numberOfNodes) {
+				break;
+			}
+		}
+		
+		return labels.clone();
+	}
+	
+	public int getNumberOfRounds() {
+		return numberOfRounds;
+	}
+	
+	/**
+	 * Performs one round of the propagation.
+	 * 
+	 * @param order
+	 *           the order in which the nodes are visited
+	 * @return the number of nodes that have changed their label
+	 */
+	private int propagate(int[] order) {
+		int numberOfChunks = (order.length + CHUNK_SIZE - 1) / CHUNK_SIZE;
+		int parallelism = Math.max(1, Math.min(ForkJoinPool.commonPool().getParallelism(), numberOfChunks));
+		AtomicInteger nextChunk = new AtomicInteger(0);
+		ArrayList<Callable<Integer>> tasks = new ArrayList<>();
+		for (int t = 0; t < parallelism; t++) {
+			tasks.add(new Callable<Integer>() {
+				public Integer call() {
+					int[] counts = new int[graph.numberOfNodes];
+					int[] candidates = new int[graph.numberOfNodes];
+					int changed = 0;
+					int chunk;
+					while ((chunk = nextChunk.getAndIncrement()) < numberOfChunks) {
+						int end = Math.min(order.length, (chunk + 1) * CHUNK_SIZE);
+						for (int i = chunk * CHUNK_SIZE; i < end; i++) {
+							if (updateLabel(order[i], counts, candidates)) {
+								changed++;
+							}
+						}
+					}
+					return Integer.valueOf(changed);
+				}
+			});
+		}
+		int changed = 0;
+		if (parallelism == 1) {
+			try {
+				changed = tasks.get(0).call().intValue();
+			} catch (Exception e) {
+				throw new IllegalStateException(e);
+			}
+			return changed;
+		}
+		try {
+			for (Future<Integer> future : ForkJoinPool.commonPool().invokeAll(tasks)) {
+				changed += future.get().intValue();
+			}
+		} catch (InterruptedException | ExecutionException e) {
+			throw new IllegalStateException("The label propagation failed.", e);
+		}
+		return changed;
+	}
+	
+	/**
+	 * Assigns the most frequent label among the neighbors to the given node.
+	 * <p>
+	 * The current label is kept if it is among the most frequent ones. Labels that have reached the maximum size are not adopted by reactions.
+	 * 
+	 * @param v
+	 *           the node
+	 * @param counts
+	 *           a buffer of the size of the graph that is filled with 0
+	 * @param candidates
+	 *           a buffer of the size of the graph
+	 * @return whether the label of the node has changed
+	 */
+	private boolean updateLabel(int v, int[] counts, int[] candidates) {
+		int start = graph.offsets[v];
+		int end = graph.offsets[v + 1];
+		if (start == end) {
+			return false;
+		}
+		
+		int currentLabel = labels[v];
+		int numberOfCandidates = 0;
+		for (int k = start; k < end; k++) {
+			int label = labels[graph.neighbors[k]];
+			if (counts[label]++ == 0) {
+				candidates[numberOfCandidates++] = label;
+			}
+		}
+		
+		boolean isReaction = v >= graph.firstReactionId;
+		int bestLabel = currentLabel;
+		int bestCount = counts[currentLabel];
+		int bestTieBreak = Integer.MIN_VALUE;
+		for (int i = 0; i < numberOfCandidates; i++) {
+			int label = candidates[i];
+			int count = counts[label];
+			if (label == currentLabel || count < bestCount) {
+				continue;
+			}
+			if (isReaction && labelSizes.get(label) >= maximumLabelSize) {
+				continue;
+			}
+			if (bestLabel == currentLabel && count == bestCount) {
+				continue;
+			}
+			int tieBreak = tieBreak(v, label);
+			if (count > bestCount || tieBreak > bestTieBreak) {
+				bestLabel = label;
+				bestCount = count;
+				bestTieBreak = tieBreak;
+			}
+		}
+		
+		for (int i = 0; i < numberOfCandidates; i++) {
+			counts[candidates[i]] = 0;
+		}
+		
+		if (bestLabel == currentLabel) {
+			return false;
+		}
+		if (isReaction) {
+			// Reserve a place in the new label, another thread may have filled it in the meantime.
+			if (labelSizes.incrementAndGet(bestLabel) > maximumLabelSize) {
+				labelSizes.decrementAndGet(bestLabel);
+				return false;
+			}
+			labelSizes.decrementAndGet(currentLabel);
+		}
+		labels[v] = bestLabel;
+		return true;
+	}
+	
+	/**
+	 * Derives a pseudo-random but reproducible priority for assigning the given label to the given node.
+	 * 
+	 * @param v
+	 *           the node
+	 * @param label
+	 *           the label
+	 * @return the priority
+	 */
+	private int tieBreak(int v, int label) {
+		long h = seed ^ (((long) v << 32) | (label & 0xffffffffL));
+		h = (h ^ (h >>> 33)) * 0xff51afd7ed558ccdL;
+		h = (h ^ (h >>> 33)) * 0xc4ceb9fe1a85ec53L;
+		return (int) (h ^ (h >>> 33));
+	}
+	
+	private static void shuffle(int[] array, Random random) {
+		for (int i = array.length - 1; i > 0; i--) {
+			int j = random.nextInt(i + 1);
+			int tmp = array[i];
+			array[i] = array[j];
+			array[j] = tmp;
+		}
+	}
+	
+}
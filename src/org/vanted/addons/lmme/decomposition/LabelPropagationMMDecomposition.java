@@ -0,0 +1,154 @@
+/*******************************************************************************
+ * LMME is a VANTED Add-on for the exploration of large metabolic models.
+ * Copyright (C) 2020 Chair for Life Science Informatics, University of Konstanz
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package org.vanted.addons.lmme.decomposition;
+
+import java.awt.Color;
+import java.util.ArrayList;
+import java.util.HashSet;
+
+import javax.swing.JLabel;
+import javax.swing.JOptionPane;
+import javax.swing.JPanel;
+import javax.swing.JTextField;
+
+import org.FolderPanel;
+import org.graffiti.graph.Node;
+import org.vanted.addons.lmme.core.LMMEController;
+import org.vanted.addons.lmme.graphs.BaseGraphIndex;
+import org.vanted.addons.lmme.graphs.SubsystemGraph;
+import org.vanted.addons.lmme.ui.LMMETab;
+
+/**
+ * This class implements a fast decomposition by label propagation, which is intended for a first look at very large models such as merged community
+ * models.
+ * <p>
+ * The method has been published in the following paper:
+ * Raghavan, U. N., Albert, R., Kumara, S. (2007). Near linear time algorithm to
+ * detect community structures in large-scale networks. Physical Review E, 76(3),
+ * 036106.
+ * 
+ * @author Michael Aichem
+ */
+public class LabelPropagationMMDecomposition extends MMDecompositionAlgorithm {
+	
+	private int defaultMaximumSize = 500;
+	
+	private long defaultSeed = 1;
+	
+	private JTextField tfMaximumSize;
+	
+	private JTextField tfSeed;
+	
+	private final String ATTRIBUTE_NAME_SUBSYSTEM = "LabelPropagationSubsystem";
+	
+	@Override
+	protected ArrayList<SubsystemGraph> runSpecific(HashSet<Node> alreadyClassifiedNodes) {
+		
+		BaseGraphIndex index = LMMEController.getInstance().getCurrentSession().getBaseGraph().getIndex();
+		
+		// Already classified reactions, such as transporters, must not connect the subsystems.
+		boolean[] excludedNodes = new boolean[index.getNumberOfNodes()];
+		for (Node node : alreadyClassifiedNodes) {
+			int id = index.getId(node);
+			if (id != -1) {
+				excludedNodes[id] = true;
+			}
+		}
+		
+		LabelPropagationClustering clustering = new LabelPropagationClustering(index, excludedNodes, readMaximumSize(), readSeed());
+		int[] labels = clustering.run();
+		LMMEController.getInstance().getTab().logMsg("Label propagation finished after " + clustering.getNumberOfRounds() + " rounds.");
+		
+		int[] subsystemNumbers = new int[index.getNumberOfNodes()];
+		int count = 0;
+		for (int reactionId = index.getFirstReactionId(); reactionId < index.getNumberOfNodes(); reactionId++) {
+			if (excludedNodes[reactionId]) {
+				continue;
+			}
+			int label = labels[reactionId];
+			if (subsystemNumbers[label] == 0) {
+				subsystemNumbers[label] = ++count;
+			}
+			LMMEController.getInstance().getCurrentSession().addNodeAttribute(index.getNode(reactionId),
+					this.ATTRIBUTE_NAME_SUBSYSTEM, "Label Propagation Subsystem " + subsystemNumbers[label]);
+		}
+		
+		return determineSubsystemsFromReactionAttributes(this.ATTRIBUTE_NAME_SUBSYSTEM, false, "", alreadyClassifiedNodes);
+	}
+	
+	@Override
+	public boolean requiresCloning() {
+		return true;
+	}
+	
+	@Override
+	public FolderPanel getFolderPanel() {
+		FolderPanel fp = new FolderPanel(getName() + " Settings", false, true, false, null);
+		
+		this.tfMaximumSize = new JTextField(5);
+		this.tfMaximumSize.setText(Integer.toString(this.defaultMaximumSize));
+		this.tfMaximumSize.setToolTipText("The maximum number of reactions per subsystem, 0 for no limit.");
+		JPanel maximumSizeLine = LMMETab.combine(new JLabel("Maximum subsystem size: "), this.tfMaximumSize, Color.WHITE, false, true);
+		fp.addGuiComponentRow(maximumSizeLine, null, true);
+		
+		this.tfSeed = new JTextField(5);
+		this.tfSeed.setText(Long.toString(this.defaultSeed));
+		this.tfSeed.setToolTipText("The same seed leads to the same decomposition.");
+		JPanel seedLine = LMMETab.combine(new JLabel("Seed: "), this.tfSeed, Color.WHITE, false, true);
+		fp.addGuiComponentRow(seedLine, null, true);
+		
+		return fp;
+	}
+	
+	@Override
+	public void updateFolderPanel() {
+		// no need to do sth.
+	}
+	
+	private int readMaximumSize() {
+		int res;
+		try {
+			res = Integer.parseInt(this.tfMaximumSize.getText());
+		} catch (NumberFormatException e) {
+			JOptionPane.showMessageDialog(null, "The maximum subsystem size could not be read. "
+					+ "It has therefore been set to " + this.defaultMaximumSize + ".");
+			res = this.defaultMaximumSize;
+		}
+		return res;
+	}
+	
+	private long readSeed() {
+		long res;
+		try {
+			res = Long.parseLong(this.tfSeed.getText());
+		} catch (NumberFormatException e) {
+			JOptionPane.showMessageDialog(null, "The seed could not be read. "
+					+ "It has therefore been set to " + this.defaultSeed + ".");
+			res = this.defaultSeed;
+		}
+		return res;
+	}
+	
+	@Override
+	public String getName() {
+		return "Label Propagation";
+	}
+	
+	@Override
+	public boolean requiresTransporterSubsystem() {
+		return false;
+	}
+	
+}
@@ -0,0 +1,415 @@
+/*******************************************************************************
+ * LMME is a VANTED Add-on for the exploration of large metabolic models.
+ * Copyright (C) 2020 Chair for Life Science Informatics, University of Konstanz
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package org.vanted.addons.lmme.decomposition;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.graffiti.editor.MainFrame;
+import org.graffiti.editor.MessageType;
+import org.vanted.addons.lmme.graphs.BaseGraphIndex;
+
+/**
+ * Modularity-based clustering of the species/reaction graph following the Louvain method of Blondel et al.
+ * <p>
+ * The graph is treated as undirected and simple. Each level consists of a local moving phase, in which nodes are moved to the neighboring community
+ * with the largest gain in modularity, and an aggregation phase, in which the communities are contracted to the nodes of the next level. In the local
+ * moving phase, the best move of every node is first determined in parallel with respect to a snapshot of the communities. The proposed moves are then
+ * rechecked against the current communities and committed sequentially, such that the modularity never decreases.
+ * <p>
+ * The resolution parameter scales the null model: values above 1 lead to more and smaller communities, values below 1 to fewer and larger ones.
+ * 
+ * @author Michael Aichem
+ */
+public class LouvainClustering {
+	
+	/**
+	 * The number of nodes that are processed as one unit of work in the parallel phase.
+	 */
+	private static final int CHUNK_SIZE = 512;
+	
+	private static final int MAX_ITERATIONS = 50;
+	
+	private static final double MIN_IMPROVEMENT = 1e-7;
+	
+	private final int numberOfNodes;
+	private final double resolution;
+	
+	/**
+	 * Twice the total edge weight, which stays the same on all levels.
+	 */
+	private final double totalWeight;
+	
+	private int levelSize;
+	private int[] offsets;
+	private int[] neighbors;
+	private double[] weights;
+	private double[] selfLoops;
+	private double[] strengths;
+	
+	private double modularity;
+	private int numberOfLevels;
+	
+	/**
+	 * Creates the undirected, simple graph on which the clustering is performed.
+	 * 
+	 * @param index
+	 *           the index of the graph to be clustered
+	 * @param excludedNodes
+	 *           the nodes whose edges are to be ignored, indexed by node id, or {@code null}. These nodes remain in communities of their own.
+	 * @param resolution
+	 *           the resolution parameter, 1 corresponds to the standard modularity
+	 */
+	public LouvainClustering(BaseGraphIndex index, boolean[] excludedNodes, double resolution) {
+		
+		this.numberOfNodes = index.getNumberOfNodes();
+		this.resolution = resolution;
+		
+		UndirectedSimpleGraph graph = new UndirectedSimpleGraph(index, excludedNodes);
+		
+		this.levelSize = numberOfNodes;
+		this.offsets = graph.offsets;
+		this.neighbors = graph.neighbors;
+		this.weights = new double[neighbors.length];
+		Arrays.fill(weights, 1.0);
+		this.selfLoops = new double[numberOfNodes];
+		this.strengths = new double[numberOfNodes];
+		for (int v = 0; v < numberOfNodes; v++) {
+			strengths[v] = graph.getDegree(v);
+		}
+		this.totalWeight = 2.0 * graph.numberOfEdges;
+	}
+	
+	/**
+	 * Performs the clustering.
+	 * <p>
+	 * New levels are created as long as the local moving phase merges communities and the modularity improves.
+	 * 
+	 * @return the community for each node id of the index, numbered from 0
+	 */
+	public int[] run() {
+		
+		int[] labels = new int[numberOfNodes];
+		for (int v = 0; v < numberOfNodes; v++) {
+			labels[v] = v;
+		}
+		this.modularity = computeModularity(labels, numberOfNodes);
+		this.numberOfLevels = 0;
+		
+		if (totalWeight == 0) {
+			return labels;
+		}
+		
+		while (true) {
+			int[] community = moveNodes();
+			int numberOfCommunities = renumber(community);
+			if (numberOfCommunities == levelSize) {
+				break;
+			}
+			double levelModularity = computeModularity(community, numberOfCommunities);
+			for (int v = 0; v < numberOfNodes; v++) {
+				labels[v] = community[labels[v]];
+			}
+			numberOfLevels++;
+			MainFrame.showMessage("Louvain: level " + numberOfLevels + ", " + numberOfCommunities + " communities, modularity "
+					+ String.format("%.4f", levelModularity), MessageType.PERMANENT_INFO);
+			
+			aggregate(community, numberOfCommunities);
+			
+			boolean improved = levelModularity - modularity >= MIN_IMPROVEMENT;
+			this.modularity = levelModularity;
+			if (!improved) {
+				break;
+			}
+		}
+		
+		return labels;
+	}
+	
+	/**
+	 * Gets the modularity of the partition that has been returned by {@link #run()}, with respect to the given resolution.
+	 * 
+	 * @return the modularity
+	 */
+	public double getModularity() {
+		return modularity;
+	}
+	
+	public int getNumberOfLevels() {
+		return numberOfLevels;
+	}
+	
+	/**
+	 * Performs the local moving phase on the current level.
+	 * 
+	 * @return the community for each node of the current level
+	 */
+	private int[] moveNodes() {
+		int[] community = new int[levelSize];
+		for (int v = 0; v < levelSize; v++) {
+			community[v] = v;
+		}
+		double[] communityStrengths = strengths.clone();
+		
+		double[] neighborWeights = new double[levelSize];
+		Arrays.fill(neighborWeights, -1.0);
+		int[] neighborCommunities = new int[levelSize];
+		
+		for (int iteration = 0; iteration < MAX_ITERATIONS; iteration++) {
+			int[] proposals = proposeMoves(community, communityStrengths);
+			
+			// Recheck the proposals against the current communities, as other nodes may have moved in the meantime.
+			int moves = 0;
+			for (int v = 0; v < levelSize; v++) {
+				if (proposals[v] != community[v]) {
+					int best = determineBestCommunity(v, community, communityStrengths, neighborWeights, neighborCommunities);
+					if (best != community[v]) {
+						communityStrengths[community[v]] -= strengths[v];
+						communityStrengths[best] += strengths[v];
+						community[v] = best;
+						moves++;
+					}
+				}
+			}
+			if (moves == 0) {
+				break;
+			}
+		}
+		return community;
+	}
+	
+	/**
+	 * Determines the best community for every node of the current level in parallel, without changing the given communities.
+	 * 
+	 * @param community
+	 *           the current community of each node
+	 * @param communityStrengths
+	 *           the total strength of each community
+	 * @return the proposed community of each node
+	 */
+	private int[] proposeMoves(int[] community, double[] communityStrengths) {
+		int[] proposals = new int[levelSize];
+		int numberOfChunks = (levelSize + CHUNK_SIZE - 1) / CHUNK_SIZE;
+		int parallelism = Math.max(1, Math.min(ForkJoinPool.commonPool().getParallelism(), numberOfChunks));
+		AtomicInteger nextChunk = new AtomicInteger(0);
+		ArrayList<Callable<Void>> tasks = new ArrayList<>();
+		for (int t = 0; t < parallelism; t++) {
+			tasks.add(new Callable<Void>() {
+				public Void call() {
+					double[] neighborWeights = new double[levelSize];
+					Arrays.fill(neighborWeights, -1.0);
+					int[] neighborCommunities = new int[levelSize];
+					int chunk;
+					while ((chunk = nextChunk.getAndIncrement()) < numberOfChunks) {
+						int end = Math.min(levelSize, (chunk + 1) * CHUNK_SIZE);
+						for (int v = chunk * CHUNK_SIZE; v < end; v++) {
+							proposals[v] = determineBestCommunity(v, community, communityStrengths, neighborWeights, neighborCommunities);
+						}
+					}
+					return null;
+				}
+			});
+		}
+		if (parallelism == 1) {
+			try {
+				tasks.get(0).call();
+			} catch (Exception e) {
+				throw new IllegalStateException(e);
+			}
+			return proposals;
+		}
+		try {
+			for (Future<Void> future : ForkJoinPool.commonPool().invokeAll(tasks)) {
+				future.get();
+			}
+		} catch (InterruptedException | ExecutionException e) {
+			throw new IllegalStateException("The local moving phase failed.", e);
+		}
+		return proposals;
+	}
+	
+	/**
+	 * Determines the community to which moving the given node yields the largest gain in modularity.
+	 * 
+	 * @param v
+	 *           the node of the current level
+	 * @param community
+	 *           the current community of each node
+	 * @param communityStrengths
+	 *           the total strength of each community
+	 * @param neighborWeights
+	 *           a buffer of the size of the level that is filled with -1
+	 * @param neighborCommunities
+	 *           a buffer of the size of the level
+	 * @return the best community, which is the current community of the node if no move improves the modularity
+	 */
+	private int determineBestCommunity(int v, int[] community, double[] communityStrengths, double[] neighborWeights,
+			int[] neighborCommunities) {
+		int ownCommunity = community[v];
+		int count = 0;
+		neighborWeights[ownCommunity] = 0.0;
+		neighborCommunities[count++] = ownCommunity;
+		for (int k = offsets[v]; k < offsets[v + 1]; k++) {
+			int c = community[neighbors[k]];
+			if (neighborWeights[c] < 0) {
+				neighborWeights[c] = 0.0;
+				neighborCommunities[count++] = c;
+			}
+			neighborWeights[c] += weights[k];
+		}
+		
+		double factor = resolution * strengths[v] / totalWeight;
+		int best = ownCommunity;
+		double bestGain = neighborWeights[ownCommunity] - factor * (communityStrengths[ownCommunity] - strengths[v]);
+		for (int i = 1; i < count; i++) {
+			int c = neighborCommunities[i];
+			double gain = neighborWeights[c] - factor * communityStrengths[c];
+			if (gain > bestGain + 1e-12) {
+				best = c;
+				bestGain = gain;
+			}
+		}
+		
+		for (int i = 0; i < count; i++) {
+			neighborWeights[neighborCommunities[i]] = -1.0;
+		}
+		return best;
+	}
+	
+	/**
+	 * Renumbers the given communities consecutively from 0.
+	 * 
+	 * @param community
+	 *           the community of each node, which is renumbered in place
+	 * @return the number of communities
+	 */
+	private int renumber(int[] community) {
+		int[] newIds = new int[levelSize];
+		Arrays.fill(newIds, -1);
+		int numberOfCommunities = 0;
+		for (int v = 0; v < levelSize; v++) {
+			if (newIds[community[v]] == -1) {
+				newIds[community[v]] = numberOfCommunities++;
+			}
+			community[v] = newIds[community[v]];
+		}
+		return numberOfCommunities;
+	}
+	
+	/**
+	 * Contracts the communities of the current level to the nodes of the next level.
+	 * 
+	 * @param community
+	 *           the community of each node, numbered consecutively
+	 * @param numberOfCommunities
+	 *           the number of communities
+	 */
+	private void aggregate(int[] community, int numberOfCommunities) {
+		int[] memberOffsets = new int[numberOfCommunities + 1];
+		for (int v = 0; v < levelSize; v++) {
+			memberOffsets[community[v] + 1]++;
+		}
+		for (int c = 0; c < numberOfCommunities; c++) {
+			memberOffsets[c + 1] += memberOffsets[c];
+		}
+		int[] members = new int[levelSize];
+		int[] position = Arrays.copyOf(memberOffsets, numberOfCommunities);
+		for (int v = 0; v < levelSize; v++) {
+			members[position[community[v]]++] = v;
+		}
+		
+		// The aggregated graph has at most as many adjacency entries as the current one.
+		int[] newOffsets = new int[numberOfCommunities + 1];
+		int[] newNeighbors = new int[neighbors.length];
+		double[] newWeights = new double[neighbors.length];
+		double[] newSelfLoops = new double[numberOfCommunities];
+		double[] newStrengths = new double[numberOfCommunities];
+		double[] accumulated = new double[numberOfCommunities];
+		int[] touched = new int[numberOfCommunities];
+		int entries = 0;
+		for (int c = 0; c < numberOfCommunities; c++) {
+			int count = 0;
+			for (int m = memberOffsets[c]; m < memberOffsets[c + 1]; m++) {
+				int v = members[m];
+				newSelfLoops[c] += selfLoops[v];
+				newStrengths[c] += strengths[v];
+				for (int k = offsets[v]; k < offsets[v + 1]; k++) {
+					int d = community[neighbors[k]];
+					if (d == c) {
+						// Every internal edge is seen from both of its end nodes.
+						newSelfLoops[c] += weights[k] / 2.0;
+					} else {
+						if (accumulated[d] == 0) {
+							touched[count++] = d;
+						}
+						accumulated[d] += weights[k];
+					}
+				}
+			}
+			for (int i = 0; i < count; i++) {
+				newNeighbors[entries] = touched[i];
+				newWeights[entries++] = accumulated[touched[i]];
+				accumulated[touched[i]] = 0;
+			}
+			newOffsets[c + 1] = entries;
+		}
+		
+		this.levelSize = numberOfCommunities;
+		this.offsets = newOffsets;
+		this.neighbors = Arrays.copyOf(newNeighbors, entries);
+		this.weights = Arrays.copyOf(newWeights, entries);
+		this.selfLoops = newSelfLoops;
+		this.strengths = newStrengths;
+	}
+	
+	/**
+	 * Computes the modularity of the given communities of the current level.
+	 * 
+	 * @param community
+	 *           the community of each node, numbered consecutively
+	 * @param numberOfCommunities
+	 *           the number of communities
+	 * @return the modularity with respect to the given resolution
+	 */
+	private double computeModularity(int[] community, int numberOfCommunities) {
+		if (totalWeight == 0) {
+			return 0.0;
+		}
+		double[] internalWeights = new double[numberOfCommunities];
+		double[] communityStrengths = new double[numberOfCommunities];
+		for (int v = 0; v < levelSize; v++) {
+			int c = community[v];
+			internalWeights[c] += selfLoops[v];
+			communityStrengths[c] += strengths[v];
+			for (int k = offsets[v]; k < offsets[v + 1]; k++) {
+				if (community[neighbors[k]] == c) {
+					internalWeights[c] += weights[k] / 2.0;
+				}
+			}
+		}
+		double q = 0.0;
+		for (int c = 0; c < numberOfCommunities; c++) {
+			double fraction = communityStrengths[c] / totalWeight;
+			q += 2.0 * internalWeights[c] / totalWeight - resolution * fraction * fraction;
+		}
+		return q;
+	}
+	
+}
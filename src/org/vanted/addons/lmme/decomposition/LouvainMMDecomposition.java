@@ -0,0 +1,137 @@
+/*******************************************************************************
+ * LMME is a VANTED Add-on for the exploration of large metabolic models.
+ * Copyright (C) 2020 Chair for Life Science Informatics, University of Konstanz
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package org.vanted.addons.lmme.decomposition;
+
+import java.awt.Color;
+import java.util.ArrayList;
+import java.util.HashSet;
+
+import javax.swing.JLabel;
+import javax.swing.JOptionPane;
+import javax.swing.JPanel;
+import javax.swing.JTextField;
+
+import org.FolderPanel;
+import org.graffiti.graph.Node;
+import org.vanted.addons.lmme.core.LMMEController;
+import org.vanted.addons.lmme.graphs.BaseGraphIndex;
+import org.vanted.addons.lmme.graphs.SubsystemGraph;
+import org.vanted.addons.lmme.ui.LMMETab;
+
+/**
+ * This class implements a decomposition that optimizes the modularity of the species/reaction graph, using the method that has been proposed by
+ * Blondel et al.
+ * <p>
+ * It was published in the following paper:
+ * Blondel, V. D., Guillaume, J. L., Lambiotte, R., Lefebvre, E. (2008). Fast
+ * unfolding of communities in large networks. Journal of Statistical Mechanics:
+ * Theory and Experiment, 2008(10), P10008.
+ * 
+ * @author Michael Aichem
+ */
+public class LouvainMMDecomposition extends MMDecompositionAlgorithm {
+	
+	private double defaultResolution = 1.0;
+	
+	private JTextField tfResolution;
+	
+	private final String ATTRIBUTE_NAME_SUBSYSTEM = "LouvainSubsystem";
+	
+	@Override
+	protected ArrayList<SubsystemGraph> runSpecific(HashSet<Node> alreadyClassifiedNodes) {
+		
+		BaseGraphIndex index = LMMEController.getInstance().getCurrentSession().getBaseGraph().getIndex();
+		
+		// Already classified reactions, such as transporters, must not connect the communities.
+		boolean[] excludedNodes = new boolean[index.getNumberOfNodes()];
+		for (Node node : alreadyClassifiedNodes) {
+			int id = index.getId(node);
+			if (id != -1) {
+				excludedNodes[id] = true;
+			}
+		}
+		
+		LouvainClustering clustering = new LouvainClustering(index, excludedNodes, readResolution());
+		int[] labels = clustering.run();
+		LMMEController.getInstance().getTab().logMsg("Louvain decomposition finished after " + clustering.getNumberOfLevels()
+				+ " levels with a modularity of " + String.format("%.4f", clustering.getModularity()) + ".");
+		
+		int[] subsystemNumbers = new int[index.getNumberOfNodes()];
+		int count = 0;
+		for (int reactionId = index.getFirstReactionId(); reactionId < index.getNumberOfNodes(); reactionId++) {
+			if (excludedNodes[reactionId]) {
+				continue;
+			}
+			int label = labels[reactionId];
+			if (subsystemNumbers[label] == 0) {
+				subsystemNumbers[label] = ++count;
+			}
+			LMMEController.getInstance().getCurrentSession().addNodeAttribute(index.getNode(reactionId),
+					this.ATTRIBUTE_NAME_SUBSYSTEM, "Louvain Subsystem " + subsystemNumbers[label]);
+		}
+		
+		return determineSubsystemsFromReactionAttributes(this.ATTRIBUTE_NAME_SUBSYSTEM, false, "", alreadyClassifiedNodes);
+	}
+	
+	@Override
+	public boolean requiresCloning() {
+		return true;
+	}
+	
+	@Override
+	public FolderPanel getFolderPanel() {
+		FolderPanel fp = new FolderPanel(getName() + " Settings", false, true, false, null);
+		
+		this.tfResolution = new JTextField(5);
+		this.tfResolution.setText(Double.toString(this.defaultResolution));
+		this.tfResolution.setToolTipText("<html>Values above 1 lead to more and smaller subsystems,<br>"
+				+ "values below 1 to fewer and larger subsystems.</html>");
+		JPanel resolutionLine = LMMETab.combine(new JLabel("Resolution: "), this.tfResolution, Color.WHITE, false, true);
+		fp.addGuiComponentRow(resolutionLine, null, true);
+		
+		return fp;
+	}
+	
+	@Override
+	public void updateFolderPanel() {
+		// no need to do sth.
+	}
+	
+	private double readResolution() {
+		double res;
+		try {
+			res = Double.parseDouble(this.tfResolution.getText());
+			if (res <= 0) {
+				throw new NumberFormatException();
+			}
+		} catch (NumberFormatException e) {
+			JOptionPane.showMessageDialog(null, "The resolution could not be read or is not positive. "
+					+ "It has therefore been set to " + this.defaultResolution + ".");
+			res = this.defaultResolution;
+		}
+		return res;
+	}
+	
+	@Override
+	public String getName() {
+		return "Louvain";
+	}
+	
+	@Override
+	public boolean requiresTransporterSubsystem() {
+		return false;
+	}
+	
+}
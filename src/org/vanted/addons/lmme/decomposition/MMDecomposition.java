@@ -210,8 +210,8 @@ public class MMDecomposition {
 		if (this.subsystemSizeMinimum == -1) {
 			int min = -1;
 			for (SubsystemGraph subsystem : getSubsystems()) {
-				if (!(subsystem.getName().equals(LMMEConstants.DEFAULT_SUBSYSTEM)
-						|| subsystem.getName().equals(LMMEConstants.TRANSPORTER_SUBSYSTEM))) {
+				if (!(subsystem.getName().startsWith(LMMEConstants.DEFAULT_SUBSYSTEM)
+						|| subsystem.getName().startsWith(LMMEConstants.TRANSPORTER_SUBSYSTEM))) {
 					if (min == -1) {
 						min = subsystem.getNumberOfReactions();
 					} else if (subsystem.getNumberOfReactions() < min) {
@@ -234,8 +234,8 @@ public class MMDecomposition {
 		if (this.subsystemSizeMaximum == -1) {
 			int max = -1;
 			for (SubsystemGraph subsystem : getSubsystems()) {
-				if (!(subsystem.getName().equals(LMMEConstants.DEFAULT_SUBSYSTEM)
-						|| subsystem.getName().equals(LMMEConstants.TRANSPORTER_SUBSYSTEM))) {
+				if (!(subsystem.getName().startsWith(LMMEConstants.DEFAULT_SUBSYSTEM)
+						|| subsystem.getName().startsWith(LMMEConstants.TRANSPORTER_SUBSYSTEM))) {
 					if (max == -1) {
 						max = subsystem.getNumberOfReactions();
 					} else if (subsystem.getNumberOfReactions() > max) {
@@ -15,30 +15,26 @@
 package org.vanted.addons.lmme.decomposition;
 
 import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Set;
+import java.util.LinkedHashMap;
+import java.util.TreeMap;
 import java.util.regex.Pattern;
+import java.util.stream.Collector;
+import java.util.stream.IntStream;
 
-import org.AttributeHelper;
 import org.FolderPanel;
-import org.graffiti.graph.AdjListGraph;
 import org.graffiti.graph.Edge;
-import org.graffiti.graph.Graph;
 import org.graffiti.graph.Node;
 import org.vanted.addons.lmme.core.LMMEConstants;
 import org.vanted.addons.lmme.core.LMMEController;
 import org.vanted.addons.lmme.core.LMMESession;
-import org.vanted.addons.lmme.core.LMMETools;
 import org.vanted.addons.lmme.graphs.BaseGraph;
+import org.vanted.addons.lmme.graphs.BaseGraphIndex;
 import org.vanted.addons.lmme.graphs.SubsystemGraph;
+import org.vanted.addons.lmme.graphs.UnionFind;
 import org.vanted.addons.lmme.ui.LMMETab;
 
-import de.ipk_gatersleben.ag_nw.graffiti.GraphHelper;
-import de.ipk_gatersleben.ag_nw.graffiti.plugins.ios.sbml.SBML_Constants;
-
 /**
  * Abstract class representing a decomposition method.
  * <p>
@@ -62,8 +58,9 @@ public abstract class MMDecompositionAlgorithm {
 	/**
 	 * The overall method that creates a decomposition.
 	 * <p>
-	 * Within this method, cloning and specific decomposition are performed, and, if appropriate, the transporter and
-	 * default subsystems are computed and added.
+	 * Within this method, cloning and specific decomposition are performed, and, if appropriate, the subsystems are refined by
+	 * {@link MMInterfaceRefinement} and the transporter and default subsystems are computed and added. The default subsystem is split into its
+	 * connected components if the user has selected to do so.
 	 * 
 	 * @param addTransporterSubsystem
 	 *           whether to add the transporter subsystem
@@ -75,74 +72,131 @@ public abstract class MMDecompositionAlgorithm {
 		LMMETab tab = LMMEController.getInstance().getTab();
 		
 		if (this.requiresCloning()) {
-			LMMEController.getInstance().getCurrentSession().getBaseGraph().cloneSpecies(tab.getClonableSpecies());
+			currentSession.getBaseGraph().setClonedSpecies(tab.getClonableSpecies(), tab.getCloningMode());
+		} else {
+			currentSession.getBaseGraph().resetWorkingGraph();
 		}
 		
-		HashSet<Node> transporters;
-		SubsystemGraph transporterSubsystem = null;
+		HashSet<Node> transporters = new HashSet<>();
+		ArrayList<SubsystemGraph> transporterSubsystems = new ArrayList<>();
 		
 		if (requiresTransporterSubsystem() || addTransporterSubsystem) {
-			transporterSubsystem = this.determineTransporterSubsystem();
-			transporters = (HashSet<Node>) transporterSubsystem.getReactionNodes().clone();
-		} else {
-			transporters = new HashSet<>();
+			transporterSubsystems = this.determineTransporterSubsystems(tab.getSplitTransporterSubS());
+			for (SubsystemGraph transporterSubsystem : transporterSubsystems) {
+				transporters.addAll(transporterSubsystem.getReactionNodes());
+			}
 		}
 		
 		ArrayList<SubsystemGraph> specificSubsystems = runSpecific(transporters);
 		
-		if (transporterSubsystem != null) {
-			specificSubsystems.add(transporterSubsystem);
+		if (tab.getRefineInterfaces()) {
+			MMInterfaceRefinement refinement = new MMInterfaceRefinement();
+			specificSubsystems = refinement.refine(specificSubsystems, transporters);
+			tab.logMsg("Interface refinement moved " + refinement.getNumberOfMovedReactions() + " reactions, the number of interfaces changed from "
+					+ refinement.getInterfaceCountBefore() + " to " + refinement.getInterfaceCountAfter() + ".");
 		}
 		
+		specificSubsystems.addAll(transporterSubsystems);
+		
 		MMDecomposition decomposition = new MMDecomposition(specificSubsystems);
 		
 		SubsystemGraph defaultSubsystem = this.determineDefaultSubsystem(decomposition);
 		
 		if (defaultSubsystem != null) {
-			decomposition.addSubsystem(defaultSubsystem);
+			if (tab.getSplitDefaultSubS()) {
+				ArrayList<SubsystemGraph> components = this.splitDefaultSubsystem(defaultSubsystem, tab.getSplitDefaultSubSThreshold());
+				for (SubsystemGraph component : components) {
+					decomposition.addSubsystem(component);
+				}
+				tab.logMsg("The default subsystem has been split into " + components.size() + " subsystems.");
+			} else {
+				decomposition.addSubsystem(defaultSubsystem);
+			}
 		}
 		
 		return decomposition;
 	}
 	
 	/**
-	 * Determines the transporter subsystem.
+	 * Determines the transporter subsystems.
+	 * <p>
+	 * A reaction is a transporter if its species belong to at least two different compartments. The reactions are checked in parallel by a single
+	 * pass over their incident edges, which stops at the second compartment that is found. The transporters are then classified by these two
+	 * compartments.
 	 * 
-	 * @return a {@link SubsystemGraph} representing the transporter subsystem
+	 * @param splitByCompartmentPair
+	 *           whether there is a separate subsystem for each pair of compartments, instead of a single transporter subsystem
+	 * @return the {@link SubsystemGraph}s representing the transporter subsystems, a single one, possibly empty, if they are not split
 	 */
-	private SubsystemGraph determineTransporterSubsystem() {
-		HashSet<Node> speciesNodes = new HashSet<>();
-		HashSet<Node> reactionNodes = new HashSet<>();
-		HashSet<Edge> edges = new HashSet<>();
+	private ArrayList<SubsystemGraph> determineTransporterSubsystems(boolean splitByCompartmentPair) {
+		BaseGraphIndex index = LMMEController.getInstance().getCurrentSession().getBaseGraph().getIndex();
+		int firstReactionId = index.getFirstReactionId();
+		int numberOfCompartments = index.getNumberOfCompartments();
 		
-		for (Node reactionNode : LMMEController.getInstance().getCurrentSession().getBaseGraph().getReactionNodes()) {
-			
-			HashSet<String> compartments = new HashSet<String>();
-			Collection<Edge> edgeSet = reactionNode.getEdges();
-			HashSet<Node> neighbors = new HashSet<Node>();
-			
-			for (Edge edge : edgeSet) {
-				Node neighbor;
-				if (edge.getSource() == reactionNode) {
-					neighbor = edge.getTarget();
-				} else {
-					neighbor = edge.getSource();
+		long[] compartmentPairs = new long[index.getNumberOfReactions()];
+		IntStream.range(0, compartmentPairs.length).parallel()
+				.forEach(r -> compartmentPairs[r] = determineCompartmentPair(index, firstReactionId + r));
+		
+		TreeMap<Long, SubsystemGraph> subsystems = new TreeMap<>();
+		if (!splitByCompartmentPair) {
+			subsystems.put(Long.valueOf(-1), new SubsystemGraph(LMMEConstants.TRANSPORTER_SUBSYSTEM, new HashSet<>(), new HashSet<>(), new HashSet<>()));
+		}
+		for (int r = 0; r < compartmentPairs.length; r++) {
+			if (compartmentPairs[r] == -1) {
+				continue;
+			}
+			Long key = Long.valueOf(splitByCompartmentPair ? compartmentPairs[r] : -1);
+			SubsystemGraph subsystem = subsystems.get(key);
+			if (subsystem == null) {
+				String first = index.getCompartmentName((int) (compartmentPairs[r] / numberOfCompartments));
+				String second = index.getCompartmentName((int) (compartmentPairs[r] % numberOfCompartments));
+				subsystem = new SubsystemGraph(LMMEConstants.TRANSPORTER_SUBSYSTEM + ": " + first + " / " + second, new HashSet<>(),
+						new HashSet<>(), new HashSet<>());
+				subsystems.put(key, subsystem);
+			}
+			int reactionId = firstReactionId + r;
+			subsystem.addReaction(index.getNode(reactionId));
+			for (int k = index.getInOffsets()[reactionId]; k < index.getInOffsets()[reactionId + 1]; k++) {
+				subsystem.addEdge(index.getInEdges()[k]);
+				subsystem.addSpecies(index.getNode(index.getInNeighbors()[k]));
+			}
+			for (int k = index.getOutOffsets()[reactionId]; k < index.getOutOffsets()[reactionId + 1]; k++) {
+				subsystem.addEdge(index.getOutEdges()[k]);
+				subsystem.addSpecies(index.getNode(index.getOutNeighbors()[k]));
+			}
+		}
+		return new ArrayList<>(subsystems.values());
+	}
+	
+	/**
+	 * Determines the first two compartments of the species of the given reaction.
+	 * 
+	 * @param index
+	 *           the index of the base graph
+	 * @param reactionId
+	 *           the id of the reaction
+	 * @return the pair of compartment ids {@code a < b} encoded as {@code a * numberOfCompartments + b}, or -1 if the species of the reaction
+	 *         belong to less than two compartments
+	 */
+	private static long determineCompartmentPair(BaseGraphIndex index, int reactionId) {
+		int firstCompartment = BaseGraphIndex.NO_COMPARTMENT;
+		for (int pass = 0; pass < 2; pass++) {
+			int[] offsets = pass == 0 ? index.getInOffsets() : index.getOutOffsets();
+			int[] neighbors = pass == 0 ? index.getInNeighbors() : index.getOutNeighbors();
+			for (int k = offsets[reactionId]; k < offsets[reactionId + 1]; k++) {
+				int compartment = index.getCompartment(neighbors[k]);
+				if (compartment == BaseGraphIndex.NO_COMPARTMENT || compartment == firstCompartment) {
+					continue;
 				}
-				if (AttributeHelper.hasAttribute(neighbor, SBML_Constants.SBML, SBML_Constants.COMPARTMENT)) {
-					compartments.add((String) AttributeHelper.getAttributeValue(neighbor, SBML_Constants.SBML,
-							SBML_Constants.COMPARTMENT, "", ""));
+				if (firstCompartment == BaseGraphIndex.NO_COMPARTMENT) {
+					firstCompartment = compartment;
+				} else {
+					return (long) Math.min(firstCompartment, compartment) * index.getNumberOfCompartments()
+							+ Math.max(firstCompartment, compartment);
 				}
-				neighbors.add(neighbor);
-			}
-			
-			if (compartments.size() > 1) {
-				speciesNodes.addAll(neighbors);
-				reactionNodes.add(reactionNode);
-				edges.addAll(edgeSet);
 			}
 		}
-		
-		return new SubsystemGraph(LMMEConstants.TRANSPORTER_SUBSYSTEM, speciesNodes, reactionNodes, edges);
+		return -1;
 	}
 	
 	/**
@@ -178,73 +232,71 @@ public abstract class MMDecompositionAlgorithm {
 	}
 	
 	/**
-	 * Legacy version of a method to split the default subsystem in its conencted components.
+	 * Splits the default subsystem into its connected components.
 	 * <p>
-	 * Would need a review before usage.
+	 * The components are determined by a union-find pass over the species of the default subsystem, which joins all of their reactions that belong
+	 * to the default subsystem, too. Components with fewer reactions than the given minimum are kept together in a remaining default subsystem.
 	 * 
-	 * @deprecated
-	 * @param decomposition
 	 * @param defaultSubsystem
-	 * @param threshold
-	 * @return
+	 *           the default subsystem
+	 * @param minimumSize
+	 *           the minimum number of reactions of a component to form a subsystem of its own
+	 * @return the {@link SubsystemGraph}s of the components, ordered by decreasing size and followed by the remaining default subsystem, if any
 	 */
-	private ArrayList<SubsystemGraph> splitDefaultSubsystem(MMDecomposition decomposition,
-			SubsystemGraph defaultSubsystem, int threshold) {
-		
-		ArrayList<SubsystemGraph> subsystems = new ArrayList<>();
-		
-		Graph workingCopy = new AdjListGraph();
-		HashMap<Node, Node> original2CopiedNodes = new HashMap<>();
-		HashMap<Node, Node> copied2OriginalNodes = new HashMap<>();
-		// HashMap<Edge, Edge> original2CopiedEdges = new HashMap<>();
-		HashMap<Edge, Edge> copied2OriginalEdges = new HashMap<>();
+	private ArrayList<SubsystemGraph> splitDefaultSubsystem(SubsystemGraph defaultSubsystem, int minimumSize) {
+		BaseGraphIndex index = LMMEController.getInstance().getCurrentSession().getBaseGraph().getIndex();
+		int firstReactionId = index.getFirstReactionId();
 		
-		for (Node speciesNode : defaultSubsystem.getSpeciesNodes()) {
-			Node newNode = workingCopy.addNodeCopy(speciesNode);
-			original2CopiedNodes.put(speciesNode, newNode);
-			copied2OriginalNodes.put(newNode, speciesNode);
-		}
+		boolean[] isDefaultReaction = new boolean[index.getNumberOfReactions()];
 		for (Node reactionNode : defaultSubsystem.getReactionNodes()) {
-			Node newNode = workingCopy.addNodeCopy(reactionNode);
-			original2CopiedNodes.put(reactionNode, newNode);
-			copied2OriginalNodes.put(newNode, reactionNode);
-		}
-		
-		for (Edge edge : defaultSubsystem.getEdges()) {
-			Node sourceNode = original2CopiedNodes.get(edge.getSource());
-			Node tragetNode = original2CopiedNodes.get(edge.getTarget());
-			Edge newEdge = workingCopy.addEdgeCopy(edge, sourceNode, tragetNode);
-			copied2OriginalEdges.put(newEdge, edge);
+			isDefaultReaction[index.getId(reactionNode) - firstReactionId] = true;
 		}
 		
-		Set<Set<Node>> connComps = GraphHelper.getConnectedComponents(workingCopy.getNodes());
-		
-		int i = 1;
-		for (Set<Node> connComp : connComps) {
-			if (connComp.size() >= threshold) {
-				HashSet<Node> speciesNodes = new HashSet<>();
-				HashSet<Node> reactionNodes = new HashSet<>();
-				HashSet<Edge> edges = new HashSet<>();
-				for (Node node : connComp) {
-					Node originalNode = copied2OriginalNodes.get(node);
-					if (LMMETools.getInstance().isSpecies(originalNode)) {
-						speciesNodes.add(originalNode);
-					} else if (LMMETools.getInstance().isReaction(originalNode)) {
-						reactionNodes.add(originalNode);
+		UnionFind components = new UnionFind(index.getNumberOfReactions());
+		for (Node speciesNode : defaultSubsystem.getSpeciesNodes()) {
+			int speciesId = index.getId(speciesNode);
+			int firstReaction = -1;
+			for (int pass = 0; pass < 2; pass++) {
+				int[] offsets = pass == 0 ? index.getInOffsets() : index.getOutOffsets();
+				int[] neighbors = pass == 0 ? index.getInNeighbors() : index.getOutNeighbors();
+				for (int k = offsets[speciesId]; k < offsets[speciesId + 1]; k++) {
+					int reaction = neighbors[k] - firstReactionId;
+					if (!isDefaultReaction[reaction]) {
+						continue;
 					}
-					for (Edge edge : node.getEdges()) {
-						Edge originalEdge = copied2OriginalEdges.get(edge);
-						if (defaultSubsystem.getEdges().contains(originalEdge)) {
-							edges.add(originalEdge);
-						}
+					if (firstReaction == -1) {
+						firstReaction = reaction;
+					} else {
+						components.union(firstReaction, reaction);
 					}
 				}
-				subsystems.add(new SubsystemGraph(LMMEConstants.DEFAULT_SUBSYSTEM + " " + i, speciesNodes,
-						reactionNodes, edges));
-				i += 1;
 			}
 		}
 		
+		LinkedHashMap<Integer, SubsystemGroup> groups = new LinkedHashMap<>();
+		for (int reaction = 0; reaction < isDefaultReaction.length; reaction++) {
+			if (isDefaultReaction[reaction]) {
+				groups.computeIfAbsent(Integer.valueOf(components.find(reaction)), root -> new SubsystemGroup())
+						.addReaction(index.getNode(firstReactionId + reaction));
+			}
+		}
+		ArrayList<SubsystemGroup> sortedGroups = new ArrayList<>(groups.values());
+		sortedGroups.sort((group1, group2) -> Integer.compare(group2.reactionNodes.size(), group1.reactionNodes.size()));
+		
+		ArrayList<SubsystemGraph> subsystems = new ArrayList<>();
+		SubsystemGroup remainder = new SubsystemGroup();
+		for (SubsystemGroup group : sortedGroups) {
+			if (group.reactionNodes.size() >= minimumSize) {
+				subsystems.add(new SubsystemGraph(LMMEConstants.DEFAULT_SUBSYSTEM + " " + (subsystems.size() + 1), group.speciesNodes,
+						group.reactionNodes, group.edges));
+			} else {
+				remainder.addAll(group);
+			}
+		}
+		if (!remainder.reactionNodes.isEmpty()) {
+			subsystems.add(new SubsystemGraph(LMMEConstants.DEFAULT_SUBSYSTEM, remainder.speciesNodes, remainder.reactionNodes,
+					remainder.edges));
+		}
 		return subsystems;
 	}
 	
@@ -253,6 +305,8 @@ public abstract class MMDecompositionAlgorithm {
 	 * <p>
 	 * The specified {@code attributeName} is used to distribute the reactions to subsystems. Every unique value of the attribute constitutes a subsystem which
 	 * gets assigned all corresponding reactions.
+	 * <p>
+	 * The reactions are grouped in a single pass, which runs in parallel.
 	 * 
 	 * @param attributeName
 	 *           the name of the attribute serving as subsystem indicator
@@ -269,62 +323,64 @@ public abstract class MMDecompositionAlgorithm {
 		
 		BaseGraph baseGraph = LMMEController.getInstance().getCurrentSession().getBaseGraph();
 		LMMESession currentSession = LMMEController.getInstance().getCurrentSession();
+		Pattern separatorPattern = considerSeparator ? Pattern.compile(Pattern.quote(separator)) : null;
 		
-		HashSet<String> allSubsystemNames = new HashSet<>();
-		
-		for (Node reactionNode : baseGraph.getReactionNodes()) {
-			if (!alreadyClassifiedNodes.contains(reactionNode)) {
-				String subsystemName = currentSession.getNodeAttribute(reactionNode, attributeName);
-				// if (subsystemName != "") {
-				if (subsystemName.length() > 0) {
-					if (considerSeparator) {
-						String[] subsystemNames = subsystemName.split(Pattern.quote(separator));
-						allSubsystemNames.addAll(Arrays.asList(subsystemNames));
-					} else {
-						allSubsystemNames.add(subsystemName);
+		// Each thread groups its share of the reactions into a partial map, the partial maps are merged afterwards.
+		HashMap<String, SubsystemGroup> subsystemMap = baseGraph.getReactionNodes().parallelStream()
+				.filter(reactionNode -> !alreadyClassifiedNodes.contains(reactionNode))
+				.collect(Collector.of(HashMap<String, SubsystemGroup>::new, (partialMap, reactionNode) -> {
+					String subsystemName = currentSession.getNodeAttribute(reactionNode, attributeName);
+					if (subsystemName.length() > 0) {
+						if (separatorPattern != null) {
+							for (String currentSubsystemName : separatorPattern.split(subsystemName)) {
+								partialMap.computeIfAbsent(currentSubsystemName, name -> new SubsystemGroup()).addReaction(reactionNode);
+							}
+						} else {
+							partialMap.computeIfAbsent(subsystemName, name -> new SubsystemGroup()).addReaction(reactionNode);
+						}
 					}
-				}
-			}
-		}
-		
-		HashMap<String, SubsystemGraph> subsystemMap = new HashMap<>();
+				}, (partialMap, otherPartialMap) -> {
+					for (String subsystemName : otherPartialMap.keySet()) {
+						partialMap.merge(subsystemName, otherPartialMap.get(subsystemName), SubsystemGroup::addAll);
+					}
+					return partialMap;
+				}));
 		
-		for (String subsystemName : allSubsystemNames) {
-			subsystemMap.put(subsystemName,
-					new SubsystemGraph(subsystemName, new HashSet<>(), new HashSet<>(), new HashSet<>()));
+		ArrayList<SubsystemGraph> res = new ArrayList<>();
+		for (String subsystemName : subsystemMap.keySet()) {
+			SubsystemGroup group = subsystemMap.get(subsystemName);
+			res.add(new SubsystemGraph(subsystemName, group.speciesNodes, group.reactionNodes, group.edges));
 		}
+		return res;
+	}
+	
+	/**
+	 * The reactions, species and edges of a subsystem that is being grouped.
+	 */
+	private static class SubsystemGroup {
 		
-		for (Node reactionNode : baseGraph.getReactionNodes()) {
-			if (!alreadyClassifiedNodes.contains(reactionNode)) {
-				String subsystemName = currentSession.getNodeAttribute(reactionNode, attributeName);
-				// if (subsystemName != "") {
-				if (subsystemName.length() > 0) {
-					String[] subsystemNames;
-					if (considerSeparator) {
-						subsystemNames = subsystemName.split(Pattern.quote(separator));
-					} else {
-						subsystemNames = new String[1];
-						subsystemNames[0] = subsystemName;
-					}
-					for (String currentSubsystemName : subsystemNames) {
-						subsystemMap.get(currentSubsystemName).addReaction(reactionNode);
-						for (Edge incidentEdge : reactionNode.getEdges()) {
-							subsystemMap.get(currentSubsystemName).addEdge(incidentEdge);
-							if (incidentEdge.getSource() == reactionNode) {
-								subsystemMap.get(currentSubsystemName).addSpecies(incidentEdge.getTarget());
-							} else {
-								subsystemMap.get(currentSubsystemName).addSpecies(incidentEdge.getSource());
-							}
-						}
-					}
+		private final HashSet<Node> speciesNodes = new HashSet<>();
+		private final HashSet<Node> reactionNodes = new HashSet<>();
+		private final HashSet<Edge> edges = new HashSet<>();
+		
+		private void addReaction(Node reactionNode) {
+			reactionNodes.add(reactionNode);
+			for (Edge incidentEdge : reactionNode.getEdges()) {
+				edges.add(incidentEdge);
+				if (incidentEdge.getSource() == reactionNode) {
+					speciesNodes.add(incidentEdge.getTarget());
+				} else {
+					speciesNodes.add(incidentEdge.getSource());
 				}
 			}
 		}
-		ArrayList<SubsystemGraph> res = new ArrayList<>();
-		for (SubsystemGraph subsystem : subsystemMap.values()) {
-			res.add(subsystem);
+		
+		private SubsystemGroup addAll(SubsystemGroup other) {
+			speciesNodes.addAll(other.speciesNodes);
+			reactionNodes.addAll(other.reactionNodes);
+			edges.addAll(other.edges);
+			return this;
 		}
-		return res;
 	}
 	
 	/**
@@ -0,0 +1,181 @@
+/*******************************************************************************
+ * LMME is a VANTED Add-on for the exploration of large metabolic models.
+ * Copyright (C) 2020 Chair for Life Science Informatics, University of Konstanz
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package org.vanted.addons.lmme.decomposition;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+
+import org.graffiti.graph.Edge;
+import org.graffiti.graph.Node;
+import org.vanted.addons.lmme.core.LMMEController;
+import org.vanted.addons.lmme.graphs.BaseGraphIndex;
+import org.vanted.addons.lmme.graphs.SubsystemGraph;
+
+/**
+ * A post-processing stage that moves reactions between the subsystems of a decomposition in order to reduce the number of interfaces.
+ * <p>
+ * The subsystems are refined with {@link KWayFMRefinement}. Only reactions that belong to exactly one subsystem are moved. Reactions that belong to
+ * several subsystems, that have been classified before, such as the transporters, or that have not been classified at all keep their assignment, but
+ * are taken into account for the interfaces. No subsystem may grow beyond the size of the largest subsystem of the original decomposition. The species
+ * of a refined subsystem are those incident to its reactions, together with its original species that are not incident to any of its reactions.
+ * 
+ * @author Michael Aichem
+ */
+public class MMInterfaceRefinement {
+	
+	private long interfaceCountBefore;
+	
+	private long interfaceCountAfter;
+	
+	private int numberOfMovedReactions;
+	
+	/**
+	 * Refines the given subsystems.
+	 * 
+	 * @param subsystems
+	 *           the subsystems as determined by {@link MMDecompositionAlgorithm#runSpecific(HashSet)}
+	 * @param alreadyClassifiedNodes
+	 *           the reactions that have been classified before and are not contained in the given subsystems
+	 * @return the refined subsystems, with the same names as the given ones, where subsystems that have lost all of their reactions and species are
+	 *         left out
+	 */
+	public ArrayList<SubsystemGraph> refine(ArrayList<SubsystemGraph> subsystems, HashSet<Node> alreadyClassifiedNodes) {
+		
+		BaseGraphIndex index = LMMEController.getInstance().getCurrentSession().getBaseGraph().getIndex();
+		int firstReactionId = index.getFirstReactionId();
+		int numberOfReactions = index.getNumberOfReactions();
+		int numberOfSubsystems = subsystems.size();
+		
+		// Two additional closed parts hold the already classified and the unclassified reactions.
+		int alreadyClassifiedPart = numberOfSubsystems;
+		int unclassifiedPart = numberOfSubsystems + 1;
+		
+		int[] membershipOffsets = new int[numberOfReactions + 1];
+		for (SubsystemGraph subsystem : subsystems) {
+			for (Node reactionNode : subsystem.getReactionNodes()) {
+				int id = index.getId(reactionNode);
+				if (id != -1) {
+					membershipOffsets[id - firstReactionId + 1]++;
+				}
+			}
+		}
+		int[] multiplicities = new int[numberOfReactions];
+		for (int r = 0; r < numberOfReactions; r++) {
+			multiplicities[r] = Math.max(1, membershipOffsets[r + 1]);
+			membershipOffsets[r + 1] = membershipOffsets[r] + multiplicities[r];
+		}
+		int[] initialParts = new int[membershipOffsets[numberOfReactions]];
+		int[] position = new int[numberOfReactions];
+		for (int s = 0; s < numberOfSubsystems; s++) {
+			for (Node reactionNode : subsystems.get(s).getReactionNodes()) {
+				int id = index.getId(reactionNode);
+				if (id != -1) {
+					int r = id - firstReactionId;
+					initialParts[membershipOffsets[r] + position[r]++] = s;
+				}
+			}
+		}
+		boolean[] fixed = new boolean[initialParts.length];
+		for (int r = 0; r < numberOfReactions; r++) {
+			if (position[r] == 0) {
+				boolean alreadyClassified = alreadyClassifiedNodes.contains(index.getNode(firstReactionId + r));
+				initialParts[membershipOffsets[r]] = alreadyClassified ? alreadyClassifiedPart : unclassifiedPart;
+			}
+			if (position[r] != 1) {
+				for (int v = membershipOffsets[r]; v < membershipOffsets[r + 1]; v++) {
+					fixed[v] = true;
+				}
+			}
+		}
+		
+		ReactionHypergraph hypergraph = ReactionHypergraph.fromIndex(index, multiplicities);
+		HypergraphPartition partition = new HypergraphPartition(hypergraph, numberOfSubsystems + 2, initialParts);
+		
+		boolean[] closedParts = new boolean[numberOfSubsystems + 2];
+		closedParts[alreadyClassifiedPart] = true;
+		closedParts[unclassifiedPart] = true;
+		long maxPartWeight = 0;
+		for (int s = 0; s < numberOfSubsystems; s++) {
+			maxPartWeight = Math.max(maxPartWeight, partition.getPartWeight(s));
+		}
+		
+		this.interfaceCountBefore = partition.getInterfaceCount();
+		new KWayFMRefinement(partition, fixed, closedParts, maxPartWeight).refine();
+		this.interfaceCountAfter = partition.getInterfaceCount();
+		
+		ArrayList<SubsystemGraph> refinedSubsystems = new ArrayList<>();
+		for (SubsystemGraph subsystem : subsystems) {
+			// Species that are not incident to any reaction of the subsystem, such as the species of a compartment without reactions, stay.
+			HashSet<Node> reactionlessSpecies = new HashSet<>();
+			for (Node speciesNode : subsystem.getSpeciesNodes()) {
+				if (!isIncidentToAny(speciesNode, subsystem.getReactionNodes())) {
+					reactionlessSpecies.add(speciesNode);
+				}
+			}
+			refinedSubsystems.add(new SubsystemGraph(subsystem.getName(), reactionlessSpecies, new HashSet<>(), new HashSet<>()));
+		}
+		this.numberOfMovedReactions = 0;
+		for (int v = 0; v < hypergraph.numberOfVertices; v++) {
+			int part = partition.getPart(v);
+			if (part >= numberOfSubsystems) {
+				continue;
+			}
+			if (part != initialParts[v]) {
+				numberOfMovedReactions++;
+			}
+			SubsystemGraph subsystem = refinedSubsystems.get(part);
+			Node reactionNode = index.getNode(hypergraph.reactionIds[v]);
+			subsystem.addReaction(reactionNode);
+			for (Edge incidentEdge : reactionNode.getEdges()) {
+				subsystem.addEdge(incidentEdge);
+				if (incidentEdge.getSource() == reactionNode) {
+					subsystem.addSpecies(incidentEdge.getTarget());
+				} else {
+					subsystem.addSpecies(incidentEdge.getSource());
+				}
+			}
+		}
+		refinedSubsystems.removeIf(subsystem -> subsystem.getNumberOfReactions() == 0 && subsystem.getNumberOfSpecies() == 0);
+		return refinedSubsystems;
+	}
+	
+	private static boolean isIncidentToAny(Node speciesNode, HashSet<Node> reactionNodes) {
+		for (Node neighbor : speciesNode.getNeighbors()) {
+			if (reactionNodes.contains(neighbor)) {
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	/**
+	 * Gets the interface count before the refinement, counted as in the overview graph, including the interfaces to the already classified and the
+	 * unclassified reactions.
+	 * 
+	 * @return the interface count before the refinement
+	 */
+	public long getInterfaceCountBefore() {
+		return interfaceCountBefore;
+	}
+	
+	public long getInterfaceCountAfter() {
+		return interfaceCountAfter;
+	}
+	
+	public int getNumberOfMovedReactions() {
+		return numberOfMovedReactions;
+	}
+	
+}
@@ -0,0 +1,273 @@
+/*******************************************************************************
+ * LMME is a VANTED Add-on for the exploration of large metabolic models.
+ * Copyright (C) 2020 Chair for Life Science Informatics, University of Konstanz
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package org.vanted.addons.lmme.decomposition;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.graffiti.editor.MainFrame;
+import org.graffiti.editor.MessageType;
+
+/**
+ * A multilevel partitioner that divides the vertices of a {@link ReactionHypergraph} into a given number of parts of similar weight, such that the
+ * interface count is small.
+ * <p>
+ * The hypergraph is first coarsened by repeatedly contracting a matching of strongly connected vertices, until it is small enough. The coarsest
+ * hypergraph is partitioned by growing the parts one after another from seed vertices. As the coarse vertices are heavy, this partition may violate
+ * the balance tolerance, which is repaired by {@link KWayFMRefinement} before it refines the coarsest level. The partition is then projected back level
+ * by level, which keeps the part weights, and refined on each level.
+ * 
+ * @author Michael Aichem
+ */
+class MultilevelPartitioner {
+	
+	/**
+	 * Coarsening stops once the hypergraph has at most this many vertices per part.
+	 */
+	private static final int COARSEST_VERTICES_PER_PART = 20;
+	
+	/**
+	 * Coarsening stops once a level reduces the number of vertices by less than this factor.
+	 */
+	private static final double MIN_COARSENING_FACTOR = 0.9;
+	
+	/**
+	 * Nets with more pins are ignored when rating the vertices for the matching.
+	 */
+	private static final int MAX_RATED_NET_SIZE = 200;
+	
+	private final ReactionHypergraph graph;
+	private final int numberOfParts;
+	private final long maxPartWeight;
+	private final Random random;
+	
+	private long interfaceCount;
+	
+	/**
+	 * Prepares the partitioning.
+	 * 
+	 * @param graph
+	 *           the hypergraph to be partitioned
+	 * @param numberOfParts
+	 *           the number of parts, at most the number of vertices
+	 * @param imbalance
+	 *           by how much a part may exceed the average part weight, e.g. 0.1 for 10 percent
+	 * @param seed
+	 *           the seed for the visiting order of the matching
+	 */
+	MultilevelPartitioner(ReactionHypergraph graph, int numberOfParts, double imbalance, long seed) {
+		this.graph = graph;
+		this.numberOfParts = numberOfParts;
+		long averagePartWeight = (graph.getTotalWeight() + numberOfParts - 1) / numberOfParts;
+		this.maxPartWeight = (long) Math.ceil((1.0 + imbalance) * averagePartWeight);
+		this.random = new Random(seed);
+	}
+	
+	/**
+	 * Performs the partitioning.
+	 * 
+	 * @return the part of each vertex
+	 */
+	int[] run() {
+		
+		// Coarsening
+		ArrayList<ReactionHypergraph> levels = new ArrayList<>();
+		ArrayList<int[]> coarseVertexMaps = new ArrayList<>();
+		levels.add(graph);
+		long maxVertexWeight = Math.max(1, maxPartWeight / 4);
+		ReactionHypergraph current = graph;
+		while (current.numberOfVertices > COARSEST_VERTICES_PER_PART * numberOfParts) {
+			int[] coarseVertexOf = new int[current.numberOfVertices];
+			int numberOfCoarseVertices = computeMatching(current, maxVertexWeight, coarseVertexOf);
+			if (numberOfCoarseVertices > MIN_COARSENING_FACTOR * current.numberOfVertices) {
+				break;
+			}
+			current = current.contract(coarseVertexOf, numberOfCoarseVertices);
+			levels.add(current);
+			coarseVertexMaps.add(coarseVertexOf);
+		}
+		MainFrame.showMessage("Partitioning: coarsened to " + current.numberOfVertices + " vertices in " + (levels.size() - 1) + " levels",
+				MessageType.PERMANENT_INFO);
+		
+		// Initial partitioning and refinement of the coarsest level
+		HypergraphPartition partition = new HypergraphPartition(current, numberOfParts, growParts(current));
+		new KWayFMRefinement(partition, null, maxPartWeight).refine();
+		
+		// Uncoarsening
+		for (int level = levels.size() - 2; level >= 0; level--) {
+			ReactionHypergraph finer = levels.get(level);
+			int[] coarseVertexOf = coarseVertexMaps.get(level);
+			int[] parts = new int[finer.numberOfVertices];
+			for (int v = 0; v < finer.numberOfVertices; v++) {
+				parts[v] = partition.getPart(coarseVertexOf[v]);
+			}
+			partition = new HypergraphPartition(finer, numberOfParts, parts);
+			new KWayFMRefinement(partition, null, maxPartWeight).refine();
+		}
+		
+		this.interfaceCount = partition.getInterfaceCount();
+		return partition.getParts();
+	}
+	
+	/**
+	 * Gets the interface count of the partition that has been returned by {@link #run()}.
+	 * 
+	 * @return the interface count
+	 */
+	long getInterfaceCount() {
+		return interfaceCount;
+	}
+	
+	/**
+	 * Computes a matching of the vertices of the given hypergraph. Each vertex is matched with the unmatched neighbor to which it is most strongly
+	 * connected, where a shared net with {@code s} pins contributes {@code 1 / (s - 1)}.
+	 * 
+	 * @param current
+	 *           the hypergraph
+	 * @param maxVertexWeight
+	 *           the maximum weight of a contracted vertex
+	 * @param coarseVertexOf
+	 *           receives the coarse vertex of each vertex
+	 * @return the number of coarse vertices
+	 */
+	private int computeMatching(ReactionHypergraph current, long maxVertexWeight, int[] coarseVertexOf) {
+		int n = current.numberOfVertices;
+		int[] order = new int[n];
+		for (int v = 0; v < n; v++) {
+			order[v] = v;
+		}
+		for (int i = n - 1; i > 0; i--) {
+			int j = random.nextInt(i + 1);
+			int tmp = order[i];
+			order[i] = order[j];
+			order[j] = tmp;
+		}
+		
+		Arrays.fill(coarseVertexOf, -1);
+		double[] ratings = new double[n];
+		int[] touched = new int[n];
+		int numberOfCoarseVertices = 0;
+		for (int u : order) {
+			if (coarseVertexOf[u] != -1) {
+				continue;
+			}
+			int numberOfTouched = 0;
+			for (int k = current.vertexOffsets[u]; k < current.vertexOffsets[u + 1]; k++) {
+				int net = current.vertexNets[k];
+				int size = current.getNetSize(net);
+				if (size > MAX_RATED_NET_SIZE) {
+					continue;
+				}
+				double rating = 1.0 / (size - 1);
+				for (int p = current.netOffsets[net]; p < current.netOffsets[net + 1]; p++) {
+					int v = current.netPins[p];
+					if (v == u || coarseVertexOf[v] != -1 || current.vertexWeights[u] + current.vertexWeights[v] > maxVertexWeight) {
+						continue;
+					}
+					if (ratings[v] == 0) {
+						touched[numberOfTouched++] = v;
+					}
+					ratings[v] += rating;
+				}
+			}
+			int partner = -1;
+			for (int i = 0; i < numberOfTouched; i++) {
+				int v = touched[i];
+				if (partner == -1 || ratings[v] > ratings[partner]
+						|| (ratings[v] == ratings[partner] && current.vertexWeights[v] < current.vertexWeights[partner])) {
+					partner = v;
+				}
+			}
+			for (int i = 0; i < numberOfTouched; i++) {
+				ratings[touched[i]] = 0;
+			}
+			coarseVertexOf[u] = numberOfCoarseVertices;
+			if (partner != -1) {
+				coarseVertexOf[partner] = numberOfCoarseVertices;
+			}
+			numberOfCoarseVertices++;
+		}
+		return numberOfCoarseVertices;
+	}
+	
+	/**
+	 * Computes an initial partition by growing one part after another in breadth-first order from a seed vertex, until it reaches the average part
+	 * weight. The remaining vertices form the last part.
+	 * 
+	 * @param coarsest
+	 *           the hypergraph to be partitioned
+	 * @return the part of each vertex
+	 */
+	private int[] growParts(ReactionHypergraph coarsest) {
+		int n = coarsest.numberOfVertices;
+		int[] parts = new int[n];
+		Arrays.fill(parts, -1);
+		int[] netVisited = new int[coarsest.numberOfNets];
+		Arrays.fill(netVisited, -1);
+		int[] queue = new int[coarsest.netPins.length + n];
+		long remainingWeight = coarsest.getTotalWeight();
+		int nextSeed = 0;
+		
+		for (int part = 0; part < numberOfParts - 1; part++) {
+			long targetWeight = remainingWeight / (numberOfParts - part);
+			long partWeight = 0;
+			int head = 0;
+			int tail = 0;
+			int assigned = 0;
+			while (partWeight < targetWeight || assigned == 0) {
+				int v = -1;
+				while (head < tail && v == -1) {
+					int candidate = queue[head++];
+					if (parts[candidate] == -1) {
+						v = candidate;
+					}
+				}
+				if (v == -1) {
+					while (nextSeed < n && parts[nextSeed] != -1) {
+						nextSeed++;
+					}
+					if (nextSeed == n) {
+						break;
+					}
+					v = nextSeed;
+				}
+				parts[v] = part;
+				partWeight += coarsest.vertexWeights[v];
+				assigned++;
+				for (int k = coarsest.vertexOffsets[v]; k < coarsest.vertexOffsets[v + 1]; k++) {
+					int net = coarsest.vertexNets[k];
+					if (netVisited[net] == part) {
+						continue;
+					}
+					netVisited[net] = part;
+					for (int p = coarsest.netOffsets[net]; p < coarsest.netOffsets[net + 1]; p++) {
+						if (parts[coarsest.netPins[p]] == -1) {
+							queue[tail++] = coarsest.netPins[p];
+						}
+					}
+				}
+			}
+			remainingWeight -= partWeight;
+		}
+		for (int v = 0; v < n; v++) {
+			if (parts[v] == -1) {
+				parts[v] = numberOfParts - 1;
+			}
+		}
+		return parts;
+	}
+	
+}
@@ -0,0 +1,154 @@
+/*******************************************************************************
+ * LMME is a VANTED Add-on for the exploration of large metabolic models.
+ * Copyright (C) 2020 Chair for Life Science Informatics, University of Konstanz
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package org.vanted.addons.lmme.decomposition;
+
+import java.awt.Color;
+import java.util.ArrayList;
+import java.util.HashSet;
+
+import javax.swing.JLabel;
+import javax.swing.JOptionPane;
+import javax.swing.JPanel;
+import javax.swing.JTextField;
+
+import org.FolderPanel;
+import org.graffiti.graph.Node;
+import org.vanted.addons.lmme.core.LMMEController;
+import org.vanted.addons.lmme.graphs.BaseGraphIndex;
+import org.vanted.addons.lmme.graphs.SubsystemGraph;
+import org.vanted.addons.lmme.ui.LMMETab;
+
+/**
+ * This class implements a decomposition into a given number of subsystems of similar size, which minimizes the number of interfaces between them.
+ * <p>
+ * The reactions are partitioned by a multilevel hypergraph partitioner, in which each species connects all reactions it takes part in. This keeps
+ * single subsystems from holding large parts of the model, which would make the overview hard to read.
+ * 
+ * @author Michael Aichem
+ */
+public class PartitioningMMDecomposition extends MMDecompositionAlgorithm {
+	
+	private int defaultNumberOfSubsystems = 10;
+	
+	private int defaultTolerance = 10;
+	
+	private long seed = 1;
+	
+	private JTextField tfNumberOfSubsystems;
+	
+	private JTextField tfTolerance;
+	
+	private final String ATTRIBUTE_NAME_SUBSYSTEM = "PartitionSubsystem";
+	
+	@Override
+	protected ArrayList<SubsystemGraph> runSpecific(HashSet<Node> alreadyClassifiedNodes) {
+		
+		BaseGraphIndex index = LMMEController.getInstance().getCurrentSession().getBaseGraph().getIndex();
+		
+		boolean[] excludedNodes = new boolean[index.getNumberOfNodes()];
+		for (Node node : alreadyClassifiedNodes) {
+			int id = index.getId(node);
+			if (id != -1) {
+				excludedNodes[id] = true;
+			}
+		}
+		ReactionHypergraph hypergraph = ReactionHypergraph.fromIndex(index, excludedNodes);
+		if (hypergraph.numberOfVertices == 0) {
+			return new ArrayList<>();
+		}
+		
+		int numberOfSubsystems = Math.min(readNumberOfSubsystems(), hypergraph.numberOfVertices);
+		MultilevelPartitioner partitioner = new MultilevelPartitioner(hypergraph, numberOfSubsystems, readTolerance() / 100.0, this.seed);
+		int[] parts = partitioner.run();
+		LMMEController.getInstance().getTab().logMsg("Partitioning into " + numberOfSubsystems + " subsystems resulted in "
+				+ partitioner.getInterfaceCount() + " interfaces.");
+		
+		for (int v = 0; v < hypergraph.numberOfVertices; v++) {
+			LMMEController.getInstance().getCurrentSession().addNodeAttribute(index.getNode(hypergraph.reactionIds[v]),
+					this.ATTRIBUTE_NAME_SUBSYSTEM, "Partition Subsystem " + (parts[v] + 1));
+		}
+		
+		return determineSubsystemsFromReactionAttributes(this.ATTRIBUTE_NAME_SUBSYSTEM, false, "", alreadyClassifiedNodes);
+	}
+	
+	@Override
+	public boolean requiresCloning() {
+		return true;
+	}
+	
+	@Override
+	public FolderPanel getFolderPanel() {
+		FolderPanel fp = new FolderPanel(getName() + " Settings", false, true, false, null);
+		
+		this.tfNumberOfSubsystems = new JTextField(5);
+		this.tfNumberOfSubsystems.setText(Integer.toString(this.defaultNumberOfSubsystems));
+		JPanel numberLine = LMMETab.combine(new JLabel("Number of subsystems: "), this.tfNumberOfSubsystems, Color.WHITE, false, true);
+		fp.addGuiComponentRow(numberLine, null, true);
+		
+		this.tfTolerance = new JTextField(5);
+		this.tfTolerance.setText(Integer.toString(this.defaultTolerance));
+		this.tfTolerance.setToolTipText("By how many percent a subsystem may exceed the average number of reactions.");
+		JPanel toleranceLine = LMMETab.combine(new JLabel("Balance tolerance (%): "), this.tfTolerance, Color.WHITE, false, true);
+		fp.addGuiComponentRow(toleranceLine, null, true);
+		
+		return fp;
+	}
+	
+	@Override
+	public void updateFolderPanel() {
+		// no need to do sth.
+	}
+	
+	private int readNumberOfSubsystems() {
+		int res;
+		try {
+			res = Integer.parseInt(this.tfNumberOfSubsystems.getText());
+			if (res < 1) {
+				throw new NumberFormatException();
+			}
+		} catch (NumberFormatException e) {
+			JOptionPane.showMessageDialog(null, "The number of subsystems could not be read or is not positive. "
+					+ "It has therefore been set to " + this.defaultNumberOfSubsystems + ".");
+			res = this.defaultNumberOfSubsystems;
+		}
+		return res;
+	}
+	
+	private int readTolerance() {
+		int res;
+		try {
+			res = Integer.parseInt(this.tfTolerance.getText());
+			if (res < 0) {
+				throw new NumberFormatException();
+			}
+		} catch (NumberFormatException e) {
+			JOptionPane.showMessageDialog(null, "The balance tolerance could not be read or is negative. "
+					+ "It has therefore been set to " + this.defaultTolerance + ".");
+			res = this.defaultTolerance;
+		}
+		return res;
+	}
+	
+	@Override
+	public String getName() {
+		return "Balanced Partitioning";
+	}
+	
+	@Override
+	public boolean requiresTransporterSubsystem() {
+		return false;
+	}
+	
+}
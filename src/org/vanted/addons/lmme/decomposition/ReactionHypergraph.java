@@ -0,0 +1,229 @@
+/*******************************************************************************
+ * LMME is a VANTED Add-on for the exploration of large metabolic models.
+ * Copyright (C) 2020 Chair for Life Science Informatics, University of Konstanz
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package org.vanted.addons.lmme.decomposition;
+
+import java.util.Arrays;
+
+import org.vanted.addons.lmme.graphs.BaseGraphIndex;
+
+/**
+ * The hypergraph in which the reactions are the vertices and each species is a net that connects all reactions it takes part in.
+ * <p>
+ * If the reactions are partitioned into subsystems, a species becomes an interface between every pair of subsystems it is connected to, see
+ * {@link org.vanted.addons.lmme.graphs.OverviewGraph}. Nets with less than two pins can never become interfaces and are left out.
+ * <p>
+ * The nets of vertex {@code v} are {@code vertexNets[vertexOffsets[v]]} to {@code vertexNets[vertexOffsets[v + 1] - 1]}, the pins of net {@code n} are
+ * {@code netPins[netOffsets[n]]} to {@code netPins[netOffsets[n + 1] - 1]}. Coarser hypergraphs are created by contracting vertices, in which case the
+ * vertex weights hold the number of contained reactions.
+ * 
+ * @author Michael Aichem
+ */
+class ReactionHypergraph {
+	
+	final int numberOfVertices;
+	final int numberOfNets;
+	
+	final int[] vertexWeights;
+	final int[] vertexOffsets;
+	final int[] vertexNets;
+	final int[] netOffsets;
+	final int[] netPins;
+	
+	/**
+	 * The id in the {@link BaseGraphIndex} of the reaction of each vertex, or {@code null} for contracted hypergraphs.
+	 */
+	final int[] reactionIds;
+	
+	private ReactionHypergraph(int[] vertexWeights, int[] netOffsets, int[] netPins, int[] reactionIds) {
+		this.numberOfVertices = vertexWeights.length;
+		this.numberOfNets = netOffsets.length - 1;
+		this.vertexWeights = vertexWeights;
+		this.netOffsets = netOffsets;
+		this.netPins = netPins;
+		this.reactionIds = reactionIds;
+		
+		this.vertexOffsets = new int[numberOfVertices + 1];
+		for (int pin : netPins) {
+			vertexOffsets[pin + 1]++;
+		}
+		for (int v = 0; v < numberOfVertices; v++) {
+			vertexOffsets[v + 1] += vertexOffsets[v];
+		}
+		this.vertexNets = new int[netPins.length];
+		int[] position = Arrays.copyOf(vertexOffsets, numberOfVertices);
+		for (int n = 0; n < numberOfNets; n++) {
+			for (int k = netOffsets[n]; k < netOffsets[n + 1]; k++) {
+				vertexNets[position[netPins[k]]++] = n;
+			}
+		}
+	}
+	
+	/**
+	 * Creates the hypergraph of the given index.
+	 * 
+	 * @param index
+	 *           the index
+	 * @param excludedNodes
+	 *           the reactions to be left out, indexed by node id, or {@code null}
+	 * @return the hypergraph, whose vertices are the remaining reactions in the order of their ids
+	 */
+	static ReactionHypergraph fromIndex(BaseGraphIndex index, boolean[] excludedNodes) {
+		int[] multiplicities = new int[index.getNumberOfReactions()];
+		for (int r = 0; r < multiplicities.length; r++) {
+			multiplicities[r] = excludedNodes != null && excludedNodes[index.getFirstReactionId() + r] ? 0 : 1;
+		}
+		return fromIndex(index, multiplicities);
+	}
+	
+	/**
+	 * Creates the hypergraph of the given index, in which a reaction may be represented by several vertices.
+	 * <p>
+	 * This is used for reactions that belong to several subsystems at once, each of their vertices then belongs to one of these subsystems.
+	 * 
+	 * @param index
+	 *           the index
+	 * @param multiplicities
+	 *           the number of vertices of each reaction, indexed by reaction id minus {@link BaseGraphIndex#getFirstReactionId()}. Reactions with
+	 *           multiplicity 0 are left out.
+	 * @return the hypergraph, whose vertices are ordered by the ids of their reactions
+	 */
+	static ReactionHypergraph fromIndex(BaseGraphIndex index, int[] multiplicities) {
+		int firstReactionId = index.getFirstReactionId();
+		int numberOfNodes = index.getNumberOfNodes();
+		
+		int[] firstVertexOfReaction = new int[numberOfNodes + 1];
+		for (int reactionId = firstReactionId; reactionId < numberOfNodes; reactionId++) {
+			firstVertexOfReaction[reactionId + 1] = firstVertexOfReaction[reactionId] + multiplicities[reactionId - firstReactionId];
+		}
+		int numberOfVertices = firstVertexOfReaction[numberOfNodes];
+		int[] reactionIds = new int[numberOfVertices];
+		for (int reactionId = firstReactionId; reactionId < numberOfNodes; reactionId++) {
+			for (int v = firstVertexOfReaction[reactionId]; v < firstVertexOfReaction[reactionId + 1]; v++) {
+				reactionIds[v] = reactionId;
+			}
+		}
+		
+		int[] inOffsets = index.getInOffsets();
+		int[] inNeighbors = index.getInNeighbors();
+		int[] outOffsets = index.getOutOffsets();
+		int[] outNeighbors = index.getOutNeighbors();
+		int[] stamp = new int[numberOfNodes];
+		Arrays.fill(stamp, -1);
+		int[] netOffsets = new int[index.getNumberOfSpecies() + 1];
+		int numberOfPins = 0;
+		for (int speciesId = 0; speciesId < index.getNumberOfSpecies(); speciesId++) {
+			for (int pass = 0; pass < 2; pass++) {
+				int[] offsets = pass == 0 ? inOffsets : outOffsets;
+				int[] neighbors = pass == 0 ? inNeighbors : outNeighbors;
+				for (int k = offsets[speciesId]; k < offsets[speciesId + 1]; k++) {
+					int reactionId = neighbors[k];
+					if (stamp[reactionId] != speciesId) {
+						stamp[reactionId] = speciesId;
+						numberOfPins += firstVertexOfReaction[reactionId + 1] - firstVertexOfReaction[reactionId];
+					}
+				}
+			}
+		}
+		
+		Arrays.fill(stamp, -1);
+		int[] netPins = new int[numberOfPins];
+		int numberOfNets = 0;
+		numberOfPins = 0;
+		for (int speciesId = 0; speciesId < index.getNumberOfSpecies(); speciesId++) {
+			int start = numberOfPins;
+			for (int pass = 0; pass < 2; pass++) {
+				int[] offsets = pass == 0 ? inOffsets : outOffsets;
+				int[] neighbors = pass == 0 ? inNeighbors : outNeighbors;
+				for (int k = offsets[speciesId]; k < offsets[speciesId + 1]; k++) {
+					int reactionId = neighbors[k];
+					if (stamp[reactionId] != speciesId) {
+						stamp[reactionId] = speciesId;
+						for (int v = firstVertexOfReaction[reactionId]; v < firstVertexOfReaction[reactionId + 1]; v++) {
+							netPins[numberOfPins++] = v;
+						}
+					}
+				}
+			}
+			if (numberOfPins - start < 2) {
+				numberOfPins = start;
+			} else {
+				netOffsets[++numberOfNets] = numberOfPins;
+			}
+		}
+		
+		int[] vertexWeights = new int[numberOfVertices];
+		Arrays.fill(vertexWeights, 1);
+		return new ReactionHypergraph(vertexWeights, Arrays.copyOf(netOffsets, numberOfNets + 1), Arrays.copyOf(netPins, numberOfPins),
+				reactionIds);
+	}
+	
+	/**
+	 * Contracts the vertices of this hypergraph.
+	 * 
+	 * @param coarseVertexOf
+	 *           the vertex of the coarse hypergraph for each vertex of this hypergraph
+	 * @param numberOfCoarseVertices
+	 *           the number of vertices of the coarse hypergraph
+	 * @return the coarse hypergraph
+	 */
+	ReactionHypergraph contract(int[] coarseVertexOf, int numberOfCoarseVertices) {
+		int[] coarseWeights = new int[numberOfCoarseVertices];
+		for (int v = 0; v < numberOfVertices; v++) {
+			coarseWeights[coarseVertexOf[v]] += vertexWeights[v];
+		}
+		
+		int[] stamp = new int[numberOfCoarseVertices];
+		Arrays.fill(stamp, -1);
+		int[] coarseNetOffsets = new int[numberOfNets + 1];
+		int[] coarsePins = new int[netPins.length];
+		int numberOfCoarseNets = 0;
+		int numberOfPins = 0;
+		for (int n = 0; n < numberOfNets; n++) {
+			int start = numberOfPins;
+			for (int k = netOffsets[n]; k < netOffsets[n + 1]; k++) {
+				int c = coarseVertexOf[netPins[k]];
+				if (stamp[c] != n) {
+					stamp[c] = n;
+					coarsePins[numberOfPins++] = c;
+				}
+			}
+			if (numberOfPins - start < 2) {
+				numberOfPins = start;
+			} else {
+				coarseNetOffsets[++numberOfCoarseNets] = numberOfPins;
+			}
+		}
+		
+		return new ReactionHypergraph(coarseWeights, Arrays.copyOf(coarseNetOffsets, numberOfCoarseNets + 1),
+				Arrays.copyOf(coarsePins, numberOfPins), null);
+	}
+	
+	int getNetSize(int n) {
+		return netOffsets[n + 1] - netOffsets[n];
+	}
+	
+	int getDegree(int v) {
+		return vertexOffsets[v + 1] - vertexOffsets[v];
+	}
+	
+	long getTotalWeight() {
+		long totalWeight = 0;
+		for (int weight : vertexWeights) {
+			totalWeight += weight;
+		}
+		return totalWeight;
+	}
+	
+}
@@ -15,29 +15,38 @@
 package org.vanted.addons.lmme.decomposition;
 
 import java.awt.Color;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Set;
 
+import javax.swing.JButton;
+import javax.swing.JFrame;
 import javax.swing.JLabel;
 import javax.swing.JOptionPane;
 import javax.swing.JPanel;
 import javax.swing.JTextField;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
 
 import org.FolderPanel;
-import org.graffiti.graph.AdjListGraph;
-import org.graffiti.graph.Edge;
-import org.graffiti.graph.Graph;
 import org.graffiti.graph.Node;
+import org.jfree.chart.ChartFactory;
+import org.jfree.chart.ChartPanel;
+import org.jfree.chart.JFreeChart;
+import org.jfree.chart.plot.PlotOrientation;
+import org.jfree.chart.plot.ValueMarker;
+import org.jfree.data.xy.XYSeries;
+import org.jfree.data.xy.XYSeriesCollection;
 import org.vanted.addons.lmme.core.LMMEController;
-import org.vanted.addons.lmme.core.LMMETools;
+import org.vanted.addons.lmme.core.LMMESession;
 import org.vanted.addons.lmme.graphs.BaseGraph;
+import org.vanted.addons.lmme.graphs.BaseGraphIndex;
+import org.vanted.addons.lmme.graphs.CloningMode;
 import org.vanted.addons.lmme.graphs.SubsystemGraph;
+import org.vanted.addons.lmme.graphs.UnionFind;
 import org.vanted.addons.lmme.ui.LMMETab;
 
-import de.ipk_gatersleben.ag_nw.graffiti.GraphHelper;
-
 /**
  * This method is an implementation of the method that has been proposed by Schuster et al.
  * <p>
@@ -55,61 +64,45 @@ public class SchusterMMDecomposition extends MMDecompositionAlgorithm {
 	
 	private JTextField tfThreshold;
 	
+	private JLabel lblPreview;
+	
 	private final String ATTRIBUTE_NAME_SUBSYSTEM = "SchusterSubsystem";
 	
+	/**
+	 * The cached threshold sweep together with the base graph, the cloned species and the cloning mode it has been computed for.
+	 */
+	private SchusterThresholdSweep sweep;
+	private BaseGraph sweepBaseGraph;
+	private HashSet<Node> sweepClonedSpecies;
+	private CloningMode sweepCloningMode;
+	
 	@Override
 	protected ArrayList<SubsystemGraph> runSpecific(HashSet<Node> alreadyClassifiedNodes) {
 		
-		BaseGraph baseGraph = LMMEController.getInstance().getCurrentSession().getBaseGraph();
-		
-		Graph workingCopy = new AdjListGraph();
-		HashMap<Node, Node> original2CopiedNodes = new HashMap<>();
-		HashMap<Node, Node> copied2OriginalNodes = new HashMap<>();
-		// HashMap<Edge, Edge> original2CopiedEdges = new HashMap<>();
-		HashMap<Edge, Edge> copied2OriginalEdges = new HashMap<>();
-		
-		for (Node speciesNode : baseGraph.getSpeciesNodes()) {
-			Node newNode = workingCopy.addNodeCopy(speciesNode);
-			original2CopiedNodes.put(speciesNode, newNode);
-			copied2OriginalNodes.put(newNode, speciesNode);
-		}
-		for (Node reactionNode : baseGraph.getReactionNodes()) {
-			Node newNode = workingCopy.addNodeCopy(reactionNode);
-			original2CopiedNodes.put(reactionNode, newNode);
-			copied2OriginalNodes.put(newNode, reactionNode);
-		}
-		
-		for (Edge edge : baseGraph.getGraph().getEdges()) {
-			Node sourceNode = original2CopiedNodes.get(edge.getSource());
-			Node tragetNode = original2CopiedNodes.get(edge.getTarget());
-			Edge newEdge = workingCopy.addEdgeCopy(edge, sourceNode, tragetNode);
-			copied2OriginalEdges.put(newEdge, edge);
-		}
+		BaseGraphIndex index = LMMEController.getInstance().getCurrentSession().getBaseGraph().getIndex();
 		
 		int threshold = readThreshold();
 		
-		// ArrayList<Node> possibleInterfaces = new ArrayList<>();
-		
-		for (Node speciesNode : baseGraph.getSpeciesNodes()) {
-			if (speciesNode.getDegree() >= threshold) {
-				// possibleInterfaces.add(speciesNode);
-				workingCopy.deleteNode(original2CopiedNodes.get(speciesNode));
+		// Species with a degree of at least the threshold are considered to be removed, all others connect their reactions.
+		UnionFind reactionComponents = new UnionFind(index.getNumberOfReactions());
+		for (int speciesId = 0; speciesId < index.getNumberOfSpecies(); speciesId++) {
+			if (index.getDegree(speciesId) < threshold) {
+				index.unionAdjacentReactions(speciesId, reactionComponents);
 			}
 		}
 		
-		Set<Set<Node>> connComps = GraphHelper.getConnectedComponents(workingCopy.getNodes());
-		
-		int count = 1;
-		for (Set<Node> nodes : connComps) {
-			for (Node node : nodes) {
-				Node originalNode = copied2OriginalNodes.get(node);
-				if (LMMETools.getInstance().isReaction(originalNode)
-						&& !alreadyClassifiedNodes.contains(originalNode)) {
-					LMMEController.getInstance().getCurrentSession().addNodeAttribute(originalNode,
-							this.ATTRIBUTE_NAME_SUBSYSTEM, "Algorithmically derived Subsystem " + count);
-				}
+		int[] componentNumbers = new int[index.getNumberOfReactions()];
+		int count = 0;
+		for (int reaction = 0; reaction < index.getNumberOfReactions(); reaction++) {
+			int root = reactionComponents.find(reaction);
+			if (componentNumbers[root] == 0) {
+				componentNumbers[root] = ++count;
+			}
+			Node reactionNode = index.getNode(index.getFirstReactionId() + reaction);
+			if (!alreadyClassifiedNodes.contains(reactionNode)) {
+				LMMEController.getInstance().getCurrentSession().addNodeAttribute(reactionNode,
+						this.ATTRIBUTE_NAME_SUBSYSTEM, "Algorithmically derived Subsystem " + componentNumbers[root]);
 			}
-			count++;
 		}
 		
 		return determineSubsystemsFromReactionAttributes(this.ATTRIBUTE_NAME_SUBSYSTEM, true, ";",
@@ -132,12 +125,133 @@ public class SchusterMMDecomposition extends MMDecompositionAlgorithm {
 		JPanel thresholdLine = LMMETab.combine(lblThreshold, this.tfThreshold, Color.WHITE, false, true);
 		fp.addGuiComponentRow(thresholdLine, null, true);
 		
+		this.lblPreview = new JLabel();
+		this.lblPreview.setToolTipText("<html>The number of subsystems that result from the current threshold and the current<br>"
+				+ "selection of clonable species, not taking into account the transporter subsystem.</html>");
+		this.tfThreshold.getDocument().addDocumentListener(new DocumentListener() {
+			public void insertUpdate(DocumentEvent e) {
+				updatePreview();
+			}
+			
+			public void removeUpdate(DocumentEvent e) {
+				updatePreview();
+			}
+			
+			public void changedUpdate(DocumentEvent e) {
+				updatePreview();
+			}
+		});
+		
+		JButton btnShowSweep = new JButton("Show Threshold Sweep");
+		btnShowSweep.addActionListener(new ActionListener() {
+			public void actionPerformed(ActionEvent e) {
+				showSweepChart();
+			}
+		});
+		fp.addGuiComponentRow(LMMETab.combine(this.lblPreview, btnShowSweep, Color.WHITE, false, true), null, true);
+		
+		updatePreview();
+		
 		return fp;
 	}
 	
 	@Override
 	public void updateFolderPanel() {
-		// no need to do sth.
+		updatePreview();
+	}
+	
+	/**
+	 * Gets the threshold sweep for the current base graph, the current selection of clonable species and the current cloning mode.
+	 * <p>
+	 * The sweep is computed on the original graph, as the working graph is cloned only when the decomposition is run. The clones that the selected
+	 * cloning mode is going to create are taken into account by the sweep itself.
+	 * 
+	 * @return the threshold sweep, or {@code null} if no model has been set
+	 */
+	private SchusterThresholdSweep getSweep() {
+		LMMESession currentSession = LMMEController.getInstance().getCurrentSession();
+		if (currentSession == null || !currentSession.isModelSet()) {
+			return null;
+		}
+		BaseGraph baseGraph = currentSession.getBaseGraph();
+		HashSet<Node> clonableSpecies = new HashSet<>(LMMEController.getInstance().getTab().getClonableSpecies());
+		CloningMode cloningMode = LMMEController.getInstance().getTab().getCloningMode();
+		if (this.sweep == null || baseGraph != this.sweepBaseGraph || !clonableSpecies.equals(this.sweepClonedSpecies)
+				|| cloningMode != this.sweepCloningMode) {
+			BaseGraphIndex index = baseGraph.getOriginalIndex();
+			boolean[] cloned = new boolean[index.getNumberOfSpecies()];
+			for (Node speciesNode : clonableSpecies) {
+				int speciesId = index.getId(speciesNode);
+				if (speciesId >= 0 && speciesId < cloned.length) {
+					cloned[speciesId] = true;
+				}
+			}
+			this.sweep = new SchusterThresholdSweep(index, cloned, cloningMode);
+			this.sweepBaseGraph = baseGraph;
+			this.sweepClonedSpecies = clonableSpecies;
+			this.sweepCloningMode = cloningMode;
+		}
+		return this.sweep;
+	}
+	
+	/**
+	 * Updates the label that previews the number of resulting subsystems for the entered threshold.
+	 */
+	private void updatePreview() {
+		if (this.lblPreview == null) {
+			return;
+		}
+		SchusterThresholdSweep currentSweep = getSweep();
+		Integer threshold = parseThreshold();
+		if (currentSweep == null || threshold == null) {
+			this.lblPreview.setText("Resulting subsystems: -");
+		} else {
+			this.lblPreview.setText("Resulting subsystems: " + currentSweep.getNumberOfComponents(threshold.intValue())
+					+ " (largest: " + currentSweep.getLargestComponentSize(threshold.intValue()) + ")");
+		}
+	}
+	
+	/**
+	 * Shows a chart of the number of resulting subsystems and the size of the largest subsystem for every threshold.
+	 */
+	private void showSweepChart() {
+		SchusterThresholdSweep currentSweep = getSweep();
+		if (currentSweep == null) {
+			JOptionPane.showMessageDialog(null, "No base graph was set.");
+			return;
+		}
+		XYSeries subsystemSeries = new XYSeries("Number of subsystems");
+		XYSeries largestSeries = new XYSeries("Reactions in largest subsystem");
+		XYSeries singletonSeries = new XYSeries("Subsystems with a single reaction");
+		for (int threshold = 1; threshold <= currentSweep.getMaximumThreshold(); threshold++) {
+			subsystemSeries.add(threshold, currentSweep.getNumberOfComponents(threshold));
+			largestSeries.add(threshold, currentSweep.getLargestComponentSize(threshold));
+			singletonSeries.add(threshold, currentSweep.getNumberOfSingletons(threshold));
+		}
+		XYSeriesCollection dataset = new XYSeriesCollection();
+		dataset.addSeries(subsystemSeries);
+		dataset.addSeries(largestSeries);
+		dataset.addSeries(singletonSeries);
+		JFreeChart chart = ChartFactory.createXYLineChart("Threshold Sweep", "Metabolite degree threshold", null, dataset,
+				PlotOrientation.VERTICAL, true, false, false);
+		Integer threshold = parseThreshold();
+		if (threshold != null) {
+			chart.getXYPlot().addDomainMarker(new ValueMarker(threshold.doubleValue()));
+		}
+		ChartPanel chartPanel = new ChartPanel(chart);
+		JFrame chartFrame = new JFrame();
+		chartFrame.add(chartPanel);
+		chartFrame.setSize(800, 500);
+		chartFrame.setLocationRelativeTo(null);
+		chartFrame.setVisible(true);
+	}
+	
+	private Integer parseThreshold() {
+		try {
+			return Integer.valueOf(Integer.parseInt(this.tfThreshold.getText().trim()));
+		} catch (NumberFormatException e) {
+			return null;
+		}
 	}
 	
 	private int readThreshold() {
@@ -0,0 +1,239 @@
+/*******************************************************************************
+ * LMME is a VANTED Add-on for the exploration of large metabolic models.
+ * Copyright (C) 2020 Chair for Life Science Informatics, University of Konstanz
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package org.vanted.addons.lmme.decomposition;
+
+import java.util.Arrays;
+
+import org.vanted.addons.lmme.graphs.BaseGraphIndex;
+import org.vanted.addons.lmme.graphs.CloningMode;
+import org.vanted.addons.lmme.graphs.UnionFind;
+
+/**
+ * Computes the outcome of the decomposition by Schuster et al. for all degree thresholds at once.
+ * <p>
+ * For a threshold {@code t}, all species with a degree of at least {@code t} are removed and the reactions are grouped into the connected components
+ * of the remaining graph. The sweep inserts the species in increasing order of their degree into a union-find structure over the reactions and records
+ * the component statistics after each degree, which takes near-linear time in the number of edges for all thresholds together.
+ * <p>
+ * Species that are going to be cloned are replaced by their clones as {@link org.vanted.addons.lmme.graphs.BaseGraph#cloneSpecies(java.util.List,
+ * CloningMode)} would create them. In {@link CloningMode#PER_EDGE} mode, the clones never connect reactions. In
+ * {@link CloningMode#PER_REACTION_GROUP} mode, every clone connects the reactions of its group and is kept or removed according to its own degree.
+ * 
+ * @author Michael Aichem
+ */
+public class SchusterThresholdSweep {
+	
+	private final int numberOfReactions;
+	
+	/**
+	 * The statistics for the thresholds 1 to maxThreshold, stored at index threshold - 1.
+	 */
+	private final int[] numberOfComponents;
+	private final int[] largestComponentSize;
+	private final int[] numberOfSingletons;
+	
+	/**
+	 * Performs the sweep.
+	 * 
+	 * @param index
+	 *           the index of the uncloned graph to be decomposed
+	 * @param clonedSpecies
+	 *           flags for the species ids that are going to be cloned, may be {@code null}
+	 * @param cloningMode
+	 *           the way in which these species are going to be cloned
+	 */
+	public SchusterThresholdSweep(BaseGraphIndex index, boolean[] clonedSpecies, CloningMode cloningMode) {
+		
+		this.numberOfReactions = index.getNumberOfReactions();
+		int numberOfSpecies = index.getNumberOfSpecies();
+		int firstReactionId = index.getFirstReactionId();
+		int[][] offsets = { index.getInOffsets(), index.getOutOffsets() };
+		int[][] neighbors = { index.getInNeighbors(), index.getOutNeighbors() };
+		
+		UnionFind reactionGroups = null;
+		if (clonedSpecies != null && cloningMode == CloningMode.PER_REACTION_GROUP) {
+			reactionGroups = new UnionFind(numberOfReactions);
+			for (int speciesId = 0; speciesId < numberOfSpecies; speciesId++) {
+				if (!clonedSpecies[speciesId]) {
+					index.unionAdjacentReactions(speciesId, reactionGroups);
+				}
+			}
+		}
+		
+		// The units that may connect reactions, i.e. the uncloned species and the clones per reaction group, each with the reactions it is adjacent to.
+		int[] unitDegrees = new int[numberOfSpecies + index.getNumberOfEdges()];
+		int[] unitOffsets = new int[unitDegrees.length + 1];
+		int[] unitReactions = new int[index.getNumberOfEdges()];
+		int numberOfUnits = 0;
+		int[] groupPosition = new int[numberOfReactions];
+		Arrays.fill(groupPosition, -1);
+		int[] groups = new int[numberOfReactions];
+		for (int speciesId = 0; speciesId < numberOfSpecies; speciesId++) {
+			boolean cloned = clonedSpecies != null && clonedSpecies[speciesId];
+			if (cloned && reactionGroups == null) {
+				continue;
+			}
+			int start = unitOffsets[numberOfUnits];
+			if (!cloned) {
+				int end = start;
+				for (int direction = 0; direction < 2; direction++) {
+					for (int l = offsets[direction][speciesId]; l < offsets[direction][speciesId + 1]; l++) {
+						unitReactions[end++] = neighbors[direction][l] - firstReactionId;
+					}
+				}
+				if (end > start) {
+					unitDegrees[numberOfUnits] = end - start;
+					unitOffsets[++numberOfUnits] = end;
+				}
+				continue;
+			}
+			// Count the edges per group, then place the reactions of each group next to each other.
+			int numberOfGroups = 0;
+			for (int direction = 0; direction < 2; direction++) {
+				for (int l = offsets[direction][speciesId]; l < offsets[direction][speciesId + 1]; l++) {
+					int group = reactionGroups.find(neighbors[direction][l] - firstReactionId);
+					if (groupPosition[group] == -1) {
+						groupPosition[group] = 0;
+						groups[numberOfGroups++] = group;
+					}
+					groupPosition[group]++;
+				}
+			}
+			int end = start;
+			for (int i = 0; i < numberOfGroups; i++) {
+				int size = groupPosition[groups[i]];
+				groupPosition[groups[i]] = end;
+				unitDegrees[numberOfUnits] = size;
+				end += size;
+				unitOffsets[++numberOfUnits] = end;
+			}
+			for (int direction = 0; direction < 2; direction++) {
+				for (int l = offsets[direction][speciesId]; l < offsets[direction][speciesId + 1]; l++) {
+					int reaction = neighbors[direction][l] - firstReactionId;
+					unitReactions[groupPosition[reactionGroups.find(reaction)]++] = reaction;
+				}
+			}
+			for (int i = 0; i < numberOfGroups; i++) {
+				groupPosition[groups[i]] = -1;
+			}
+		}
+		
+		int maxDegree = 0;
+		for (int speciesId = 0; speciesId < numberOfSpecies; speciesId++) {
+			maxDegree = Math.max(maxDegree, index.getDegree(speciesId));
+		}
+		
+		// Counting sort of the units by degree.
+		int[] degreeStart = new int[maxDegree + 2];
+		for (int unit = 0; unit < numberOfUnits; unit++) {
+			degreeStart[unitDegrees[unit] + 1]++;
+		}
+		for (int degree = 0; degree <= maxDegree; degree++) {
+			degreeStart[degree + 1] += degreeStart[degree];
+		}
+		int[] sortedUnits = new int[numberOfUnits];
+		int[] position = Arrays.copyOf(degreeStart, maxDegree + 1);
+		for (int unit = 0; unit < numberOfUnits; unit++) {
+			sortedUnits[position[unitDegrees[unit]]++] = unit;
+		}
+		
+		int maxThreshold = maxDegree + 1;
+		this.numberOfComponents = new int[maxThreshold];
+		this.largestComponentSize = new int[maxThreshold];
+		this.numberOfSingletons = new int[maxThreshold];
+		
+		UnionFind reactionComponents = new UnionFind(numberOfReactions);
+		int largest = numberOfReactions > 0 ? 1 : 0;
+		int singletons = numberOfReactions;
+		
+		// Threshold t keeps the species with a degree of at most t - 1.
+		for (int threshold = 1; threshold <= maxThreshold; threshold++) {
+			int degree = threshold - 1;
+			for (int k = degreeStart[degree]; k < degreeStart[degree + 1]; k++) {
+				int unit = sortedUnits[k];
+				int firstReaction = unitReactions[unitOffsets[unit]];
+				for (int l = unitOffsets[unit] + 1; l < unitOffsets[unit + 1]; l++) {
+					int reaction = unitReactions[l];
+					int sizeFirst = reactionComponents.getSetSize(firstReaction);
+					int sizeReaction = reactionComponents.getSetSize(reaction);
+					int root = reactionComponents.union(firstReaction, reaction);
+					if (root != -1) {
+						if (sizeFirst == 1) {
+							singletons--;
+						}
+						if (sizeReaction == 1) {
+							singletons--;
+						}
+						largest = Math.max(largest, sizeFirst + sizeReaction);
+					}
+				}
+			}
+			numberOfComponents[threshold - 1] = reactionComponents.getNumberOfSets();
+			largestComponentSize[threshold - 1] = largest;
+			numberOfSingletons[threshold - 1] = singletons;
+		}
+	}
+	
+	/**
+	 * Gets the largest threshold that makes a difference. For any larger threshold, no species is removed at all.
+	 * 
+	 * @return the largest relevant threshold
+	 */
+	public int getMaximumThreshold() {
+		return numberOfComponents.length;
+	}
+	
+	public int getNumberOfReactions() {
+		return numberOfReactions;
+	}
+	
+	/**
+	 * Gets the number of reaction components, i.e. the number of resulting subsystems, for the given threshold.
+	 * 
+	 * @param threshold
+	 *           the degree threshold
+	 * @return the number of components
+	 */
+	public int getNumberOfComponents(int threshold) {
+		return numberOfComponents[clamp(threshold)];
+	}
+	
+	/**
+	 * Gets the number of reactions in the largest component for the given threshold.
+	 * 
+	 * @param threshold
+	 *           the degree threshold
+	 * @return the size of the largest component
+	 */
+	public int getLargestComponentSize(int threshold) {
+		return largestComponentSize[clamp(threshold)];
+	}
+	
+	/**
+	 * Gets the number of components consisting of a single reaction for the given threshold.
+	 * 
+	 * @param threshold
+	 *           the degree threshold
+	 * @return the number of single reaction components
+	 */
+	public int getNumberOfSingletons(int threshold) {
+		return numberOfSingletons[clamp(threshold)];
+	}
+	
+	private int clamp(int threshold) {
+		return Math.max(1, Math.min(threshold, numberOfComponents.length)) - 1;
+	}
+	
+}
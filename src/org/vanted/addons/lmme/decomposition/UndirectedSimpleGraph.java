@@ -0,0 +1,116 @@
+/*******************************************************************************
+ * LMME is a VANTED Add-on for the exploration of large metabolic models.
+ * Copyright (C) 2020 Chair for Life Science Informatics, University of Konstanz
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package org.vanted.addons.lmme.decomposition;
+
+import java.util.Arrays;
+
+import org.vanted.addons.lmme.graphs.BaseGraphIndex;
+
+/**
+ * The undirected, simple species/reaction graph of a {@link BaseGraphIndex}, as used by the clustering algorithms.
+ * <p>
+ * Every species-reaction pair is contained once, regardless of the direction and multiplicity of the edges in the index. The node ids are the ones of
+ * the index, the neighbors of node {@code v} are {@code neighbors[offsets[v]]} to {@code neighbors[offsets[v + 1] - 1]}. The edges are numbered from
+ * {@code 0} to {@code numberOfEdges - 1}, where {@code edges[k]} is the id of the edge that leads to {@code neighbors[k]}.
+ * 
+ * @author Michael Aichem
+ */
+class UndirectedSimpleGraph {
+	
+	final int numberOfNodes;
+	final int numberOfEdges;
+	final int firstReactionId;
+	
+	final int[] offsets;
+	final int[] neighbors;
+	final int[] edges;
+	
+	/**
+	 * The species and the reaction of each edge.
+	 */
+	final int[] edgeSources;
+	final int[] edgeTargets;
+	
+	/**
+	 * Creates the undirected, simple graph of the given index.
+	 * 
+	 * @param index
+	 *           the index
+	 * @param excludedNodes
+	 *           the nodes whose edges are to be left out, indexed by node id, or {@code null}
+	 */
+	UndirectedSimpleGraph(BaseGraphIndex index, boolean[] excludedNodes) {
+		
+		this.numberOfNodes = index.getNumberOfNodes();
+		this.firstReactionId = index.getFirstReactionId();
+		
+		int[] inOffsets = index.getInOffsets();
+		int[] inNeighbors = index.getInNeighbors();
+		int[] outOffsets = index.getOutOffsets();
+		int[] outNeighbors = index.getOutNeighbors();
+		int[] stamp = new int[numberOfNodes];
+		Arrays.fill(stamp, -1);
+		int[] sources = new int[index.getNumberOfEdges()];
+		int[] targets = new int[index.getNumberOfEdges()];
+		int edgeCount = 0;
+		for (int reactionId = firstReactionId; reactionId < numberOfNodes; reactionId++) {
+			if (excludedNodes != null && excludedNodes[reactionId]) {
+				continue;
+			}
+			for (int k = inOffsets[reactionId]; k < inOffsets[reactionId + 1]; k++) {
+				int speciesId = inNeighbors[k];
+				if (stamp[speciesId] != reactionId && (excludedNodes == null || !excludedNodes[speciesId])) {
+					stamp[speciesId] = reactionId;
+					sources[edgeCount] = speciesId;
+					targets[edgeCount++] = reactionId;
+				}
+			}
+			for (int k = outOffsets[reactionId]; k < outOffsets[reactionId + 1]; k++) {
+				int speciesId = outNeighbors[k];
+				if (stamp[speciesId] != reactionId && (excludedNodes == null || !excludedNodes[speciesId])) {
+					stamp[speciesId] = reactionId;
+					sources[edgeCount] = speciesId;
+					targets[edgeCount++] = reactionId;
+				}
+			}
+		}
+		this.numberOfEdges = edgeCount;
+		this.edgeSources = Arrays.copyOf(sources, edgeCount);
+		this.edgeTargets = Arrays.copyOf(targets, edgeCount);
+		
+		this.offsets = new int[numberOfNodes + 1];
+		for (int e = 0; e < edgeCount; e++) {
+			offsets[sources[e] + 1]++;
+			offsets[targets[e] + 1]++;
+		}
+		for (int v = 0; v < numberOfNodes; v++) {
+			offsets[v + 1] += offsets[v];
+		}
+		this.neighbors = new int[2 * edgeCount];
+		this.edges = new int[2 * edgeCount];
+		int[] position = Arrays.copyOf(offsets, numberOfNodes);
+		for (int e = 0; e < edgeCount; e++) {
+			edges[position[sources[e]]] = e;
+			neighbors[position[sources[e]]++] = targets[e];
+			edges[position[targets[e]]] = e;
+			neighbors[position[targets[e]]++] = sources[e];
+		}
+	}
+	
+	int getDegree(int v) {
+		return offsets[v + 1] - offsets[v];
+	}
+	
+}
@@ -17,6 +17,7 @@ package org.vanted.addons.lmme.graphs;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 
 import org.AttributeHelper;
@@ -24,6 +25,7 @@ import org.graffiti.graph.AdjListGraph;
 import org.graffiti.graph.Edge;
 import org.graffiti.graph.Graph;
 import org.graffiti.graph.Node;
+import org.vanted.addons.lmme.core.LMMEAttributeStore;
 import org.vanted.addons.lmme.core.LMMEConstants;
 import org.vanted.addons.lmme.core.LMMEController;
 import org.vanted.addons.lmme.core.LMMETools;
@@ -33,7 +35,9 @@ import org.vanted.addons.lmme.core.LMMETools;
  * <p>
  * Within this class, there is a strict separation of the {@code originalGraph} and the {@code workingGraph} and their corresponding species and reactions.
  * <p>
- * Within the working graph, the cloning is performed, while the {@code originalGraph} remains the same as in the beginning. In most cases, the right way is to
+ * Within the working graph, the cloning is performed, while the {@code originalGraph} remains the same as in the beginning. The clones form a layer on top
+ * of the working copy that can be removed again in time proportional to the number of clones, such that the same {@code BaseGraph} can be reused for
+ * several decompositions. In most cases, the right way is to
  * access the {@code workingGraph}. The only reason for the {@code originalGraph} to be also stored is that this is the only one that has the SBML file
  * associated. It needs therefore only to be accessed when the SBML file is to be read - or when a session is to be reseted and a new working copy is to be
  * produced.
@@ -62,7 +66,34 @@ public class BaseGraph {
 	
 	private int[] degreeSpecies;
 	
+	/**
+	 * The int-indexed representation of the {@link #workingGraph}. Built lazily and discarded whenever the lists are updated.
+	 */
+	private BaseGraphIndex index;
+	
+	/**
+	 * The int-indexed representation of the {@link #originalGraph}. As the original graph does not change, it is built only once.
+	 */
+	private BaseGraphIndex originalIndex;
+	
+	/**
+	 * The cached attributes of the nodes in the {@link #originalGraph} and the {@link #workingGraph}.
+	 */
+	private LMMEAttributeStore attributeStore = new LMMEAttributeStore();
+	
+	/**
+	 * The species from the {@link #originalGraph} that are currently cloned in the {@link #workingGraph}.
+	 */
+	private LinkedHashSet<Node> clonedSpecies = new LinkedHashSet<>();
+	
+	private CloningMode cloningMode = CloningMode.PER_EDGE;
+	
 	private ArrayList<String> processedNotes = new ArrayList<>();
+	
+	/**
+	 * Maps the names of the attributes that have been read from notes to the names of the respective notes.
+	 */
+	private HashMap<String, String> attributeNotes = new HashMap<>();
 	private String[] availableNotes;
 	
 	/**
@@ -80,9 +111,11 @@ public class BaseGraph {
 		this.originalGraph = graph;
 		
 		for (Node node : originalGraph.getNodes()) {
-			if (LMMETools.getInstance().isSpecies(node)) {
+			attributeStore.register(node);
+			LMMEAttributeStore.NodeRole role = attributeStore.getRole(node);
+			if (role == LMMEAttributeStore.NodeRole.SPECIES) {
 				originalSpeciesNodes.add(node);
-			} else if (LMMETools.getInstance().isReaction(node)) {
+			} else if (role == LMMEAttributeStore.NodeRole.REACTION) {
 				originalReactionNodes.add(node);
 			}
 			// avoid automatic background coloring
@@ -96,6 +129,7 @@ public class BaseGraph {
 		
 		for (Node node : originalGraph.getNodes()) {
 			Node newNode = workingGraph.addNodeCopy(node);
+			attributeStore.registerCopy(newNode, node);
 			ArrayList<Node> workingNodesList = new ArrayList<>();
 			workingNodesList.add(newNode);
 			original2workingNodes.put(node, workingNodesList);
@@ -149,26 +183,75 @@ public class BaseGraph {
 		
 	}
 	
+	/**
+	 * Clones the species from the given list in the {@link #workingGraph}, creating one clone per incident edge.
+	 * 
+	 * @param clonableSpecies
+	 *           A list of species from the originalGraph that are to
+	 *           be cloned in the working copy.
+	 * @see #cloneSpecies(List, CloningMode)
+	 */
+	public void cloneSpecies(List<Node> clonableSpecies) {
+		cloneSpecies(clonableSpecies, CloningMode.PER_EDGE);
+	}
+	
 	/**
 	 * Clones the species from the given list in the {@link #workingGraph}.
 	 * <p>
-	 * Cloning in this case means to replace the node by a copy of itself for every
-	 * edge it is incident to. In addition, these edges are also copied such that
-	 * the resulting copied nodes all have a degree of 1.
+	 * Cloning in this case means to replace the node by several copies of itself. In {@link CloningMode#PER_EDGE} mode, a copy is created for every edge
+	 * the node is incident to, such that the resulting copied nodes all have a degree of 1. In {@link CloningMode#PER_REACTION_GROUP} mode, a copy is
+	 * created for every group of reactions the node is connected to, where two reactions belong to the same group if they are connected without
+	 * passing through any of the species to be cloned. In both cases, the edges are copied to the respective copied nodes.
 	 * 
 	 * @param clonableSpecies
 	 *           A list of species from the originalGraph that are to
 	 *           be cloned in the working copy.
+	 * @param cloningMode
+	 *           the way in which the species are cloned
 	 */
-	public void cloneSpecies(List<Node> clonableSpecies) {
+	public void cloneSpecies(List<Node> clonableSpecies, CloningMode cloningMode) {
+		// The reaction groups are determined on the working graph, which must not contain clones of the previous mode anymore.
+		if (cloningMode != this.cloningMode) {
+			resetWorkingGraph();
+		}
+		this.cloningMode = cloningMode;
+		BaseGraphIndex index = null;
+		UnionFind reactionGroups = null;
+		if (cloningMode == CloningMode.PER_REACTION_GROUP) {
+			index = getIndex();
+			reactionGroups = determineReactionGroups(clonableSpecies);
+		}
 		for (Node nodeToClone : clonableSpecies) {
+			if (!clonedSpecies.add(nodeToClone)) {
+				continue;
+			}
 			Node workingNode = original2workingNodes.get(nodeToClone).get(0);
 			original2workingNodes.get(nodeToClone).clear();
+			HashMap<Integer, Node> groupClones = new HashMap<>();
+			int ungroupedEdges = 0;
 			for (Edge edge : workingNode.getEdges()) {
-				Node newNode = workingGraph.addNodeCopy(workingNode);
-				AttributeHelper.setAttribute(newNode, LMMEConstants.ATTRIBUTE_PATH, "isClone", true);
-				original2workingNodes.get(nodeToClone).add(newNode);
-				working2originalNodes.put(newNode, nodeToClone);
+				Node newNode = null;
+				Integer group = null;
+				if (reactionGroups != null) {
+					Node reactionNode = edge.getSource() == workingNode ? edge.getTarget() : edge.getSource();
+					int reactionId = index.getId(reactionNode);
+					if (reactionId >= index.getFirstReactionId()) {
+						group = Integer.valueOf(reactionGroups.find(reactionId - index.getFirstReactionId()));
+					} else {
+						group = Integer.valueOf(-1 - ungroupedEdges++);
+					}
+					newNode = groupClones.get(group);
+				}
+				if (newNode == null) {
+					newNode = workingGraph.addNodeCopy(workingNode);
+					AttributeHelper.setAttribute(newNode, LMMEConstants.ATTRIBUTE_PATH, "isClone", true);
+					attributeStore.registerCopy(newNode, workingNode);
+					original2workingNodes.get(nodeToClone).add(newNode);
+					working2originalNodes.put(newNode, nodeToClone);
+					if (group != null) {
+						groupClones.put(group, newNode);
+					}
+				}
 				Node source, target;
 				if (edge.getSource() == workingNode) {
 					source = newNode;
@@ -184,8 +267,135 @@ public class BaseGraph {
 			}
 			workingGraph.deleteNode(workingNode);
 			working2originalNodes.remove(workingNode);
+			attributeStore.unregister(workingNode);
+		}
+		updateLists();
+	}
+	
+	/**
+	 * Adjusts the cloning in the {@link #workingGraph} such that exactly the given species are cloned.
+	 * <p>
+	 * In {@link CloningMode#PER_EDGE} mode, only the species whose cloning status changes are touched. As the reaction groups depend on the whole set of
+	 * cloned species, all species are restored and cloned again in {@link CloningMode#PER_REACTION_GROUP} mode or if the mode has changed.
+	 * 
+	 * @param clonableSpecies
+	 *           A list of species from the originalGraph that are to
+	 *           be cloned in the working copy.
+	 * @param cloningMode
+	 *           the way in which the species are cloned
+	 */
+	public void setClonedSpecies(List<Node> clonableSpecies, CloningMode cloningMode) {
+		if (cloningMode != this.cloningMode || cloningMode == CloningMode.PER_REACTION_GROUP) {
+			resetWorkingGraph();
+			cloneSpecies(clonableSpecies, cloningMode);
+			return;
+		}
+		HashSet<Node> requestedSpecies = new HashSet<>(clonableSpecies);
+		ArrayList<Node> speciesToRestore = new ArrayList<>();
+		for (Node clonedNode : clonedSpecies) {
+			if (!requestedSpecies.contains(clonedNode)) {
+				speciesToRestore.add(clonedNode);
+			}
+		}
+		for (Node nodeToRestore : speciesToRestore) {
+			restoreSpecies(nodeToRestore);
+		}
+		cloneSpecies(clonableSpecies, cloningMode);
+	}
+	
+	/**
+	 * Removes all clones from the {@link #workingGraph}, such that it corresponds to the {@link #originalGraph} again.
+	 */
+	public void resetWorkingGraph() {
+		if (!clonedSpecies.isEmpty()) {
+			restoreAllSpecies();
+			updateLists();
+		}
+	}
+	
+	private void restoreAllSpecies() {
+		for (Node nodeToRestore : new ArrayList<>(clonedSpecies)) {
+			restoreSpecies(nodeToRestore);
 		}
-		LMMEController.getInstance().getCurrentSession().getBaseGraph().updateLists();
+	}
+	
+	/**
+	 * Replaces the clones of the given species in the {@link #workingGraph} by a single node again.
+	 * <p>
+	 * The restored node is copied from one of the clones, such that the attributes that have been assigned to the working nodes are kept. The lists are
+	 * not updated by this method.
+	 * 
+	 * @param originalSpecies
+	 *           the species from the {@link #originalGraph} to be restored
+	 */
+	private void restoreSpecies(Node originalSpecies) {
+		ArrayList<Node> clones = original2workingNodes.get(originalSpecies);
+		Node restoredNode;
+		if (clones.isEmpty()) {
+			restoredNode = workingGraph.addNodeCopy(originalSpecies);
+			attributeStore.registerCopy(restoredNode, originalSpecies);
+		} else {
+			restoredNode = workingGraph.addNodeCopy(clones.get(0));
+			AttributeHelper.deleteAttribute(restoredNode, LMMEConstants.ATTRIBUTE_PATH, "isClone");
+			attributeStore.registerCopy(restoredNode, clones.get(0));
+		}
+		working2originalNodes.put(restoredNode, originalSpecies);
+		for (Node clone : clones) {
+			for (Edge edge : clone.getEdges()) {
+				Node source = edge.getSource() == clone ? restoredNode : edge.getSource();
+				Node target = edge.getTarget() == clone ? restoredNode : edge.getTarget();
+				workingGraph.addEdgeCopy(edge, source, target);
+			}
+			workingGraph.deleteNode(clone);
+			working2originalNodes.remove(clone);
+			attributeStore.unregister(clone);
+		}
+		clones.clear();
+		clones.add(restoredNode);
+		clonedSpecies.remove(originalSpecies);
+	}
+	
+	/**
+	 * Removes the lmme attribute with the given name from all nodes in the {@link #workingGraph}.
+	 * 
+	 * @param attributeName
+	 *           the name of the attribute to be removed
+	 */
+	public void clearAttribute(String attributeName) {
+		for (Node node : workingGraph.getNodes()) {
+			AttributeHelper.deleteAttribute(node, LMMEConstants.ATTRIBUTE_PATH, attributeName);
+		}
+		attributeStore.invalidateAttribute(attributeName);
+		attributeNotes.remove(attributeName);
+	}
+	
+	/**
+	 * Groups the reactions of the {@link #workingGraph} such that two reactions are in the same group if and only if they are connected by a path that
+	 * does not pass through any of the given species.
+	 * 
+	 * @param clonableSpecies
+	 *           the species from the originalGraph that are to be cloned
+	 * @return the reaction groups, indexed by reaction id minus {@link BaseGraphIndex#getFirstReactionId()}
+	 */
+	private UnionFind determineReactionGroups(List<Node> clonableSpecies) {
+		BaseGraphIndex index = getIndex();
+		boolean[] clonable = new boolean[index.getNumberOfSpecies()];
+		for (Node nodeToClone : clonableSpecies) {
+			for (Node workingNode : original2workingNodes.get(nodeToClone)) {
+				int speciesId = index.getId(workingNode);
+				if (speciesId >= 0 && speciesId < index.getNumberOfSpecies()) {
+					clonable[speciesId] = true;
+				}
+			}
+		}
+		
+		UnionFind reactionGroups = new UnionFind(index.getNumberOfReactions());
+		for (int speciesId = 0; speciesId < index.getNumberOfSpecies(); speciesId++) {
+			if (!clonable[speciesId]) {
+				index.unionAdjacentReactions(speciesId, reactionGroups);
+			}
+		}
+		return reactionGroups;
 	}
 	
 	public Graph getGraph() {
@@ -236,6 +446,29 @@ public class BaseGraph {
 		return processedNotes;
 	}
 	
+	/**
+	 * Gets the name of the note that has been read into the attribute with the given name.
+	 * 
+	 * @param attributeName
+	 *           the name of the attribute
+	 * @return the name of the note, or {@code null} if no note has been read into this attribute
+	 */
+	public String getNoteOfAttribute(String attributeName) {
+		return attributeNotes.get(attributeName);
+	}
+	
+	/**
+	 * Records that the note with the given name has been read into the attribute with the given name.
+	 * 
+	 * @param attributeName
+	 *           the name of the attribute
+	 * @param noteName
+	 *           the name of the note
+	 */
+	public void setNoteOfAttribute(String attributeName, String noteName) {
+		attributeNotes.put(attributeName, noteName);
+	}
+	
 	/**
 	 * Returns the number of species in the {@link #originalGraph} having at least the specified degree.
 	 * 
@@ -259,8 +492,8 @@ public class BaseGraph {
 	 */
 	public ArrayList<Node> getOriginalSpeciesWithDegreeAtLeast(int degree) {
 		ArrayList<Node> res = new ArrayList<>();
-		for (Node node : getOriginalGraph().getNodes()) {
-			if ((node.getDegree() >= degree) && (LMMETools.getInstance().isSpecies(node))) {
+		for (Node node : originalSpeciesNodes) {
+			if (node.getDegree() >= degree) {
 				res.add(node);
 			}
 		}
@@ -275,10 +508,11 @@ public class BaseGraph {
 	 * @return list of species from the working graph that have at least the specified degree
 	 */
 	public ArrayList<Node> getSpeciesWithDegreeAtLeast(int degree) {
+		BaseGraphIndex index = getIndex();
 		ArrayList<Node> res = new ArrayList<>();
-		for (Node node : getGraph().getNodes()) {
-			if ((node.getDegree() >= degree) && (LMMETools.getInstance().isSpecies(node))) {
-				res.add(node);
+		for (int speciesId = 0; speciesId < index.getNumberOfSpecies(); speciesId++) {
+			if (index.getDegree(speciesId) >= degree) {
+				res.add(index.getNode(speciesId));
 			}
 		}
 		return res;
@@ -327,21 +561,58 @@ public class BaseGraph {
 		return originalReactionNodes;
 	}
 	
+	/**
+	 * Gets the int-indexed representation of the {@link #workingGraph}.
+	 * <p>
+	 * The index is built on first access and kept until the next call of {@link #updateLists()}.
+	 * 
+	 * @return the index of the {@link #workingGraph}
+	 */
+	public synchronized BaseGraphIndex getIndex() {
+		if (index == null) {
+			index = new BaseGraphIndex(speciesNodes, reactionNodes, attributeStore);
+		}
+		return index;
+	}
+	
+	/**
+	 * Gets the int-indexed representation of the {@link #originalGraph}.
+	 * 
+	 * @return the index of the {@link #originalGraph}
+	 */
+	public synchronized BaseGraphIndex getOriginalIndex() {
+		if (originalIndex == null) {
+			originalIndex = new BaseGraphIndex(originalSpeciesNodes, originalReactionNodes, attributeStore);
+		}
+		return originalIndex;
+	}
+	
 	/**
 	 * Updates the species and reaction lists.
 	 * <p>
 	 * Needs to be called whenever a species or reaction has been deleted or added.
 	 */
-	public void updateLists() {
+	public synchronized void updateLists() {
+		this.index = null;
 		this.speciesNodes.clear();
 		this.reactionNodes.clear();
 		for (Node node : this.getGraph().getNodes()) {
-			if (LMMETools.getInstance().isSpecies(node)) {
+			LMMEAttributeStore.NodeRole role = attributeStore.getRole(node);
+			if (role == LMMEAttributeStore.NodeRole.SPECIES) {
 				speciesNodes.add(node);
-			} else if (LMMETools.getInstance().isReaction(node)) {
+			} else if (role == LMMEAttributeStore.NodeRole.REACTION) {
 				reactionNodes.add(node);
 			}
 		}
 	}
 	
+	/**
+	 * Gets the store that caches the attributes of the nodes in the {@link #originalGraph} and the {@link #workingGraph}.
+	 * 
+	 * @return the attribute store of this graph
+	 */
+	public LMMEAttributeStore getAttributeStore() {
+		return attributeStore;
+	}
+	
 }
@@ -0,0 +1,329 @@
+/*******************************************************************************
+ * LMME is a VANTED Add-on for the exploration of large metabolic models.
+ * Copyright (C) 2020 Chair for Life Science Informatics, University of Konstanz
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package org.vanted.addons.lmme.graphs;
+
+import java.util.HashMap;
+import java.util.List;
+
+import org.graffiti.graph.Edge;
+import org.graffiti.graph.Node;
+import org.vanted.addons.lmme.core.LMMEAttributeStore;
+
+/**
+ * An immutable, array-based index of the bipartite species/reaction graph.
+ * <p>
+ * Every species and every reaction is assigned a dense integer id. Species occupy the ids {@code 0} to {@code getNumberOfSpecies() - 1},
+ * reactions the ids {@code getFirstReactionId()} to {@code getNumberOfNodes() - 1}. The directed adjacency is stored in compressed sparse row (CSR) form:
+ * the in-neighbors of node {@code v} are {@code getInNeighbors()[getInOffsets()[v]]} to {@code getInNeighbors()[getInOffsets()[v + 1] - 1]}, and
+ * analogously for the out-neighbors. The {@code Edge} objects are stored in parallel arrays, such that algorithms operating on the ids can map their
+ * results back to the VANTED graph.
+ * <p>
+ * The arrays returned by the getters are the internal arrays of the index and must not be modified. An index reflects the state of the nodes it has
+ * been built from and needs to be rebuilt whenever nodes or edges are added or deleted, see {@link BaseGraph#getIndex()}.
+ * 
+ * @author Michael Aichem
+ */
+public class BaseGraphIndex {
+	
+	public static final int ROLE_SPECIES = 1;
+	public static final int ROLE_REACTION = 2;
+	
+	/**
+	 * The compartment id of nodes that have no compartment assigned.
+	 */
+	public static final int NO_COMPARTMENT = LMMEAttributeStore.NO_COMPARTMENT;
+	
+	private final Node[] nodes;
+	private final HashMap<Node, Integer> nodeIds;
+	
+	private final int numberOfSpecies;
+	
+	private final int[] roles;
+	private final int[] compartments;
+	private final String[] compartmentNames;
+	
+	private final int[] inOffsets;
+	private final int[] inNeighbors;
+	private final Edge[] inEdges;
+	private final int[] outOffsets;
+	private final int[] outNeighbors;
+	private final Edge[] outEdges;
+	
+	/**
+	 * Builds the index for the given species and reactions.
+	 * <p>
+	 * Only edges between the given nodes are taken into account.
+	 * 
+	 * @param speciesNodes
+	 *           the species nodes to be indexed
+	 * @param reactionNodes
+	 *           the reaction nodes to be indexed
+	 * @param attributeStore
+	 *           the store from which the compartments are taken
+	 */
+	public BaseGraphIndex(List<Node> speciesNodes, List<Node> reactionNodes, LMMEAttributeStore attributeStore) {
+		
+		this.numberOfSpecies = speciesNodes.size();
+		int numberOfNodes = speciesNodes.size() + reactionNodes.size();
+		
+		this.nodes = new Node[numberOfNodes];
+		this.nodeIds = new HashMap<>(numberOfNodes * 2);
+		this.roles = new int[numberOfNodes];
+		this.compartments = new int[numberOfNodes];
+		
+		int id = 0;
+		for (Node speciesNode : speciesNodes) {
+			nodes[id] = speciesNode;
+			nodeIds.put(speciesNode, Integer.valueOf(id));
+			roles[id] = ROLE_SPECIES;
+			compartments[id] = attributeStore.getCompartmentId(speciesNode);
+			id++;
+		}
+		for (Node reactionNode : reactionNodes) {
+			nodes[id] = reactionNode;
+			nodeIds.put(reactionNode, Integer.valueOf(id));
+			roles[id] = ROLE_REACTION;
+			compartments[id] = NO_COMPARTMENT;
+			id++;
+		}
+		this.compartmentNames = new String[attributeStore.getNumberOfCompartments()];
+		for (int compartmentId = 0; compartmentId < compartmentNames.length; compartmentId++) {
+			compartmentNames[compartmentId] = attributeStore.getCompartmentName(compartmentId);
+		}
+		
+		// First pass: count the degrees. Every edge of the bipartite graph is incident to exactly one reaction.
+		this.inOffsets = new int[numberOfNodes + 1];
+		this.outOffsets = new int[numberOfNodes + 1];
+		int numberOfEdges = 0;
+		for (int reactionId = numberOfSpecies; reactionId < numberOfNodes; reactionId++) {
+			Node reactionNode = nodes[reactionId];
+			for (Edge edge : reactionNode.getEdges()) {
+				if (edge.getSource() == reactionNode) {
+					Integer speciesId = nodeIds.get(edge.getTarget());
+					if (speciesId != null) {
+						outOffsets[reactionId + 1]++;
+						inOffsets[speciesId.intValue() + 1]++;
+						numberOfEdges++;
+					}
+				} else {
+					Integer speciesId = nodeIds.get(edge.getSource());
+					if (speciesId != null) {
+						inOffsets[reactionId + 1]++;
+						outOffsets[speciesId.intValue() + 1]++;
+						numberOfEdges++;
+					}
+				}
+			}
+		}
+		for (int v = 0; v < numberOfNodes; v++) {
+			inOffsets[v + 1] += inOffsets[v];
+			outOffsets[v + 1] += outOffsets[v];
+		}
+		
+		// Second pass: fill the adjacency arrays.
+		this.inNeighbors = new int[numberOfEdges];
+		this.inEdges = new Edge[numberOfEdges];
+		this.outNeighbors = new int[numberOfEdges];
+		this.outEdges = new Edge[numberOfEdges];
+		int[] inPosition = new int[numberOfNodes];
+		int[] outPosition = new int[numberOfNodes];
+		System.arraycopy(inOffsets, 0, inPosition, 0, numberOfNodes);
+		System.arraycopy(outOffsets, 0, outPosition, 0, numberOfNodes);
+		for (int reactionId = numberOfSpecies; reactionId < numberOfNodes; reactionId++) {
+			Node reactionNode = nodes[reactionId];
+			for (Edge edge : reactionNode.getEdges()) {
+				int sourceId;
+				int targetId;
+				if (edge.getSource() == reactionNode) {
+					Integer speciesId = nodeIds.get(edge.getTarget());
+					if (speciesId == null) {
+						continue;
+					}
+					sourceId = reactionId;
+					targetId = speciesId.intValue();
+				} else {
+					Integer speciesId = nodeIds.get(edge.getSource());
+					if (speciesId == null) {
+						continue;
+					}
+					sourceId = speciesId.intValue();
+					targetId = reactionId;
+				}
+				outNeighbors[outPosition[sourceId]] = targetId;
+				outEdges[outPosition[sourceId]++] = edge;
+				inNeighbors[inPosition[targetId]] = sourceId;
+				inEdges[inPosition[targetId]++] = edge;
+			}
+		}
+	}
+	
+	/**
+	 * Gets the id of the given node.
+	 * 
+	 * @param node
+	 *           the node
+	 * @return the id of the given node, or -1 if the node is not contained in this index
+	 */
+	public int getId(Node node) {
+		Integer id = nodeIds.get(node);
+		return id == null ? -1 : id.intValue();
+	}
+	
+	/**
+	 * Gets the node with the given id.
+	 * 
+	 * @param id
+	 *           the id of the node
+	 * @return the node with the given id
+	 */
+	public Node getNode(int id) {
+		return nodes[id];
+	}
+	
+	public int getNumberOfNodes() {
+		return nodes.length;
+	}
+	
+	public int getNumberOfSpecies() {
+		return numberOfSpecies;
+	}
+	
+	public int getNumberOfReactions() {
+		return nodes.length - numberOfSpecies;
+	}
+	
+	/**
+	 * Gets the id of the first reaction. Reactions occupy all ids from this one up to {@link #getNumberOfNodes()} - 1.
+	 * 
+	 * @return the id of the first reaction
+	 */
+	public int getFirstReactionId() {
+		return numberOfSpecies;
+	}
+	
+	public int getNumberOfEdges() {
+		return outNeighbors.length;
+	}
+	
+	/**
+	 * Gets the role of the node with the given id, either {@link #ROLE_SPECIES} or {@link #ROLE_REACTION}.
+	 * 
+	 * @param id
+	 *           the id of the node
+	 * @return the role of the node
+	 */
+	public int getRole(int id) {
+		return roles[id];
+	}
+	
+	public boolean isSpecies(int id) {
+		return roles[id] == ROLE_SPECIES;
+	}
+	
+	public boolean isReaction(int id) {
+		return roles[id] == ROLE_REACTION;
+	}
+	
+	/**
+	 * Gets the compartment id of the node with the given id.
+	 * 
+	 * @param id
+	 *           the id of the node
+	 * @return the compartment id, or {@link #NO_COMPARTMENT} if the node has no compartment assigned
+	 */
+	public int getCompartment(int id) {
+		return compartments[id];
+	}
+	
+	/**
+	 * Gets the SBML compartment name for the given compartment id.
+	 * 
+	 * @param compartmentId
+	 *           the compartment id
+	 * @return the SBML compartment name
+	 */
+	public String getCompartmentName(int compartmentId) {
+		return compartmentNames[compartmentId];
+	}
+	
+	public int getNumberOfCompartments() {
+		return compartmentNames.length;
+	}
+	
+	public int getInDegree(int id) {
+		return inOffsets[id + 1] - inOffsets[id];
+	}
+	
+	public int getOutDegree(int id) {
+		return outOffsets[id + 1] - outOffsets[id];
+	}
+	
+	public int getDegree(int id) {
+		return getInDegree(id) + getOutDegree(id);
+	}
+	
+	/**
+	 * Merges the sets of all reactions that are adjacent to the given species.
+	 * 
+	 * @param speciesId
+	 *           the id of the species
+	 * @param reactionSets
+	 *           a union-find structure over the reactions, indexed by reaction id minus {@link #getFirstReactionId()}
+	 */
+	public void unionAdjacentReactions(int speciesId, UnionFind reactionSets) {
+		int firstReaction = -1;
+		for (int k = inOffsets[speciesId]; k < inOffsets[speciesId + 1]; k++) {
+			int reaction = inNeighbors[k] - numberOfSpecies;
+			if (firstReaction == -1) {
+				firstReaction = reaction;
+			} else {
+				reactionSets.union(firstReaction, reaction);
+			}
+		}
+		for (int k = outOffsets[speciesId]; k < outOffsets[speciesId + 1]; k++) {
+			int reaction = outNeighbors[k] - numberOfSpecies;
+			if (firstReaction == -1) {
+				firstReaction = reaction;
+			} else {
+				reactionSets.union(firstReaction, reaction);
+			}
+		}
+	}
+	
+	public int[] getInOffsets() {
+		return inOffsets;
+	}
+	
+	public int[] getInNeighbors() {
+		return inNeighbors;
+	}
+	
+	public Edge[] getInEdges() {
+		return inEdges;
+	}
+	
+	public int[] getOutOffsets() {
+		return outOffsets;
+	}
+	
+	public int[] getOutNeighbors() {
+		return outNeighbors;
+	}
+	
+	public Edge[] getOutEdges() {
+		return outEdges;
+	}
+	
+}
@@ -0,0 +1,46 @@
+/*******************************************************************************
+ * LMME is a VANTED Add-on for the exploration of large metabolic models.
+ * Copyright (C) 2020 Chair for Life Science Informatics, University of Konstanz
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package org.vanted.addons.lmme.graphs;
+
+/**
+ * The ways in which species can be cloned in the working graph, see {@link BaseGraph#cloneSpecies(java.util.List, CloningMode)}.
+ * 
+ * @author Michael Aichem
+ */
+public enum CloningMode {
+	
+	/**
+	 * One clone is created for every edge the species is incident to.
+	 */
+	PER_EDGE("One clone per edge"),
+	
+	/**
+	 * One clone is created for every group of reactions the species is connected to. Two reactions belong to the same group if they are connected by a
+	 * path that does not pass through any of the species to be cloned.
+	 */
+	PER_REACTION_GROUP("One clone per reaction group");
+	
+	private final String description;
+	
+	private CloningMode(String description) {
+		this.description = description;
+	}
+	
+	@Override
+	public String toString() {
+		return description;
+	}
+	
+}
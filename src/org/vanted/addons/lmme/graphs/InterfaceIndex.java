@@ -0,0 +1,416 @@
+/*******************************************************************************
+ * LMME is a VANTED Add-on for the exploration of large metabolic models.
+ * Copyright (C) 2020 Chair for Life Science Informatics, University of Konstanz
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package org.vanted.addons.lmme.graphs;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
+
+import org.graffiti.graph.Node;
+import org.vanted.addons.lmme.decomposition.MMDecomposition;
+
+/**
+ * An immutable, sparse index of the interfaces between the subsystems of a decomposition.
+ * <p>
+ * A species is an interface between two subsystems if it is adjacent to reactions of both of them. Only the pairs of subsystems that share at least
+ * one interface are stored, each unordered pair once. Subsystems are identified by their position in {@link MMDecomposition#getSubsystems()}, pairs
+ * by dense integer ids in lexicographic order of their subsystem ids, such that {@code getFirstSubsystem(p) < getSecondSubsystem(p)}.
+ * <p>
+ * The interfaces of pair {@code p} are the species ids {@code getPairSpecies()[getPairOffsets()[p]]} to
+ * {@code getPairSpecies()[getPairOffsets()[p + 1] - 1]} of the {@link BaseGraphIndex} the interface index has been built from, in increasing order.
+ * Analogously, the pairs that subsystem {@code s} belongs to are {@code getNeighborPairs()[getNeighborOffsets()[s]]} to
+ * {@code getNeighborPairs()[getNeighborOffsets()[s + 1] - 1]}, ordered by the id of the other subsystem. The arrays returned by the getters are
+ * the internal arrays of the index and must not be modified.
+ * <p>
+ * The index is built by a map/reduce over contiguous chunks of species on the threads of the common {@link ForkJoinPool}. Each chunk collects the
+ * interfaces of its species and its distinct pairs, the pairs of all chunks are merged, and each chunk then writes its species to its own ranges of
+ * the pair lists.
+ * 
+ * @author Michael Aichem
+ */
+public class InterfaceIndex {
+	
+	/**
+	 * The minimum number of species per chunk, below which the interfaces are not determined in parallel.
+	 */
+	private static final int MIN_CHUNK_SIZE = 1024;
+	
+	private final BaseGraphIndex index;
+	
+	private final ArrayList<SubsystemGraph> subsystems;
+	private final HashMap<SubsystemGraph, Integer> subsystemIds;
+	
+	private final int[] firstSubsystems;
+	private final int[] secondSubsystems;
+	private final HashMap<Long, Integer> pairIds;
+	
+	private final int[] pairOffsets;
+	private final int[] pairSpecies;
+	
+	private final int[] neighborOffsets;
+	private final int[] neighborPairs;
+	
+	/**
+	 * A contiguous range of species whose interfaces are determined by one thread.
+	 */
+	private static class SpeciesChunk {
+		
+		private final int start;
+		private final int end;
+		
+		private long[] entryPairs = new long[16];
+		private int[] entrySpecies = new int[16];
+		private int numberOfEntries = 0;
+		
+		private long[] distinctPairs;
+		
+		private int[] entryPairIds;
+		
+		/**
+		 * First the number of entries of each pair, then the position of the next entry of each pair in {@link InterfaceIndex#pairSpecies}.
+		 */
+		private int[] pairPositions;
+		
+		private SpeciesChunk(int start, int end) {
+			this.start = start;
+			this.end = end;
+		}
+		
+		/**
+		 * Collects one (pair, species) entry per interface, in increasing order of the species.
+		 */
+		private void collectEntries(BaseGraphIndex index, int[][] reactionSubsystems, int numberOfSubsystems) {
+			int firstReactionId = index.getFirstReactionId();
+			int[] inOffsets = index.getInOffsets();
+			int[] inNeighbors = index.getInNeighbors();
+			int[] outOffsets = index.getOutOffsets();
+			int[] outNeighbors = index.getOutNeighbors();
+			
+			// stamp[s] == speciesId + 1 marks subsystem s as already collected for the current species
+			int[] stamp = new int[numberOfSubsystems];
+			int[] containingSystems = new int[numberOfSubsystems];
+			for (int speciesId = start; speciesId < end; speciesId++) {
+				int numberOfContainingSystems = 0;
+				for (int pass = 0; pass < 2; pass++) {
+					int[] offsets = pass == 0 ? inOffsets : outOffsets;
+					int[] neighbors = pass == 0 ? inNeighbors : outNeighbors;
+					for (int k = offsets[speciesId]; k < offsets[speciesId + 1]; k++) {
+						for (int subsystemId : reactionSubsystems[neighbors[k] - firstReactionId]) {
+							if (stamp[subsystemId] != speciesId + 1) {
+								stamp[subsystemId] = speciesId + 1;
+								containingSystems[numberOfContainingSystems++] = subsystemId;
+							}
+						}
+					}
+				}
+				for (int k = 0; k < numberOfContainingSystems; k++) {
+					for (int l = k + 1; l < numberOfContainingSystems; l++) {
+						if (numberOfEntries == entryPairs.length) {
+							entryPairs = Arrays.copyOf(entryPairs, 2 * numberOfEntries);
+							entrySpecies = Arrays.copyOf(entrySpecies, 2 * numberOfEntries);
+						}
+						entryPairs[numberOfEntries] = getPairKey(containingSystems[k], containingSystems[l], numberOfSubsystems);
+						entrySpecies[numberOfEntries++] = speciesId;
+					}
+				}
+			}
+			
+			long[] sortedPairs = Arrays.copyOf(entryPairs, numberOfEntries);
+			Arrays.sort(sortedPairs);
+			int numberOfDistinctPairs = 0;
+			for (int i = 0; i < sortedPairs.length; i++) {
+				if (i == 0 || sortedPairs[i] != sortedPairs[i - 1]) {
+					sortedPairs[numberOfDistinctPairs++] = sortedPairs[i];
+				}
+			}
+			this.distinctPairs = Arrays.copyOf(sortedPairs, numberOfDistinctPairs);
+		}
+		
+		/**
+		 * Determines the pair id of each entry and counts the entries of each pair.
+		 */
+		private void countPairs(long[] sortedPairKeys) {
+			this.entryPairIds = new int[numberOfEntries];
+			this.pairPositions = new int[sortedPairKeys.length];
+			for (int i = 0; i < numberOfEntries; i++) {
+				entryPairIds[i] = Arrays.binarySearch(sortedPairKeys, entryPairs[i]);
+				pairPositions[entryPairIds[i]]++;
+			}
+		}
+		
+		/**
+		 * Writes the species of the entries to their positions.
+		 */
+		private void distributeSpecies(int[] pairSpecies) {
+			for (int i = 0; i < numberOfEntries; i++) {
+				pairSpecies[pairPositions[entryPairIds[i]]++] = entrySpecies[i];
+			}
+		}
+	}
+	
+	/**
+	 * Builds the interface index of the given decomposition.
+	 * 
+	 * @param decomposition
+	 *           the decomposition
+	 * @param index
+	 *           the index of the base graph whose reactions have been decomposed
+	 */
+	public InterfaceIndex(MMDecomposition decomposition, BaseGraphIndex index) {
+		this.index = index;
+		this.subsystems = new ArrayList<>(decomposition.getSubsystems());
+		int numberOfSubsystems = subsystems.size();
+		
+		this.subsystemIds = new HashMap<>();
+		for (int i = 0; i < numberOfSubsystems; i++) {
+			subsystemIds.put(subsystems.get(i), Integer.valueOf(i));
+		}
+		
+		// Resolve the subsystems of each reaction only once.
+		int firstReactionId = index.getFirstReactionId();
+		int[][] reactionSubsystems = new int[index.getNumberOfReactions()][];
+		IntStream.range(0, reactionSubsystems.length).parallel().forEach(r -> {
+			ArrayList<SubsystemGraph> reactionSubsystemList = decomposition.getSubsystemsForReaction(index.getNode(firstReactionId + r));
+			int[] ids = new int[reactionSubsystemList == null ? 0 : reactionSubsystemList.size()];
+			for (int k = 0; k < ids.length; k++) {
+				ids[k] = subsystemIds.get(reactionSubsystemList.get(k)).intValue();
+			}
+			reactionSubsystems[r] = ids;
+		});
+		
+		// Map: every chunk of species collects its (pair, species) entries and its distinct pairs.
+		int numberOfSpecies = index.getNumberOfSpecies();
+		int numberOfChunks = Math.max(1, Math.min(ForkJoinPool.commonPool().getParallelism(), numberOfSpecies / MIN_CHUNK_SIZE));
+		ArrayList<SpeciesChunk> chunks = new ArrayList<>();
+		for (int c = 0; c < numberOfChunks; c++) {
+			chunks.add(new SpeciesChunk((int) ((long) numberOfSpecies * c / numberOfChunks),
+					(int) ((long) numberOfSpecies * (c + 1) / numberOfChunks)));
+		}
+		runChunks(chunks, chunk -> chunk.collectEntries(index, reactionSubsystems, numberOfSubsystems));
+		
+		// Reduce: assign the pair ids in lexicographic order.
+		int numberOfCandidateKeys = 0;
+		for (SpeciesChunk chunk : chunks) {
+			numberOfCandidateKeys += chunk.distinctPairs.length;
+		}
+		long[] pairKeys = new long[numberOfCandidateKeys];
+		int position = 0;
+		for (SpeciesChunk chunk : chunks) {
+			System.arraycopy(chunk.distinctPairs, 0, pairKeys, position, chunk.distinctPairs.length);
+			position += chunk.distinctPairs.length;
+		}
+		Arrays.sort(pairKeys);
+		int numberOfPairs = 0;
+		for (int i = 0; i < pairKeys.length; i++) {
+			if (i == 0 || pairKeys[i] != pairKeys[i - 1]) {
+				pairKeys[numberOfPairs++] = pairKeys[i];
+			}
+		}
+		long[] sortedPairKeys = Arrays.copyOf(pairKeys, numberOfPairs);
+		this.firstSubsystems = new int[numberOfPairs];
+		this.secondSubsystems = new int[numberOfPairs];
+		this.pairIds = new HashMap<>(numberOfPairs * 2);
+		for (int p = 0; p < numberOfPairs; p++) {
+			firstSubsystems[p] = (int) (sortedPairKeys[p] / numberOfSubsystems);
+			secondSubsystems[p] = (int) (sortedPairKeys[p] % numberOfSubsystems);
+			pairIds.put(Long.valueOf(sortedPairKeys[p]), Integer.valueOf(p));
+		}
+		
+		// Every chunk counts its species per pair, from which the chunks get disjoint ranges of the pair lists.
+		runChunks(chunks, chunk -> chunk.countPairs(sortedPairKeys));
+		this.pairOffsets = new int[numberOfPairs + 1];
+		for (int p = 0; p < numberOfPairs; p++) {
+			position = pairOffsets[p];
+			for (SpeciesChunk chunk : chunks) {
+				int count = chunk.pairPositions[p];
+				chunk.pairPositions[p] = position;
+				position += count;
+			}
+			pairOffsets[p + 1] = position;
+		}
+		this.pairSpecies = new int[pairOffsets[numberOfPairs]];
+		// As the chunks are ordered, the species of each pair are in increasing order.
+		runChunks(chunks, chunk -> chunk.distributeSpecies(pairSpecies));
+		
+		this.neighborOffsets = new int[numberOfSubsystems + 1];
+		for (int p = 0; p < numberOfPairs; p++) {
+			neighborOffsets[firstSubsystems[p] + 1]++;
+			neighborOffsets[secondSubsystems[p] + 1]++;
+		}
+		for (int s = 0; s < numberOfSubsystems; s++) {
+			neighborOffsets[s + 1] += neighborOffsets[s];
+		}
+		this.neighborPairs = new int[2 * numberOfPairs];
+		int[] neighborPosition = Arrays.copyOf(neighborOffsets, numberOfSubsystems);
+		for (int p = 0; p < numberOfPairs; p++) {
+			neighborPairs[neighborPosition[firstSubsystems[p]]++] = p;
+			neighborPairs[neighborPosition[secondSubsystems[p]]++] = p;
+		}
+	}
+	
+	/**
+	 * Runs the given step for all chunks, on the threads of the common {@link ForkJoinPool} if there are several chunks.
+	 * 
+	 * @param chunks
+	 *           the chunks
+	 * @param step
+	 *           the step to be run for each chunk
+	 */
+	private static void runChunks(ArrayList<SpeciesChunk> chunks, Consumer<SpeciesChunk> step) {
+		if (chunks.size() == 1) {
+			step.accept(chunks.get(0));
+			return;
+		}
+		ArrayList<Callable<Void>> tasks = new ArrayList<>();
+		for (SpeciesChunk chunk : chunks) {
+			tasks.add(new Callable<Void>() {
+				public Void call() {
+					step.accept(chunk);
+					return null;
+				}
+			});
+		}
+		try {
+			for (Future<Void> future : ForkJoinPool.commonPool().invokeAll(tasks)) {
+				future.get();
+			}
+		} catch (InterruptedException | ExecutionException e) {
+			throw new IllegalStateException("Determination of the interfaces failed.", e);
+		}
+	}
+	
+	private static long getPairKey(int subsystemId1, int subsystemId2, int numberOfSubsystems) {
+		return (long) Math.min(subsystemId1, subsystemId2) * numberOfSubsystems + Math.max(subsystemId1, subsystemId2);
+	}
+	
+	private long getPairKey(int subsystemId1, int subsystemId2) {
+		return getPairKey(subsystemId1, subsystemId2, subsystems.size());
+	}
+	
+	/**
+	 * Gets the id of the given subsystem.
+	 * 
+	 * @param subsystem
+	 *           the subsystem
+	 * @return the id of the subsystem, or -1 if it is not part of the indexed decomposition
+	 */
+	public int getSubsystemId(SubsystemGraph subsystem) {
+		Integer id = subsystemIds.get(subsystem);
+		return id == null ? -1 : id.intValue();
+	}
+	
+	/**
+	 * Gets the subsystem with the given id.
+	 * 
+	 * @param subsystemId
+	 *           the id of the subsystem
+	 * @return the subsystem with the given id
+	 */
+	public SubsystemGraph getSubsystem(int subsystemId) {
+		return subsystems.get(subsystemId);
+	}
+	
+	/**
+	 * Gets the id of the pair of the two given subsystems, in either order.
+	 * 
+	 * @param subsystemId1
+	 *           the id of the first subsystem
+	 * @param subsystemId2
+	 *           the id of the second subsystem
+	 * @return the id of the pair, or -1 if the subsystems do not share any interface
+	 */
+	public int getPair(int subsystemId1, int subsystemId2) {
+		if (subsystemId1 == subsystemId2) {
+			return -1;
+		}
+		Integer id = pairIds.get(Long.valueOf(getPairKey(subsystemId1, subsystemId2)));
+		return id == null ? -1 : id.intValue();
+	}
+	
+	/**
+	 * Gets the subsystem of the given pair that is not the given one.
+	 * 
+	 * @param pair
+	 *           the id of the pair
+	 * @param subsystemId
+	 *           the id of one of the subsystems of the pair
+	 * @return the id of the other subsystem of the pair
+	 */
+	public int getOtherSubsystem(int pair, int subsystemId) {
+		return firstSubsystems[pair] == subsystemId ? secondSubsystems[pair] : firstSubsystems[pair];
+	}
+	
+	/**
+	 * Gets the interfaces of the given pair.
+	 * 
+	 * @param pair
+	 *           the id of the pair
+	 * @return a new list of the interface species, in increasing order of their ids
+	 */
+	public ArrayList<Node> getInterfaceNodes(int pair) {
+		ArrayList<Node> interfaceNodes = new ArrayList<>(pairOffsets[pair + 1] - pairOffsets[pair]);
+		for (int k = pairOffsets[pair]; k < pairOffsets[pair + 1]; k++) {
+			interfaceNodes.add(index.getNode(pairSpecies[k]));
+		}
+		return interfaceNodes;
+	}
+	
+	public int getNumberOfInterfaces(int pair) {
+		return pairOffsets[pair + 1] - pairOffsets[pair];
+	}
+	
+	public int getFirstSubsystem(int pair) {
+		return firstSubsystems[pair];
+	}
+	
+	public int getSecondSubsystem(int pair) {
+		return secondSubsystems[pair];
+	}
+	
+	public int getNumberOfSubsystems() {
+		return subsystems.size();
+	}
+	
+	public int getNumberOfPairs() {
+		return firstSubsystems.length;
+	}
+	
+	public int[] getPairOffsets() {
+		return pairOffsets;
+	}
+	
+	public int[] getPairSpecies() {
+		return pairSpecies;
+	}
+	
+	public int[] getNeighborOffsets() {
+		return neighborOffsets;
+	}
+	
+	public int[] getNeighborPairs() {
+		return neighborPairs;
+	}
+	
+	public BaseGraphIndex getBaseGraphIndex() {
+		return index;
+	}
+	
+}
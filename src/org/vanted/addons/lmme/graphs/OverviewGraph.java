@@ -18,25 +18,22 @@ import java.awt.Color;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.Random;
-import java.util.Set;
 
 import org.AttributeHelper;
+import org.Vector2d;
 import org.graffiti.editor.MainFrame;
 import org.graffiti.graph.AdjListGraph;
 import org.graffiti.graph.Edge;
 import org.graffiti.graph.Graph;
 import org.graffiti.graph.Node;
-import org.graffiti.plugins.inspectors.defaults.DefaultEditPanel;
 import org.graffiti.selection.SelectionEvent;
 import org.graffiti.selection.SelectionListener;
 import org.graffiti.session.EditorSession;
 import org.vanted.addons.lmme.core.LMMEController;
-import org.vanted.addons.lmme.core.LMMETools;
 import org.vanted.addons.lmme.decomposition.MMDecomposition;
+import org.vanted.addons.lmme.ui.AttributeUpdateBatch;
 import org.vanted.addons.lmme.ui.LMMETab;
-import org.vanted.addons.lmme.ui.LMMEViewManagement;
 
 /**
  * Maintains the generated overview graph, which models the relationships between the individual subsystems.
@@ -54,7 +51,10 @@ public class OverviewGraph {
 	
 	private boolean containsInterfaceNodes;
 	
-	private HashMap<SubsystemGraph, HashMap<SubsystemGraph, ArrayList<Node>>> interfaceMap;
+	/**
+	 * The interfaces between the subsystems, see {@link InterfaceIndex}.
+	 */
+	private InterfaceIndex interfaceIndex;
 	
 	// private ArrayList<String> interfaces = new ArrayList<>();
 	
@@ -87,6 +87,8 @@ public class OverviewGraph {
 	 * 
 	 * @param decomposition
 	 *           the underlying decomposition
+	 * @param showInterfaces
+	 *           whether the interfaces are shown as nodes, which can be changed later by {@link #setShowInterfaces(boolean)}
 	 */
 	public OverviewGraph(MMDecomposition decomposition, boolean showInterfaces) {
 		this.nodeToSubsystemMap = new HashMap<>();
@@ -97,7 +99,8 @@ public class OverviewGraph {
 		Random random = new Random();
 		
 		this.decomposition = decomposition;
-		determineInterfaces();
+		this.interfaceIndex = new InterfaceIndex(decomposition,
+				LMMEController.getInstance().getCurrentSession().getBaseGraph().getIndex());
 		
 		this.graph = new AdjListGraph();
 		
@@ -114,55 +117,109 @@ public class OverviewGraph {
 			nodeToSubsystemMap.put(subsystemNode, subsystem);
 		}
 		
-		for (int i = 0; i < this.decomposition.getSubsystems().size(); i++) {
-			for (int j = i + 1; j < this.decomposition.getSubsystems().size(); j++) {
-				SubsystemGraph subsystem1 = this.decomposition.getSubsystems().get(i);
-				SubsystemGraph subsystem2 = this.decomposition.getSubsystems().get(j);
-				int totalInterfaces = getInterfaceNodes(subsystem1, subsystem2).size()
-						+ getInterfaceNodes(subsystem2, subsystem1).size();
-				if (totalInterfaces > 0) {
-					Node sourceNode = subsystemToNodeMap.get(subsystem1);
-					Node targetNode = subsystemToNodeMap.get(subsystem2);
-					
-					HashSet<Node> interfaceSet = new HashSet<Node>();
-					interfaceSet.addAll(getInterfaceNodes(subsystem1, subsystem2));
-					interfaceSet.addAll(getInterfaceNodes(subsystem2, subsystem1));
-					
-					if (showInterfaces) {
-						for (Node interfaceNode : interfaceSet) {
-							if (!interfaceToNewNodeMap.containsKey(interfaceNode)) {
-								Node newInterfaceNode = graph.addNodeCopy(interfaceNode);
-								AttributeHelper.setSize(newInterfaceNode, nodeSizeInterface, nodeSizeInterface);
-								interfaceToNewNodeMap.put(interfaceNode, newInterfaceNode);
-							}
-							Node interfaceNodeOG = interfaceToNewNodeMap.get(interfaceNode);
-							if (!interfaceNodeOG.getNeighbors().contains(sourceNode)) {
-								Edge addedEdge = graph.addEdge(sourceNode, interfaceNodeOG, false,
-										AttributeHelper.getDefaultGraphicsAttributeForEdge(Color.BLACK, Color.BLACK, false));
-								AttributeHelper.setOpacity(addedEdge, 0.7);
-							}
-							if (!interfaceNodeOG.getNeighbors().contains(targetNode)) {
-								Edge addedEdge = graph.addEdge(targetNode, interfaceNodeOG, false,
-										AttributeHelper.getDefaultGraphicsAttributeForEdge(Color.BLACK, Color.BLACK, false));
-								AttributeHelper.setOpacity(addedEdge, 0.7);
-							}
-						}
-					} else {
-						ArrayList<Node> interfaces = new ArrayList<Node>();
-						interfaces.addAll(interfaceSet);
-						Edge addedEdge = graph.addEdge(sourceNode, targetNode, false,
-								AttributeHelper.getDefaultGraphicsAttributeForEdge(Color.BLACK, Color.BLACK, false));
-						edgeToInterfacesMap.put(addedEdge, interfaces);
-						AttributeHelper.setOpacity(addedEdge, 0.7);
-					}
-					
-				}
+		if (showInterfaces) {
+			addInterfaceNodes(false);
+		} else {
+			addCollapsedEdges();
+		}
+		updateEdgeThickness();
+		colorInterfaces();
+	}
+	
+	/**
+	 * Switches between the representation of the interfaces as nodes and as edges between the subsystems.
+	 * <p>
+	 * Only the interface nodes and the edges are replaced, whereas the subsystem nodes and their positions are kept. New interface nodes are placed at
+	 * the center of the subsystems they connect.
+	 * 
+	 * @param showInterfaces
+	 *           whether the interfaces shall be shown as nodes
+	 */
+	public void setShowInterfaces(boolean showInterfaces) {
+		if (showInterfaces == this.containsInterfaceNodes) {
+			return;
+		}
+		if (showInterfaces) {
+			for (Edge edge : edgeToInterfacesMap.keySet()) {
+				graph.deleteEdge(edge);
 			}
+			edgeToInterfacesMap.clear();
+			addInterfaceNodes(true);
+		} else {
+			for (Node interfaceNodeOG : interfaceToNewNodeMap.values()) {
+				graph.deleteNode(interfaceNodeOG);
+			}
+			interfaceToNewNodeMap.clear();
+			addCollapsedEdges();
 		}
+		this.containsInterfaceNodes = showInterfaces;
 		updateEdgeThickness();
 		colorInterfaces();
 	}
 	
+	/**
+	 * Adds a node for every interface and connects it to the nodes of the subsystems it lies between.
+	 * 
+	 * @param placeBetweenSubsystems
+	 *           whether the new nodes are placed at the center of their subsystem nodes, otherwise they keep the position of the interface in the base
+	 *           graph
+	 */
+	private void addInterfaceNodes(boolean placeBetweenSubsystems) {
+		// Only the pairs of subsystems that share interfaces are visited.
+		for (int pair = 0; pair < interfaceIndex.getNumberOfPairs(); pair++) {
+			Node sourceNode = subsystemToNodeMap.get(interfaceIndex.getSubsystem(interfaceIndex.getFirstSubsystem(pair)));
+			Node targetNode = subsystemToNodeMap.get(interfaceIndex.getSubsystem(interfaceIndex.getSecondSubsystem(pair)));
+			for (Node interfaceNode : interfaceIndex.getInterfaceNodes(pair)) {
+				if (!interfaceToNewNodeMap.containsKey(interfaceNode)) {
+					Node newInterfaceNode = graph.addNodeCopy(interfaceNode);
+					AttributeHelper.setSize(newInterfaceNode, nodeSizeInterface, nodeSizeInterface);
+					interfaceToNewNodeMap.put(interfaceNode, newInterfaceNode);
+				}
+				Node interfaceNodeOG = interfaceToNewNodeMap.get(interfaceNode);
+				if (!interfaceNodeOG.getNeighbors().contains(sourceNode)) {
+					Edge addedEdge = graph.addEdge(sourceNode, interfaceNodeOG, false,
+							AttributeHelper.getDefaultGraphicsAttributeForEdge(Color.BLACK, Color.BLACK, false));
+					AttributeHelper.setOpacity(addedEdge, 0.7);
+				}
+				if (!interfaceNodeOG.getNeighbors().contains(targetNode)) {
+					Edge addedEdge = graph.addEdge(targetNode, interfaceNodeOG, false,
+							AttributeHelper.getDefaultGraphicsAttributeForEdge(Color.BLACK, Color.BLACK, false));
+					AttributeHelper.setOpacity(addedEdge, 0.7);
+				}
+			}
+		}
+		if (placeBetweenSubsystems) {
+			// A small random offset keeps the interfaces of the same subsystems apart.
+			Random random = new Random();
+			for (Node interfaceNodeOG : interfaceToNewNodeMap.values()) {
+				double x = 0.0;
+				double y = 0.0;
+				for (Node subsystemNode : interfaceNodeOG.getNeighbors()) {
+					Vector2d position = AttributeHelper.getPositionVec2d(subsystemNode);
+					x += position.x;
+					y += position.y;
+				}
+				int degree = Math.max(1, interfaceNodeOG.getNeighbors().size());
+				AttributeHelper.setPosition(interfaceNodeOG, x / degree + (random.nextDouble() - 0.5) * nodeSizeInterface,
+						y / degree + (random.nextDouble() - 0.5) * nodeSizeInterface);
+			}
+		}
+	}
+	
+	/**
+	 * Adds an edge between every two subsystems that share interfaces.
+	 */
+	private void addCollapsedEdges() {
+		for (int pair = 0; pair < interfaceIndex.getNumberOfPairs(); pair++) {
+			Node sourceNode = subsystemToNodeMap.get(interfaceIndex.getSubsystem(interfaceIndex.getFirstSubsystem(pair)));
+			Node targetNode = subsystemToNodeMap.get(interfaceIndex.getSubsystem(interfaceIndex.getSecondSubsystem(pair)));
+			Edge addedEdge = graph.addEdge(sourceNode, targetNode, false,
+					AttributeHelper.getDefaultGraphicsAttributeForEdge(Color.BLACK, Color.BLACK, false));
+			edgeToInterfacesMap.put(addedEdge, interfaceIndex.getInterfaceNodes(pair));
+			AttributeHelper.setOpacity(addedEdge, 0.7);
+		}
+	}
+	
 	/**
 	 * @return the nodeSize
 	 */
@@ -201,13 +258,25 @@ public class OverviewGraph {
 	
 	/**
 	 * Gets the list of interface metabolites that lie between the two specified subsystems.
+	 * <p>
+	 * Interfaces are undirected, such that the order of the subsystems does not matter.
 	 * 
 	 * @param subsystem1
 	 * @param subsystem2
-	 * @return the list of interface metabolites between the subsystems
+	 * @return a new list of the interface metabolites between the subsystems
 	 */
 	public ArrayList<Node> getInterfaceNodes(SubsystemGraph subsystem1, SubsystemGraph subsystem2) {
-		return this.interfaceMap.get(subsystem1).get(subsystem2);
+		int pair = this.interfaceIndex.getPair(this.interfaceIndex.getSubsystemId(subsystem1), this.interfaceIndex.getSubsystemId(subsystem2));
+		return pair == -1 ? new ArrayList<>() : this.interfaceIndex.getInterfaceNodes(pair);
+	}
+	
+	/**
+	 * Gets the index of the interfaces between the subsystems.
+	 * 
+	 * @return the interface index
+	 */
+	public InterfaceIndex getInterfaceIndex() {
+		return this.interfaceIndex;
 	}
 	
 	/**
@@ -282,54 +351,6 @@ public class OverviewGraph {
 		
 	}
 	
-	/**
-	 * Determines the interfaces in the overview graph.
-	 * <p>
-	 * Interfaces in this case refers to species that act as connection between subsystems. In
-	 * this implementation, a species s is considered to be an interface between
-	 * subsystems S1 and S2 if and only if s has at least one in-neighbor from S1
-	 * and at least one out-neighbor from S2. During this method,
-	 * {@link interfaceMap} is set.
-	 */
-	private void determineInterfaces() {
-		ArrayList<SubsystemGraph> subsystems = this.decomposition.getSubsystems();
-		
-		// Initialise HashMap(s)
-		interfaceMap = new HashMap<>();
-		for (SubsystemGraph subsystem1 : subsystems) {
-			HashMap<SubsystemGraph, ArrayList<Node>> hmap = new HashMap<>();
-			for (SubsystemGraph subsystem2 : subsystems) {
-				if (subsystem2 != subsystem1) {
-					ArrayList<Node> nodeList = new ArrayList<>();
-					hmap.put(subsystem2, nodeList);
-				}
-			}
-			interfaceMap.put(subsystem1, hmap);
-		}
-		
-		for (Node speciesNode : LMMEController.getInstance().getCurrentSession().getBaseGraph().getSpeciesNodes()) {
-			
-			Set<Node> neighbours = speciesNode.getNeighbors();
-			
-			HashSet<SubsystemGraph> containingSystems = new HashSet<>();
-			for (Node reactionNode : neighbours) {
-				if (LMMETools.getInstance().isReaction(reactionNode)) {
-					containingSystems.addAll(this.decomposition.getSubsystemsForReaction(reactionNode));
-				}
-			}
-			
-			// currently, interfaces correspond to undirected relationships between subsystems.
-			// may be changed in the future.
-			for (SubsystemGraph inSystem : containingSystems) {
-				for (SubsystemGraph outSystem : containingSystems) {
-					if (inSystem != outSystem) {
-						interfaceMap.get(inSystem).get(outSystem).add(speciesNode);
-					}
-				}
-			}
-		}
-	}
-	
 	public Graph getGraph() {
 		return graph;
 	}
@@ -343,24 +364,20 @@ public class OverviewGraph {
 	 * settings in the tab.
 	 */
 	public void updateEdgeThickness() {
+		AttributeUpdateBatch batch = new AttributeUpdateBatch(graph);
 		for (Edge edge : graph.getEdges()) {
 			if (LMMEController.getInstance().getTab().getDrawEdges()) {
 				if (LMMEController.getInstance().getTab().getMapToEdgeThickness() && !containsInterfaceNodes) {
 					int totalInterfaces = edgeToInterfacesMap.get(edge).size();
-					AttributeHelper.setFrameThickNess(edge, totalInterfaces > 20 ? 20.0 : (double) totalInterfaces);
+					batch.setFrameThickness(edge, totalInterfaces > 20 ? 20.0 : (double) totalInterfaces);
 				} else {
-					AttributeHelper.setFrameThickNess(edge, 1.0);
+					batch.setFrameThickness(edge, 1.0);
 				}
 			} else {
-				AttributeHelper.setFrameThickNess(edge, -1.0);
+				batch.setFrameThickness(edge, -1.0);
 			}
 		}
-		
-		if (LMMEViewManagement.getInstance().getOverviewFrame() != null) {
-			DefaultEditPanel.issueCompleteRedrawForView(LMMEViewManagement.getInstance().getOverviewFrame().getView(),
-					LMMEViewManagement.getInstance().getOverviewFrame().getView().getGraph());
-		}
-		
+		batch.apply();
 	}
 	
 	public void colorInterfaces() {
@@ -370,6 +387,7 @@ public class OverviewGraph {
 				maxDeg = interfaceNode.getDegree();
 			}
 		}
+		AttributeUpdateBatch batch = new AttributeUpdateBatch(graph);
 		for (Node interfaceNode : this.interfaceToNewNodeMap.values()) {
 			Color c = Color.WHITE;
 			if (LMMEController.getInstance().getTab().getColorInterfaces()) {
@@ -377,8 +395,9 @@ public class OverviewGraph {
 				int frac = 255 - ((interfaceNode.getDegree() * 255) / maxDeg);
 				c = new Color(255, frac, frac);
 			}
-			AttributeHelper.setFillColor(interfaceNode, c);
+			batch.setFillColor(interfaceNode, c);
 		}
+		batch.apply();
 	}
 	
 	public int getNodeSizeSubsystem() {
@@ -0,0 +1,100 @@
+/*******************************************************************************
+ * LMME is a VANTED Add-on for the exploration of large metabolic models.
+ * Copyright (C) 2020 Chair for Life Science Informatics, University of Konstanz
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package org.vanted.addons.lmme.graphs;
+
+/**
+ * A disjoint-set forest over the integers {@code 0} to {@code n - 1} with union by size and path halving.
+ * 
+ * @author Michael Aichem
+ */
+public class UnionFind {
+	
+	private final int[] parent;
+	private final int[] size;
+	private int numberOfSets;
+	
+	/**
+	 * Creates a union-find structure in which every element forms its own set.
+	 * 
+	 * @param n
+	 *           the number of elements
+	 */
+	public UnionFind(int n) {
+		this.parent = new int[n];
+		this.size = new int[n];
+		for (int i = 0; i < n; i++) {
+			parent[i] = i;
+			size[i] = 1;
+		}
+		this.numberOfSets = n;
+	}
+	
+	/**
+	 * Finds the representative of the set containing the given element.
+	 * 
+	 * @param x
+	 *           the element
+	 * @return the representative of the set containing {@code x}
+	 */
+	public int find(int x) {
+		while (parent[x] != x) {
+			parent[x] = parent[parent[x]];
+			x = parent[x];
+		}
+		return x;
+	}
+	
+	/**
+	 * Merges the sets containing the two given elements.
+	 * 
+	 * @param x
+	 *           the first element
+	 * @param y
+	 *           the second element
+	 * @return the representative of the merged set, or -1 if both elements already were in the same set
+	 */
+	public int union(int x, int y) {
+		int rootX = find(x);
+		int rootY = find(y);
+		if (rootX == rootY) {
+			return -1;
+		}
+		if (size[rootX] < size[rootY]) {
+			int tmp = rootX;
+			rootX = rootY;
+			rootY = tmp;
+		}
+		parent[rootY] = rootX;
+		size[rootX] += size[rootY];
+		numberOfSets--;
+		return rootX;
+	}
+	
+	/**
+	 * Gets the size of the set containing the given element.
+	 * 
+	 * @param x
+	 *           the element
+	 * @return the number of elements in the set containing {@code x}
+	 */
+	public int getSetSize(int x) {
+		return size[find(x)];
+	}
+	
+	public int getNumberOfSets() {
+		return numberOfSets;
+	}
+	
+}
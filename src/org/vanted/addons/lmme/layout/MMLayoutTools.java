@@ -14,12 +14,23 @@
  ******************************************************************************/
 package org.vanted.addons.lmme.layout;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Random;
 
+import org.AttributeHelper;
+import org.Vector2d;
+import org.graffiti.graph.Graph;
 import org.graffiti.graph.Node;
 
+import de.ipk_gatersleben.ag_nw.graffiti.GraphHelper;
+
 /**
  * A collection of tools that may be used by the included layout algorithms.
  * 
@@ -27,6 +38,11 @@ import org.graffiti.graph.Node;
  */
 public class MMLayoutTools {
 	
+	/**
+	 * The number of iterations of the force-directed refinement in {@link #layOutIncrementally(Graph, Collection, double)}.
+	 */
+	private static final int INCREMENTAL_ITERATIONS = 50;
+	
 	private static MMLayoutTools instance;
 	
 	private MMLayoutTools() {
@@ -237,4 +253,148 @@ public class MMLayoutTools {
 		return res;
 	}
 	
+	/**
+	 * Lays out the given nodes, which have been added to an already laid out graph, while all other nodes keep their positions.
+	 * <p>
+	 * The added nodes are first placed in breadth-first order at the barycenter of their already placed neighbors, added nodes without such neighbors
+	 * to the right of the existing drawing. Then, a few iterations of a force-directed refinement move only the added nodes, where the repulsive
+	 * forces are restricted to nearby nodes by a grid, such that each iteration takes linear time.
+	 * 
+	 * @param graph
+	 *           the graph
+	 * @param addedNodes
+	 *           the nodes to be laid out
+	 * @param edgeLength
+	 *           the desired length of an edge
+	 */
+	public void layOutIncrementally(Graph graph, Collection<Node> addedNodes, double edgeLength) {
+		if (addedNodes.isEmpty()) {
+			return;
+		}
+		Random random = new Random();
+		HashSet<Node> pendingNodes = new HashSet<>(addedNodes);
+		HashMap<Node, double[]> positions = new HashMap<>();
+		double maxX = Double.NEGATIVE_INFINITY;
+		double minY = Double.POSITIVE_INFINITY;
+		for (Node node : graph.getNodes()) {
+			if (!pendingNodes.contains(node)) {
+				Vector2d position = AttributeHelper.getPositionVec2d(node);
+				positions.put(node, new double[] { position.x, position.y });
+				maxX = Math.max(maxX, position.x);
+				minY = Math.min(minY, position.y);
+			}
+		}
+		if (positions.isEmpty()) {
+			maxX = 0.0;
+			minY = 0.0;
+		}
+		
+		// Initial placement
+		ArrayDeque<Node> queue = new ArrayDeque<>();
+		for (Node node : addedNodes) {
+			for (Node neighbor : node.getNeighbors()) {
+				if (positions.containsKey(neighbor)) {
+					queue.add(node);
+					break;
+				}
+			}
+		}
+		double nextFreeY = minY;
+		Iterator<Node> unreachedNodes = addedNodes.iterator();
+		while (!pendingNodes.isEmpty()) {
+			if (queue.isEmpty()) {
+				// A part of the added nodes that is not connected to the existing drawing.
+				Node node = unreachedNodes.next();
+				if (pendingNodes.contains(node)) {
+					positions.put(node, new double[] { maxX + 3 * edgeLength, nextFreeY });
+					nextFreeY += 3 * edgeLength;
+					pendingNodes.remove(node);
+					queue.addAll(node.getNeighbors());
+				}
+				continue;
+			}
+			Node node = queue.poll();
+			if (!pendingNodes.contains(node)) {
+				continue;
+			}
+			double x = 0.0;
+			double y = 0.0;
+			int numberOfPlacedNeighbors = 0;
+			for (Node neighbor : node.getNeighbors()) {
+				double[] position = positions.get(neighbor);
+				if (position != null) {
+					x += position[0];
+					y += position[1];
+					numberOfPlacedNeighbors++;
+				} else if (pendingNodes.contains(neighbor)) {
+					queue.add(neighbor);
+				}
+			}
+			positions.put(node, new double[] { x / numberOfPlacedNeighbors + (random.nextDouble() - 0.5) * edgeLength,
+					y / numberOfPlacedNeighbors + (random.nextDouble() - 0.5) * edgeLength });
+			pendingNodes.remove(node);
+		}
+		
+		// Force-directed refinement of the added nodes only
+		double cellSize = 2 * edgeLength;
+		double temperature = edgeLength;
+		for (int iteration = 0; iteration < INCREMENTAL_ITERATIONS; iteration++) {
+			HashMap<Long, ArrayList<Node>> grid = new HashMap<>();
+			for (Map.Entry<Node, double[]> entry : positions.entrySet()) {
+				grid.computeIfAbsent(getCell(entry.getValue(), cellSize, 0, 0), cell -> new ArrayList<>()).add(entry.getKey());
+			}
+			for (Node node : addedNodes) {
+				double[] position = positions.get(node);
+				double forceX = 0.0;
+				double forceY = 0.0;
+				for (int dx = -1; dx <= 1; dx++) {
+					for (int dy = -1; dy <= 1; dy++) {
+						ArrayList<Node> cellNodes = grid.get(getCell(position, cellSize, dx, dy));
+						if (cellNodes == null) {
+							continue;
+						}
+						for (Node other : cellNodes) {
+							if (other != node) {
+								double[] otherPosition = positions.get(other);
+								double distX = position[0] - otherPosition[0];
+								double distY = position[1] - otherPosition[1];
+								double distSquared = Math.max(distX * distX + distY * distY, 1.0);
+								forceX += distX * edgeLength * edgeLength / distSquared;
+								forceY += distY * edgeLength * edgeLength / distSquared;
+							}
+						}
+					}
+				}
+				for (Node neighbor : node.getNeighbors()) {
+					double[] neighborPosition = positions.get(neighbor);
+					double distX = neighborPosition[0] - position[0];
+					double distY = neighborPosition[1] - position[1];
+					double dist = Math.sqrt(distX * distX + distY * distY);
+					forceX += distX * dist / edgeLength;
+					forceY += distY * dist / edgeLength;
+				}
+				double force = Math.sqrt(forceX * forceX + forceY * forceY);
+				if (force > 0.0) {
+					double step = Math.min(force, temperature) / force;
+					position[0] += forceX * step;
+					position[1] += forceY * step;
+				}
+			}
+			temperature *= 0.95;
+		}
+		
+		HashMap<Node, Vector2d> newPositions = new HashMap<>();
+		for (Node node : addedNodes) {
+			double[] position = positions.get(node);
+			newPositions.put(node, new Vector2d(position[0], position[1]));
+		}
+		GraphHelper.applyUndoableNodePositionUpdate(newPositions, "Incremental Layout");
+	}
+	
+	private static Long getCell(double[] position, double cellSize, int dx, int dy) {
+		long cellX = (long) Math.floor(position[0] / cellSize) + dx;
+		long cellY = (long) Math.floor(position[1] / cellSize) + dy;
+		return Long.valueOf((cellX << 32) ^ (cellY & 0xffffffffL));
+	}
+	
 }
@@ -14,8 +14,12 @@
  ******************************************************************************/
 package org.vanted.addons.lmme.layout;
 
+import java.util.Collection;
+
 import org.graffiti.graph.Graph;
+import org.graffiti.graph.Node;
 import org.vanted.addons.lmme.graphs.SubsystemGraph;
+import org.vanted.addons.lmme.ui.LMMESubsystemViewManagement;
 
 /**
  * Interface for a layout method for the {@link SubsystemGraph}.
@@ -32,6 +36,21 @@ public interface MMSubsystemLayout {
 	 */
 	public void layOutAsSubsystems(Graph graph);
 	
+	/**
+	 * Lays out the given nodes, which have been added to the already laid out graph in the subsystems view, while all other nodes keep their
+	 * positions.
+	 * <p>
+	 * By default, {@link MMLayoutTools#layOutIncrementally(Graph, Collection, double)} is used.
+	 * 
+	 * @param graph
+	 *           the graph in the subsystems view
+	 * @param addedNodes
+	 *           the nodes to be laid out
+	 */
+	public default void layOutIncrementallyAsSubsystems(Graph graph, Collection<Node> addedNodes) {
+		MMLayoutTools.getInstance().layOutIncrementally(graph, addedNodes, 2 * LMMESubsystemViewManagement.getInstance().getNodeSize());
+	}
+	
 	/**
 	 * Gets the name of the layout algorithm.
 	 * 
@@ -21,7 +21,6 @@ import org.graffiti.graph.Graph;
 import org.graffiti.graph.Node;
 import org.vanted.addons.lmme.core.LMMEConstants;
 import org.vanted.addons.lmme.core.LMMEController;
-import org.vanted.addons.lmme.core.LMMETools;
 import org.vanted.addons.lmme.graphs.SubsystemGraph;
 import org.vanted.addons.lmme.ui.LMMESubsystemViewManagement;
 
@@ -38,11 +37,9 @@ import org.vanted.addons.lmme.ui.LMMESubsystemViewManagement;
 public class ParallelLinesMMLayout implements MMSubsystemLayout {
 	
 	private MMLayoutTools layoutTools;
-	private LMMETools tools;
 	
 	public ParallelLinesMMLayout() {
 		layoutTools = MMLayoutTools.getInstance();
-		tools = LMMETools.getInstance();
 	}
 	
 	@Override
@@ -51,13 +48,14 @@ public class ParallelLinesMMLayout implements MMSubsystemLayout {
 		ArrayList<Node> species = new ArrayList<>();
 		ArrayList<Node> reactions = new ArrayList<>();
 		ArrayList<Node> subsystems = new ArrayList<>();
+		// The node type is set for every node of the subsystems view, also for nodes that lack the SBML attributes.
 		for (Node node : graph.getNodes()) {
-			if (tools.isSpecies(node)) {
+			String nodeType = LMMEController.getInstance().getCurrentSession().getNodeAttribute(node, LMMEConstants.NODETYPE_ATTRIBUTE_NAME);
+			if (nodeType.equals(LMMEConstants.NODETYPE_SPECIES)) {
 				species.add(node);
-			} else if (tools.isReaction(node)) {
+			} else if (nodeType.equals(LMMEConstants.NODETYPE_REACTION)) {
 				reactions.add(node);
-			} else if (LMMEController.getInstance().getCurrentSession().getNodeAttribute(node, LMMEConstants.NODETYPE_ATTRIBUTE_NAME)
-					.equals(LMMEConstants.NODETYPE_SUBSYSTEM)) {
+			} else if (nodeType.equals(LMMEConstants.NODETYPE_SUBSYSTEM)) {
 				subsystems.add(node);
 			}
 		}
@@ -0,0 +1,149 @@
+/*******************************************************************************
+ * LMME is a VANTED Add-on for the exploration of large metabolic models.
+ * Copyright (C) 2020 Chair for Life Science Informatics, University of Konstanz
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package org.vanted.addons.lmme.ui;
+
+import java.awt.Color;
+import java.lang.reflect.InvocationTargetException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.swing.SwingUtilities;
+
+import org.AttributeHelper;
+import org.graffiti.editor.GraffitiInternalFrame;
+import org.graffiti.graph.Edge;
+import org.graffiti.graph.Graph;
+import org.graffiti.graph.GraphElement;
+import org.graffiti.graph.Node;
+import org.graffiti.plugins.inspectors.defaults.DefaultEditPanel;
+
+/**
+ * Collects changes of the fill colors, sizes and frame thicknesses of the elements of a graph and applies them at once.
+ * <p>
+ * Setting these attributes one by one makes VANTED notify its listeners and repaint the views for every single change. A batch instead records the
+ * changes, which may be done on any thread, keeping only the last change of each attribute of an element. {@link #apply()} then sets all of them on
+ * the event dispatch thread within a single transaction of the graph's listener manager and finally redraws the LMME views showing the graph once.
+ * 
+ * @author Michael Aichem
+ */
+public class AttributeUpdateBatch {
+	
+	private final Graph graph;
+	
+	private final LinkedHashMap<GraphElement, Color> fillColors = new LinkedHashMap<>();
+	private final LinkedHashMap<Node, double[]> sizes = new LinkedHashMap<>();
+	private final LinkedHashMap<Edge, Double> frameThicknesses = new LinkedHashMap<>();
+	
+	/**
+	 * Creates an empty batch.
+	 * 
+	 * @param graph
+	 *           the graph whose elements are changed
+	 */
+	public AttributeUpdateBatch(Graph graph) {
+		this.graph = graph;
+	}
+	
+	/**
+	 * Records a new fill color.
+	 * 
+	 * @param element
+	 *           the node or edge
+	 * @param color
+	 *           the fill color
+	 */
+	public void setFillColor(GraphElement element, Color color) {
+		fillColors.put(element, color);
+	}
+	
+	/**
+	 * Records a new size.
+	 * 
+	 * @param node
+	 *           the node
+	 * @param width
+	 *           the width
+	 * @param height
+	 *           the height
+	 */
+	public void setSize(Node node, double width, double height) {
+		sizes.put(node, new double[] { width, height });
+	}
+	
+	/**
+	 * Records a new frame thickness, which is the line width of an edge.
+	 * 
+	 * @param edge
+	 *           the edge
+	 * @param thickness
+	 *           the thickness, or a negative value to hide the edge
+	 */
+	public void setFrameThickness(Edge edge, double thickness) {
+		frameThicknesses.put(edge, Double.valueOf(thickness));
+	}
+	
+	/**
+	 * Applies the recorded changes and redraws the views of the graph.
+	 * <p>
+	 * If called from another thread, the changes are applied on the event dispatch thread and this method waits until that has been done. The batch
+	 * is empty afterwards.
+	 */
+	public void apply() {
+		if (SwingUtilities.isEventDispatchThread()) {
+			applyNow();
+			return;
+		}
+		try {
+			SwingUtilities.invokeAndWait(this::applyNow);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (InvocationTargetException e) {
+			throw new IllegalStateException("The attributes could not be updated.", e.getCause());
+		}
+	}
+	
+	private void applyNow() {
+		if (fillColors.isEmpty() && sizes.isEmpty() && frameThicknesses.isEmpty()) {
+			return;
+		}
+		graph.getListenerManager().transactionStarted(this);
+		try {
+			for (Map.Entry<GraphElement, Color> entry : fillColors.entrySet()) {
+				AttributeHelper.setFillColor(entry.getKey(), entry.getValue());
+			}
+			for (Map.Entry<Node, double[]> entry : sizes.entrySet()) {
+				AttributeHelper.setSize(entry.getKey(), entry.getValue()[0], entry.getValue()[1]);
+			}
+			for (Map.Entry<Edge, Double> entry : frameThicknesses.entrySet()) {
+				AttributeHelper.setFrameThickNess(entry.getKey(), entry.getValue().doubleValue());
+			}
+		} finally {
+			graph.getListenerManager().transactionFinished(this);
+		}
+		fillColors.clear();
+		sizes.clear();
+		frameThicknesses.clear();
+		
+		redraw(LMMEViewManagement.getInstance().getOverviewFrame());
+		redraw(LMMEViewManagement.getInstance().getSubsystemFrame());
+	}
+	
+	private void redraw(GraffitiInternalFrame frame) {
+		if (frame != null && frame.getView().getGraph() == graph) {
+			DefaultEditPanel.issueCompleteRedrawForView(frame.getView(), graph);
+		}
+	}
+	
+}
@@ -16,18 +16,26 @@ package org.vanted.addons.lmme.ui;
 
 import java.awt.Color;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Map;
 
 import org.AttributeHelper;
+import org.graffiti.attributes.Attributable;
+import org.graffiti.attributes.Attribute;
 import org.graffiti.attributes.CollectionAttribute;
+import org.graffiti.attributes.HashMapAttribute;
 import org.graffiti.graph.AdjListGraph;
 import org.graffiti.graph.Edge;
 import org.graffiti.graph.Graph;
 import org.graffiti.graph.Node;
+import org.graffiti.graphics.GraphicAttributeConstants;
 import org.vanted.addons.lmme.core.LMMEConstants;
 import org.vanted.addons.lmme.core.LMMEController;
 import org.vanted.addons.lmme.graphs.BaseGraph;
+import org.vanted.addons.lmme.graphs.InterfaceIndex;
+import org.vanted.addons.lmme.graphs.OverviewGraph;
 import org.vanted.addons.lmme.graphs.SubsystemGraph;
 
 /**
@@ -52,6 +60,41 @@ public class LMMESubsystemViewManagement {
 	
 	private HashMap<Node, String> node2SubsystemName;
 	
+	/**
+	 * The graph in the subsystems view, which is extended when further subsystems are added to the existing drawing.
+	 */
+	private Graph consolidatedSubsystemGraph;
+	
+	/**
+	 * Maps the nodes of the base graph and the subsystem nodes of the overview graph to their copies in the consolidated subsystem graph.
+	 */
+	private HashMap<Node, Node> nodes2newNodes;
+	
+	/**
+	 * Maps the nodes of the consolidated subsystem graph back to the nodes they have been created from.
+	 */
+	private HashMap<Node, Node> newNodes2nodes;
+	
+	/**
+	 * Maps the edges of the consolidated subsystem graph back to the edges of the base graph they have been created from.
+	 */
+	private HashMap<Edge, Edge> newEdges2edges;
+	
+	/**
+	 * Whether the nodes and edges of the consolidated subsystem graph are created with their graphics attributes only. Their remaining attributes are
+	 * then resolved via {@link #getBaseNode(Node)} or copied on demand by {@link #materializeAttributes()}.
+	 */
+	private boolean lightweight;
+	
+	private HashSet<Edge> addedEdges;
+	
+	private HashSet<Node> processedInterfaces;
+	
+	/**
+	 * The interface nodes that each shown related subsystem node of the overview graph is connected to.
+	 */
+	private HashMap<Node, HashSet<Node>> relatedSubsystemEdges;
+	
 	/**
 	 * The size of a species or reaction node in the resulting drawing of the consolidated subsystem graph.
 	 */
@@ -88,6 +131,12 @@ public class LMMESubsystemViewManagement {
 		defaultColor = Color.GRAY;
 		colorMap = new HashMap<>();
 		node2SubsystemName = new HashMap<>();
+		nodes2newNodes = new HashMap<>();
+		newNodes2nodes = new HashMap<>();
+		newEdges2edges = new HashMap<>();
+		addedEdges = new HashSet<>();
+		processedInterfaces = new HashSet<>();
+		relatedSubsystemEdges = new HashMap<>();
 	}
 	
 	public static synchronized LMMESubsystemViewManagement getInstance() {
@@ -100,7 +149,9 @@ public class LMMESubsystemViewManagement {
 	/**
 	 * Draws the given subsystems in the subsystems view according to some given options.
 	 * <p>
-	 * The consolidated subsystem graph is constructed from the given subsystems.
+	 * The consolidated subsystem graph is constructed from the given subsystems. If the existing drawing is kept, only the nodes and edges of the
+	 * subsystems that are not shown yet, their interfaces and the related subsystems are added to it, such that the nodes already shown keep their
+	 * positions.
 	 * 
 	 * @param subsystems
 	 *           the list of {@link SubsystemGraph}s to be combined into a consolidated subsystem graph
@@ -109,13 +160,22 @@ public class LMMESubsystemViewManagement {
 	 *           to the existing drawing.
 	 * @param useColor
 	 *           whether a color mapping shall be used between the overview graph and the subsystems view
+	 * @param lightweight
+	 *           whether the nodes and edges are created with their graphics attributes only, which saves memory and time for large subsystems. The
+	 *           remaining attributes are resolved on demand. This is only taken into account if the subsystems view is constructed from scratch,
+	 *           subsystems added to an existing drawing are created in the same way as the nodes already shown.
+	 * @return the nodes that have been added to the existing drawing, or {@code null} if the subsystems view has been constructed from scratch and
+	 *         needs to be laid out completely
 	 */
-	public void showSubsystems(ArrayList<SubsystemGraph> subsystems, boolean clearView, boolean useColor, boolean showRelatedSubsystems) {
+	public Collection<Node> showSubsystems(ArrayList<SubsystemGraph> subsystems, boolean clearView, boolean useColor, boolean showRelatedSubsystems,
+			boolean lightweight) {
 		
 		if ((LMMEViewManagement.getInstance().getSubsystemFrame() == null)
-				|| (LMMEViewManagement.getInstance().getSubsystemFrame().isClosed() == true)) {
+				|| (LMMEViewManagement.getInstance().getSubsystemFrame().isClosed() == true)
+				|| (LMMEViewManagement.getInstance().getSubsystemFrame().getView().getGraph() != consolidatedSubsystemGraph)) {
 			clearView = true;
 		}
+		ArrayList<SubsystemGraph> newSubsystems = new ArrayList<>();
 		if (clearView) {
 			resetLists();
 			int nextColorIndex = 0;
@@ -133,6 +193,7 @@ public class LMMESubsystemViewManagement {
 			for (SubsystemGraph subsystem : subsystems) {
 				if (!currentSubsystems.contains(subsystem)) {
 					currentSubsystems.add(subsystem);
+					newSubsystems.add(subsystem);
 					if (nextColorIndex <= colors.length - 1) {
 						colorMap.put(subsystem, colors[nextColorIndex]);
 					} else {
@@ -143,7 +204,12 @@ public class LMMESubsystemViewManagement {
 			}
 		}
 		
-		updateView(useColor, showRelatedSubsystems);
+		ArrayList<Node> addedNodes = null;
+		if (clearView) {
+			updateView(useColor, showRelatedSubsystems, lightweight);
+		} else {
+			addedNodes = extendView(newSubsystems, useColor, showRelatedSubsystems);
+		}
 		
 		for (SubsystemGraph subsystem : currentSubsystems) {
 			if (useColor) {
@@ -161,38 +227,108 @@ public class LMMESubsystemViewManagement {
 		}
 		LMMEController.getInstance().getTab().setSubsystemInfo(currentSubsystems.size(), speciesHashSet.size(),
 				reactionsHashSet.size());
+		return addedNodes;
 	}
 	
 	/**
-	 * Internally handles the update of the drawing in the subsystems view.
+	 * Internally handles the construction of the drawing in the subsystems view from scratch.
 	 * 
 	 * @param useColor
 	 *           whether a color mapping shall be used between the overview graph and the subsystems view
+	 * @param lightweight
+	 *           whether the nodes and edges are created with their graphics attributes only
 	 */
-	private void updateView(boolean useColor, boolean showRelatedSubsystems) {
+	private void updateView(boolean useColor, boolean showRelatedSubsystems, boolean lightweight) {
 		
+		this.lightweight = lightweight;
 		node2SubsystemName.clear();
+		nodes2newNodes.clear();
+		newNodes2nodes.clear();
+		newEdges2edges.clear();
+		addedEdges.clear();
+		processedInterfaces.clear();
+		relatedSubsystemEdges.clear();
 		
 		BaseGraph baseGraph = LMMEController.getInstance().getCurrentSession().getBaseGraph();
 		
-		Graph consolidatedSubsystemGraph = new AdjListGraph(
-				(CollectionAttribute) baseGraph.getOriginalGraph().getAttributes().copy());
-		
-		HashMap<Node, Node> nodes2newNodes = new HashMap<>();
-		HashSet<Edge> addedEdges = new HashSet<>();
-		HashSet<Node> processedInterfaces = new HashSet<>();
+		if (lightweight) {
+			consolidatedSubsystemGraph = new AdjListGraph(copyGraphicsAttributes(baseGraph.getOriginalGraph()));
+		} else {
+			consolidatedSubsystemGraph = new AdjListGraph(
+					(CollectionAttribute) baseGraph.getOriginalGraph().getAttributes().copy());
+		}
 		
 		resetOverviewGraphColoring();
 		
-		for (SubsystemGraph subsystem : currentSubsystems) {
+		addToView(currentSubsystems, useColor, showRelatedSubsystems, new ArrayList<>());
+		
+		LMMEViewManagement.getInstance().showAsSubsystemGraph(consolidatedSubsystemGraph);
+	}
+	
+	/**
+	 * Internally handles the addition of subsystems to the existing drawing in the subsystems view.
+	 * <p>
+	 * All changes are made within a single transaction, such that the view is updated once.
+	 * 
+	 * @param newSubsystems
+	 *           the subsystems that have been added to the current subsystems
+	 * @param useColor
+	 *           whether a color mapping shall be used between the overview graph and the subsystems view
+	 * @return the added nodes
+	 */
+	private ArrayList<Node> extendView(ArrayList<SubsystemGraph> newSubsystems, boolean useColor, boolean showRelatedSubsystems) {
+		ArrayList<Node> addedNodes = new ArrayList<>();
+		consolidatedSubsystemGraph.getListenerManager().transactionStarted(this);
+		try {
+			// Related subsystems that are shown now, or all of them if they are not to be shown anymore, are removed.
+			OverviewGraph overviewGraph = LMMEController.getInstance().getCurrentSession().getOverviewGraph();
+			ArrayList<Node> removedSubsystemNodes = new ArrayList<>();
+			if (showRelatedSubsystems) {
+				for (SubsystemGraph subsystem : newSubsystems) {
+					removedSubsystemNodes.add(overviewGraph.getNodeOfSubsystem(subsystem));
+				}
+			} else {
+				removedSubsystemNodes.addAll(relatedSubsystemEdges.keySet());
+			}
+			for (Node subsystemNode : removedSubsystemNodes) {
+				relatedSubsystemEdges.remove(subsystemNode);
+				Node newNode = nodes2newNodes.remove(subsystemNode);
+				if (newNode != null) {
+					newNodes2nodes.remove(newNode);
+					consolidatedSubsystemGraph.deleteNode(newNode);
+				}
+			}
+			
+			addToView(newSubsystems, useColor, showRelatedSubsystems, addedNodes);
+		} finally {
+			consolidatedSubsystemGraph.getListenerManager().transactionFinished(this);
+		}
+		return addedNodes;
+	}
+	
+	/**
+	 * Adds the given subsystems to the consolidated subsystem graph, together with their interfaces to the current subsystems and, if requested, the
+	 * related subsystems of all current subsystems.
+	 * 
+	 * @param newSubsystems
+	 *           the subsystems to be added, which are contained in the current subsystems
+	 * @param useColor
+	 *           whether a color mapping shall be used between the overview graph and the subsystems view
+	 * @param addedNodes
+	 *           the list the added nodes are appended to
+	 */
+	private void addToView(ArrayList<SubsystemGraph> newSubsystems, boolean useColor, boolean showRelatedSubsystems, ArrayList<Node> addedNodes) {
+		
+		for (SubsystemGraph subsystem : newSubsystems) {
 			for (Node speciesNode : subsystem.getSpeciesNodes()) {
 				if (!nodes2newNodes.keySet().contains(speciesNode)) {
-					Node newNode = consolidatedSubsystemGraph.addNodeCopy(speciesNode);
+					Node newNode = addViewNode(speciesNode);
 					LMMEController.getInstance().getCurrentSession().addNodeAttribute(newNode, LMMEConstants.NODETYPE_ATTRIBUTE_NAME,
 							LMMEConstants.NODETYPE_SPECIES);
 					node2SubsystemName.put(newNode, subsystem.getName());
 					AttributeHelper.setSize(newNode, nodeSize, nodeSize);
 					nodes2newNodes.put(speciesNode, newNode);
+					addedNodes.add(newNode);
 					if (useColor) {
 						AttributeHelper.setFillColor(newNode, colorMap.get(subsystem));
 					}
@@ -200,12 +336,13 @@ public class LMMESubsystemViewManagement {
 			}
 			for (Node reactionNode : subsystem.getReactionNodes()) {
 				if (!nodes2newNodes.keySet().contains(reactionNode)) {
-					Node newNode = consolidatedSubsystemGraph.addNodeCopy(reactionNode);
+					Node newNode = addViewNode(reactionNode);
 					LMMEController.getInstance().getCurrentSession().addNodeAttribute(newNode, LMMEConstants.NODETYPE_ATTRIBUTE_NAME,
 							LMMEConstants.NODETYPE_REACTION);
 					node2SubsystemName.put(newNode, subsystem.getName());
 					AttributeHelper.setSize(newNode, nodeSize, nodeSize);
 					nodes2newNodes.put(reactionNode, newNode);
+					addedNodes.add(newNode);
 					if (useColor) {
 						AttributeHelper.setFillColor(newNode, colorMap.get(subsystem));
 					}
@@ -215,46 +352,60 @@ public class LMMESubsystemViewManagement {
 				if (!addedEdges.contains(edge)) {
 					Node sourceNode = nodes2newNodes.get(edge.getSource());
 					Node targetNode = nodes2newNodes.get(edge.getTarget());
-					consolidatedSubsystemGraph.addEdgeCopy(edge, sourceNode, targetNode);
+					addViewEdge(edge, sourceNode, targetNode);
 					addedEdges.add(edge);
 				}
 			}
 		}
 		
-		for (SubsystemGraph sourceSystem : currentSubsystems) {
-			for (SubsystemGraph targetSystem : currentSubsystems) {
-				if (sourceSystem != targetSystem) {
+		InterfaceIndex interfaceIndex = LMMEController.getInstance().getCurrentSession().getOverviewGraph().getInterfaceIndex();
+		boolean[] isCurrentSubsystem = new boolean[interfaceIndex.getNumberOfSubsystems()];
+		for (SubsystemGraph subsystem : currentSubsystems) {
+			isCurrentSubsystem[interfaceIndex.getSubsystemId(subsystem)] = true;
+		}
+		boolean[] isNewSubsystem = new boolean[interfaceIndex.getNumberOfSubsystems()];
+		for (SubsystemGraph subsystem : newSubsystems) {
+			isNewSubsystem[interfaceIndex.getSubsystemId(subsystem)] = true;
+		}
+		int[] neighborOffsets = interfaceIndex.getNeighborOffsets();
+		int[] neighborPairs = interfaceIndex.getNeighborPairs();
+		
+		for (SubsystemGraph sourceSystem : newSubsystems) {
+			int sourceId = interfaceIndex.getSubsystemId(sourceSystem);
+			for (int k = neighborOffsets[sourceId]; k < neighborOffsets[sourceId + 1]; k++) {
+				int pair = neighborPairs[k];
+				int targetId = interfaceIndex.getOtherSubsystem(pair, sourceId);
+				// Each pair of shown subsystems is processed once, pairs of subsystems that have been shown before have been processed already.
+				if (isCurrentSubsystem[targetId] && (!isNewSubsystem[targetId] || sourceId < targetId)) {
 					
-					ArrayList<Node> interfaces = LMMEController.getInstance().getCurrentSession().getOverviewGraph()
-							.getInterfaceNodes(sourceSystem, targetSystem);
-					for (Node interfaceNode : interfaces) {
+					for (Node interfaceNode : interfaceIndex.getInterfaceNodes(pair)) {
 						if (!processedInterfaces.contains(interfaceNode)) {
 							processedInterfaces.add(interfaceNode);
 							if (!nodes2newNodes.keySet().contains(interfaceNode)) {
-								Node newNode = consolidatedSubsystemGraph.addNodeCopy(interfaceNode);
+								Node newNode = addViewNode(interfaceNode);
 								LMMEController.getInstance().getCurrentSession().addNodeAttribute(newNode, LMMEConstants.NODETYPE_ATTRIBUTE_NAME,
 										LMMEConstants.NODETYPE_SPECIES);
 								AttributeHelper.setSize(newNode, nodeSize, nodeSize);
 								nodes2newNodes.put(interfaceNode, newNode);
+								addedNodes.add(newNode);
 							} else {
 								AttributeHelper.setFillColor(nodes2newNodes.get(interfaceNode), Color.WHITE);
 							}
 							node2SubsystemName.remove(nodes2newNodes.get(interfaceNode));
-							for (Edge inEdge : interfaceNode.getAllInEdges()) {
-								if (nodes2newNodes.keySet().contains(inEdge.getSource())
-										&& !addedEdges.contains(inEdge)) {
-									addedEdges.add(inEdge);
-									consolidatedSubsystemGraph.addEdgeCopy(inEdge,
-											nodes2newNodes.get(inEdge.getSource()), nodes2newNodes.get(interfaceNode));
-								}
+						}
+						// An interface node processed before may also be connected to the nodes of the new subsystems.
+						for (Edge inEdge : interfaceNode.getAllInEdges()) {
+							if (nodes2newNodes.keySet().contains(inEdge.getSource())
+									&& !addedEdges.contains(inEdge)) {
+								addedEdges.add(inEdge);
+								addViewEdge(inEdge, nodes2newNodes.get(inEdge.getSource()), nodes2newNodes.get(interfaceNode));
 							}
-							for (Edge outEdge : interfaceNode.getAllOutEdges()) {
-								if (nodes2newNodes.keySet().contains(outEdge.getTarget())
-										&& !addedEdges.contains(outEdge)) {
-									addedEdges.add(outEdge);
-									consolidatedSubsystemGraph.addEdgeCopy(outEdge, nodes2newNodes.get(interfaceNode),
-											nodes2newNodes.get(outEdge.getTarget()));
-								}
+						}
+						for (Edge outEdge : interfaceNode.getAllOutEdges()) {
+							if (nodes2newNodes.keySet().contains(outEdge.getTarget())
+									&& !addedEdges.contains(outEdge)) {
+								addedEdges.add(outEdge);
+								addViewEdge(outEdge, nodes2newNodes.get(interfaceNode), nodes2newNodes.get(outEdge.getTarget()));
 							}
 						}
 					}
@@ -264,46 +415,145 @@ public class LMMESubsystemViewManagement {
 		}
 		
 		if (showRelatedSubsystems) {
-			HashMap<Node, HashSet<Node>> edgesToAdd = new HashMap<Node, HashSet<Node>>();
-			ArrayList<SubsystemGraph> allSubsystems = LMMEController.getInstance().getCurrentSession().getOverviewGraph().getDecomposition().getSubsystems();
+			// The nodes of the new subsystems may be interfaces to related subsystems of any current subsystem.
 			for (SubsystemGraph focusedSystem : currentSubsystems) {
-				for (SubsystemGraph relatedSubsystem : allSubsystems) {
-					if (!currentSubsystems.contains(relatedSubsystem)) {
-						ArrayList<Node> interfaces = LMMEController.getInstance().getCurrentSession().getOverviewGraph().getInterfaceNodes(focusedSystem,
-								relatedSubsystem);
-						interfaces.addAll(LMMEController.getInstance().getCurrentSession().getOverviewGraph().getInterfaceNodes(relatedSubsystem,
-								focusedSystem));
-						for (Node interfaceNode : interfaces) {
+				int focusedId = interfaceIndex.getSubsystemId(focusedSystem);
+				for (int k = neighborOffsets[focusedId]; k < neighborOffsets[focusedId + 1]; k++) {
+					int pair = neighborPairs[k];
+					int relatedId = interfaceIndex.getOtherSubsystem(pair, focusedId);
+					SubsystemGraph relatedSubsystem = interfaceIndex.getSubsystem(relatedId);
+					if (!isCurrentSubsystem[relatedId]) {
+						for (Node interfaceNode : interfaceIndex.getInterfaceNodes(pair)) {
 							if (nodes2newNodes.keySet().contains(interfaceNode)) {
 								Node subsystemNode = LMMEController.getInstance().getCurrentSession().getOverviewGraph().getNodeOfSubsystem(relatedSubsystem);
 								if (!nodes2newNodes.keySet().contains(subsystemNode)) {
-									Node newNode = consolidatedSubsystemGraph.addNodeCopy(subsystemNode);
+									Node newNode = addViewNode(subsystemNode);
 									LMMEController.getInstance().getCurrentSession().addNodeAttribute(newNode, LMMEConstants.NODETYPE_ATTRIBUTE_NAME,
 											LMMEConstants.NODETYPE_SUBSYSTEM);
 									AttributeHelper.setSize(newNode, subsystemNodeSize, subsystemNodeSize);
 									nodes2newNodes.put(subsystemNode, newNode);
+									addedNodes.add(newNode);
+									relatedSubsystemEdges.put(subsystemNode, new HashSet<Node>());
 								}
-								if (!edgesToAdd.containsKey(interfaceNode)) {
-									edgesToAdd.put(interfaceNode, new HashSet<Node>());
+								if (relatedSubsystemEdges.get(subsystemNode).add(interfaceNode)) {
+									Edge addedEdge = consolidatedSubsystemGraph.addEdge(nodes2newNodes.get(interfaceNode), nodes2newNodes.get(subsystemNode), false,
+											AttributeHelper.getDefaultGraphicsAttributeForEdge(Color.BLACK, Color.BLACK, false));
+									AttributeHelper.setOpacity(addedEdge, 0.7);
 								}
-								edgesToAdd.get(interfaceNode).add(subsystemNode);
 							}
 							
 						}
 					}
 				}
 			}
-			for (Node interfaceNode : edgesToAdd.keySet()) {
-				for (Node subsystemNode : edgesToAdd.get(interfaceNode)) {
-					Edge addedEdge = consolidatedSubsystemGraph.addEdge(nodes2newNodes.get(interfaceNode), nodes2newNodes.get(subsystemNode), false,
-							AttributeHelper.getDefaultGraphicsAttributeForEdge(Color.BLACK, Color.BLACK, false));
-					AttributeHelper.setOpacity(addedEdge, 0.7);
-				}
+		}
+	}
+	
+	/**
+	 * Adds a node to the consolidated subsystem graph that represents the given node, either as full copy or with its graphics attributes only.
+	 * 
+	 * @param node
+	 *           the node of the base graph or the subsystem node of the overview graph
+	 * @return the new node
+	 */
+	private Node addViewNode(Node node) {
+		Node newNode;
+		if (lightweight) {
+			newNode = consolidatedSubsystemGraph.addNode(copyGraphicsAttributes(node));
+		} else {
+			newNode = consolidatedSubsystemGraph.addNodeCopy(node);
+		}
+		newNodes2nodes.put(newNode, node);
+		return newNode;
+	}
+	
+	/**
+	 * Adds an edge to the consolidated subsystem graph that represents the given edge, either as full copy or with its graphics attributes only.
+	 * 
+	 * @param edge
+	 *           the edge of the base graph
+	 * @param source
+	 *           the source of the new edge
+	 * @param target
+	 *           the target of the new edge
+	 * @return the new edge
+	 */
+	private Edge addViewEdge(Edge edge, Node source, Node target) {
+		Edge newEdge;
+		if (lightweight) {
+			newEdge = consolidatedSubsystemGraph.addEdge(source, target, edge.isDirected(), copyGraphicsAttributes(edge));
+		} else {
+			newEdge = consolidatedSubsystemGraph.addEdgeCopy(edge, source, target);
+		}
+		newEdges2edges.put(newEdge, edge);
+		return newEdge;
+	}
+	
+	/**
+	 * Copies the attributes that are needed for drawing, that are the graphics and label attributes as well as the top-level attributes that are no
+	 * collections, such as whether a graph is directed. Further collections, in particular the SBML attributes, are left out.
+	 * 
+	 * @param attributable
+	 *           the graph element or graph
+	 * @return the new attribute collection
+	 */
+	private static CollectionAttribute copyGraphicsAttributes(Attributable attributable) {
+		CollectionAttribute attributes = new HashMapAttribute("");
+		for (Attribute attribute : attributable.getAttributes().getCollection().values()) {
+			if (!(attribute instanceof CollectionAttribute) || attribute.getId().equals(GraphicAttributeConstants.GRAPHICS)
+					|| attribute.getId().startsWith(GraphicAttributeConstants.LABELGRAPHICS)) {
+				attributes.add((Attribute) attribute.copy(), false);
+			}
+		}
+		return attributes;
+	}
+	
+	/**
+	 * Copies all attributes that have been left out when creating lightweight nodes and edges from the base graph to the consolidated subsystem graph.
+	 * <p>
+	 * This is necessary before the consolidated subsystem graph is processed by algorithms that rely on the complete attributes, such as the
+	 * translation to SBGN. Attributes that are present already are kept.
+	 */
+	public void materializeAttributes() {
+		if (consolidatedSubsystemGraph == null) {
+			return;
+		}
+		consolidatedSubsystemGraph.getListenerManager().transactionStarted(this);
+		try {
+			copyMissingAttributes(LMMEController.getInstance().getCurrentSession().getBaseGraph().getOriginalGraph(), consolidatedSubsystemGraph);
+			for (Map.Entry<Node, Node> entry : newNodes2nodes.entrySet()) {
+				copyMissingAttributes(entry.getValue(), entry.getKey());
+			}
+			for (Map.Entry<Edge, Edge> entry : newEdges2edges.entrySet()) {
+				copyMissingAttributes(entry.getValue(), entry.getKey());
+			}
+		} finally {
+			consolidatedSubsystemGraph.getListenerManager().transactionFinished(this);
+		}
+	}
+	
+	private static void copyMissingAttributes(Attributable source, Attributable target) {
+		Map<String, Attribute> targetAttributes = target.getAttributes().getCollection();
+		for (Attribute attribute : source.getAttributes().getCollection().values()) {
+			if (!targetAttributes.containsKey(attribute.getId())) {
+				target.addAttribute((Attribute) attribute.copy(), "");
 			}
-			
 		}
-		
-		LMMEViewManagement.getInstance().showAsSubsystemGraph(consolidatedSubsystemGraph);
+	}
+	
+	/**
+	 * Returns the node that the specified node of the consolidated subsystem graph has been created from, which is a node of the base graph or, for a
+	 * related subsystem, a subsystem node of the overview graph.
+	 * <p>
+	 * The attributes that are left out for lightweight nodes can be resolved from the returned node.
+	 * 
+	 * @param node
+	 *           the node of the consolidated subsystem graph
+	 * @return the original node, or the given node itself if it has not been created by this class
+	 */
+	public Node getBaseNode(Node node) {
+		Node baseNode = newNodes2nodes.get(node);
+		return baseNode != null ? baseNode : node;
 	}
 	
 	/**
@@ -330,11 +580,12 @@ public class LMMESubsystemViewManagement {
 	 */
 	public void resetOverviewGraphColoring() {
 		if (LMMEController.getInstance().getCurrentSession().isOverviewGraphConstructed()) {
-			for (SubsystemGraph subsystem : LMMEController.getInstance().getCurrentSession().getOverviewGraph()
-					.getDecomposition().getSubsystems()) {
-				AttributeHelper.setFillColor(LMMEController.getInstance().getCurrentSession().getOverviewGraph()
-						.getNodeOfSubsystem(subsystem), Color.WHITE);
+			OverviewGraph overviewGraph = LMMEController.getInstance().getCurrentSession().getOverviewGraph();
+			AttributeUpdateBatch batch = new AttributeUpdateBatch(overviewGraph.getGraph());
+			for (SubsystemGraph subsystem : overviewGraph.getDecomposition().getSubsystems()) {
+				batch.setFillColor(overviewGraph.getNodeOfSubsystem(subsystem), Color.WHITE);
 			}
+			batch.apply();
 		}
 	}
 	
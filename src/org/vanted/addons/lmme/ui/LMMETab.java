@@ -62,6 +62,7 @@ import org.vanted.addons.lmme.core.LMMESession;
 import org.vanted.addons.lmme.decomposition.MMDecompositionAlgorithm;
 import org.vanted.addons.lmme.decomposition.SchusterMMDecomposition;
 import org.vanted.addons.lmme.graphs.BaseGraph;
+import org.vanted.addons.lmme.graphs.CloningMode;
 import org.vanted.addons.lmme.graphs.OverviewGraph;
 import org.vanted.addons.lmme.layout.StressMinMMLayout;
 
@@ -111,6 +112,11 @@ public class LMMETab extends InspectorTab {
 	private JCheckBox ckbMapToEdgeThickness;
 	private JCheckBox ckbDrawEdges;
 	private JCheckBox ckbAddTransporterSubS;
+	private JCheckBox ckbSplitTransporterSubS;
+	private JCheckBox ckbSplitDefaultSubS;
+	private JTextField tfSplitDefaultSubSThreshold;
+	private final int defaultSplitDefaultSubSThreshold = 10;
+	private JCheckBox ckbRefineInterfaces;
 	private JCheckBox ckbShowInterfaces;
 	private JCheckBox ckbColorInterfaces;
 	
@@ -121,10 +127,12 @@ public class LMMETab extends InspectorTab {
 	private JCheckBox ckbClearSubsView;
 	private JCheckBox ckbUseColorMapping;
 	private JCheckBox ckbShowRelatedSubsystems;
+	private JCheckBox ckbLightweightSubsView;
 	
 	private final int defaultSplitDeg = 15;
 	private JSlider sliderSplitDeg;
 	private JLabel labelSliderCorrespSpeciesNumber;
+	private JComboBox<CloningMode> cbCloningMode;
 	
 	private boolean editedCloneList;
 	private JLabel lblEditedCloneList;
@@ -663,19 +671,51 @@ public class LMMETab extends InspectorTab {
 		this.ckbAddTransporterSubS.setBackground(Color.WHITE);
 		fpSettings.addGuiComponentRow(FolderPanel.getBorderedComponent(ckbAddTransporterSubS, 0, 0, 0, 0), null, true);
 		
+		this.ckbSplitTransporterSubS = new JCheckBox("Split Transporters by Membrane");
+		this.ckbSplitTransporterSubS
+				.setToolTipText("Constructs a separate transporter subsystem for each pair of compartments that are connected by transport reactions.");
+		this.ckbSplitTransporterSubS.setBackground(Color.WHITE);
+		fpSettings.addGuiComponentRow(FolderPanel.getBorderedComponent(ckbSplitTransporterSubS, 0, 0, 0, 0), null, true);
+		
+		this.ckbSplitDefaultSubS = new JCheckBox("Split Default Subsystem");
+		this.ckbSplitDefaultSubS
+				.setToolTipText("Splits the default subsystem into its connected components, small components remain in the default subsystem.");
+		this.ckbSplitDefaultSubS.setBackground(Color.WHITE);
+		fpSettings.addGuiComponentRow(FolderPanel.getBorderedComponent(ckbSplitDefaultSubS, 0, 0, 0, 0), null, true);
+		
+		this.tfSplitDefaultSubSThreshold = new JTextField(5);
+		this.tfSplitDefaultSubSThreshold.setText(Integer.toString(this.defaultSplitDefaultSubSThreshold));
+		this.tfSplitDefaultSubSThreshold.setToolTipText("The minimum number of reactions of a component to form a subsystem of its own.");
+		this.tfSplitDefaultSubSThreshold.setEnabled(false);
+		JPanel splitDefaultSubSThresholdLine = combine(new JLabel("Minimum component size: "), this.tfSplitDefaultSubSThreshold, Color.WHITE,
+				false, true);
+		fpSettings.addGuiComponentRow(FolderPanel.getBorderedComponent(splitDefaultSubSThresholdLine, 0, 0, 0, 0), null, true);
+		
+		this.ckbSplitDefaultSubS.addItemListener(new ItemListener() {
+			public void itemStateChanged(ItemEvent e) {
+				tfSplitDefaultSubSThreshold.setEnabled(ckbSplitDefaultSubS.isSelected());
+			}
+		});
+		
+		this.ckbRefineInterfaces = new JCheckBox("Refine Interfaces");
+		this.ckbRefineInterfaces
+				.setToolTipText("Moves reactions between the subsystems afterwards, such that fewer interfaces occur.");
+		this.ckbRefineInterfaces.setBackground(Color.WHITE);
+		fpSettings.addGuiComponentRow(FolderPanel.getBorderedComponent(ckbRefineInterfaces, 0, 0, 0, 0), null, true);
+		
 		this.ckbShowInterfaces = new JCheckBox("Show Interfaces");
 		this.ckbShowInterfaces
 				.setToolTipText("If selected, the interface species between subsystems will also be shown in the overview graph.");
 		this.ckbShowInterfaces.setBackground(Color.WHITE);
 		fpSettings.addGuiComponentRow(FolderPanel.getBorderedComponent(ckbShowInterfaces, 0, 0, 0, 0), null, true);
-		
-// Snippet might be useful in the future
-//		ckbAddDefaultSubS.addItemListener(new ItemListener() {
-//			public void itemStateChanged(ItemEvent e) {
-//				ckbSplitDefaultSubS.setEnabled(ckbAddDefaultSubS.isSelected());
-//				tfSplitDefaultSubSThreshold.setEditable(ckbAddDefaultSubS.isSelected());
-//			}
-//		});
+		this.ckbShowInterfaces.addItemListener(new ItemListener() {
+			public void itemStateChanged(ItemEvent e) {
+				if (LMMEController.getInstance().getCurrentSession().isOverviewGraphConstructed()) {
+					LMMEController.getInstance().getCurrentSession().getOverviewGraph().setShowInterfaces(ckbShowInterfaces.isSelected());
+					updateOptions();
+				}
+			}
+		});
 		
 		JLabel labelOverviewLayoutAlgo = new JLabel("Layout Method:");
 		Set<String> overviewLayouts = LMMEController.getInstance().getOverviewLayoutsMap().keySet();
@@ -761,6 +801,14 @@ public class LMMETab extends InspectorTab {
 		
 		fp.addGuiComponentRow(sliderSplitDeg, null, true);
 		
+		JLabel labelCloningMode = new JLabel("Cloning Mode:");
+		this.cbCloningMode = new JComboBox<>(CloningMode.values());
+		cbCloningMode.setSelectedItem(CloningMode.PER_EDGE);
+		cbCloningMode.setToolTipText("<html>Whether a species is cloned for every edge, or for every group of reactions that<br>"
+				+ "are connected without passing through any of the clonable species.</html>");
+		JPanel cloningModeSelect = combine(labelCloningMode, cbCloningMode, Color.WHITE, false, true);
+		fp.addGuiComponentRow(FolderPanel.getBorderedComponent(cloningModeSelect, 5, 0, 5, 0), null, true);
+		
 		JButton editCloneListButton = new JButton("Edit List");
 		
 		editCloneListButton.addActionListener(new ActionListener() {
@@ -900,6 +948,12 @@ public class LMMETab extends InspectorTab {
 		ckbShowRelatedSubsystems.setBackground(Color.WHITE);
 		fp.addGuiComponentRow(FolderPanel.getBorderedComponent(ckbShowRelatedSubsystems, 5, 0, 0, 0), null, true);
 		
+		this.ckbLightweightSubsView = new JCheckBox("Copy graphics attributes only");
+		ckbLightweightSubsView.setSelected(false);
+		ckbLightweightSubsView.setBackground(Color.WHITE);
+		ckbLightweightSubsView.setToolTipText("Saves memory and time for large subsystems, the SBML attributes are resolved on demand.");
+		fp.addGuiComponentRow(FolderPanel.getBorderedComponent(ckbLightweightSubsView, 5, 0, 0, 0), null, true);
+		
 		return fp;
 	}
 	
@@ -1150,6 +1204,53 @@ public class LMMETab extends InspectorTab {
 		return this.ckbAddTransporterSubS.isSelected();
 	}
 	
+	/**
+	 * Returns whether the user has selected to split the transporter subsystem by pairs of compartments.
+	 * 
+	 * @return whether the user has selected to split the transporter subsystem
+	 */
+	public boolean getSplitTransporterSubS() {
+		return this.ckbSplitTransporterSubS.isSelected();
+	}
+	
+	/**
+	 * Returns whether the user has selected to split the default subsystem into its connected components.
+	 * 
+	 * @return whether the user has selected to split the default subsystem
+	 */
+	public boolean getSplitDefaultSubS() {
+		return this.ckbSplitDefaultSubS.isSelected();
+	}
+	
+	/**
+	 * Returns the minimum number of reactions of a connected component of the default subsystem to form a subsystem of its own.
+	 * 
+	 * @return the minimum component size
+	 */
+	public int getSplitDefaultSubSThreshold() {
+		int res;
+		try {
+			res = Integer.parseInt(this.tfSplitDefaultSubSThreshold.getText().trim());
+			if (res < 1) {
+				throw new NumberFormatException();
+			}
+		} catch (NumberFormatException e) {
+			JOptionPane.showMessageDialog(null, "The minimum component size could not be read or is not positive. "
+					+ "It has therefore been set to " + this.defaultSplitDefaultSubSThreshold + ".");
+			res = this.defaultSplitDefaultSubSThreshold;
+		}
+		return res;
+	}
+	
+	/**
+	 * Returns whether the user has selected the interface refinement option.
+	 * 
+	 * @return whether the user has selected the interface refinement option
+	 */
+	public boolean getRefineInterfaces() {
+		return this.ckbRefineInterfaces.isSelected();
+	}
+	
 	/**
 	 * Returns whether the user has selected the show interfaces option.
 	 * 
@@ -1186,6 +1287,15 @@ public class LMMETab extends InspectorTab {
 		return this.ckbShowRelatedSubsystems.isSelected();
 	}
 	
+	/**
+	 * Returns whether the nodes and edges of the subsystems view are to be created with their graphics attributes only.
+	 * 
+	 * @return whether the copy graphics attributes only checkbox is currently selected
+	 */
+	public boolean getCkbLightweightSubsystemView() {
+		return this.ckbLightweightSubsView.isSelected();
+	}
+	
 	/**
 	 * Gets the selected cloning species threshold.
 	 * 
@@ -1195,6 +1305,15 @@ public class LMMETab extends InspectorTab {
 		return this.sliderSplitDeg.getValue();
 	}
 	
+	/**
+	 * Gets the selected cloning mode.
+	 * 
+	 * @return the selected cloning mode
+	 */
+	public CloningMode getCloningMode() {
+		return (CloningMode) this.cbCloningMode.getSelectedItem();
+	}
+	
 	/**
 	 * Returns whether the clonable species list has been edited by the user.
 	 * 